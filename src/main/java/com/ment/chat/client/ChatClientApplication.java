@@ -4,6 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.Arrays;
 
@@ -11,6 +12,7 @@ import static com.ment.chat.client.utils.Utilities.clearSslLogging;
 
 @SpringBootApplication
 @ConfigurationPropertiesScan
+@EnableScheduling
 @Slf4j
 public class ChatClientApplication {
 
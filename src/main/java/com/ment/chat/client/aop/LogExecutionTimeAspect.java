@@ -5,6 +5,8 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Aspect
 @Component
@@ -15,8 +17,19 @@ public class LogExecutionTimeAspect {
     public Object logExecutionTime(ProceedingJoinPoint joinPoint) throws Throwable {
         long startExecutionTime = System.currentTimeMillis();
         Object result = joinPoint.proceed();
+        //a reactive result is only assembled here, so the time is logged when it terminates
+        if (result instanceof Mono<?> mono) {
+            return mono.doFinally(_ -> logExecutionTime(joinPoint, startExecutionTime));
+        }
+        if (result instanceof Flux<?> flux) {
+            return flux.doFinally(_ -> logExecutionTime(joinPoint, startExecutionTime));
+        }
+        logExecutionTime(joinPoint, startExecutionTime);
+        return result;
+    }
+
+    private void logExecutionTime(ProceedingJoinPoint joinPoint, long startExecutionTime) {
         long stopExecutionTime = System.currentTimeMillis();
         log.info("Execution time of {}: {} ms", joinPoint.getSignature(), (stopExecutionTime - startExecutionTime));
-        return result;
     }
 }
@@ -0,0 +1,149 @@
+package com.ment.chat.client.client;
+
+/**
+ * AIMD limit of concurrent calls to a provider, adapted to overload errors and to a gradient of the latency against its min.
+ * The latency does not depend on the length of the answer: the latency per completion token of a call, or the time to first token of a stream.
+ * The limit is decreased by the backoff ratio when the provider is overloaded, or when the smoothed latency has grown
+ * above the min latency times the tolerance, and it is increased by one when a call succeeds and the limit is in use.
+ * Thread safe.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    //number of latencies before the gradient is used
+    private static final int MIN_SAMPLES = 10;
+
+    //number of latencies the min is found in, so the min follows a provider that has become slower for good
+    private static final int MIN_WINDOW_SIZE = 100;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final double latencyTolerance;
+
+    //calls and streams have a gradient each, since the latency per token and the time to first token differ in scale
+    private final LatencyGradient callGradient = new LatencyGradient();
+
+    private final LatencyGradient streamGradient = new LatencyGradient();
+
+    private int limit;
+
+    //latencies ignored after a decrease, so the limit is not changed again by calls started before the decrease
+    private int ignoredLatencies;
+
+    /**
+     * @param minLimit         the limit is never decreased below this value
+     * @param maxLimit         the limit is never increased above this value, also the initial limit
+     * @param backoffRatio     the limit is multiplied with this ratio when decreased
+     * @param latencyTolerance the limit is decreased when the smoothed latency is above the min latency times this tolerance
+     */
+    public AdaptiveConcurrencyLimit(int minLimit, int maxLimit, double backoffRatio, double latencyTolerance) {
+        this.minLimit = Math.min(minLimit, maxLimit);
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.limit = maxLimit;
+    }
+
+    /**
+     * A fixed limit that is never adapted.
+     */
+    public static AdaptiveConcurrencyLimit fixed(int limit) {
+        return new AdaptiveConcurrencyLimit(limit, limit, 1.0, Double.MAX_VALUE);
+    }
+
+    /**
+     * @param latencyMs        the latency of the successful call
+     * @param completionTokens the number of tokens in the answer, 0 when not known and the latency is not used
+     * @param inFlight         the number of calls in flight when the call finished, including the call
+     * @return the new limit
+     */
+    public synchronized int onSuccess(long latencyMs, long completionTokens, int inFlight) {
+        if (completionTokens <= 0) {
+            return increase(inFlight);
+        }
+        return adapt(callGradient, (double) latencyMs / completionTokens, inFlight);
+    }
+
+    /**
+     * @param timeToFirstTokenMs the time until the first chunk of the completed stream
+     * @param inFlight           the number of calls in flight when the stream completed, including the stream
+     * @return the new limit
+     */
+    public synchronized int onStreamSuccess(long timeToFirstTokenMs, int inFlight) {
+        return adapt(streamGradient, timeToFirstTokenMs, inFlight);
+    }
+
+    /**
+     * @return the new limit
+     */
+    public synchronized int onOverload() {
+        return decrease();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    private int adapt(LatencyGradient gradient, double latencyMs, int inFlight) {
+        gradient.record(latencyMs);
+        if (ignoredLatencies > 0) {
+            ignoredLatencies--;
+            return limit;
+        }
+        double minMs = gradient.minMs();
+        boolean slow = gradient.samples >= MIN_SAMPLES && minMs > 0 && gradient.smoothedMs > minMs * latencyTolerance;
+        return slow ? decrease() : increase(inFlight);
+    }
+
+    private int increase(int inFlight) {
+        //only increase when the limit is needed, otherwise an idle provider would get the max limit
+        if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        return limit;
+    }
+
+    private int decrease() {
+        limit = Math.max(minLimit, (int) Math.floor(limit * backoffRatio));
+        ignoredLatencies = limit;
+        return limit;
+    }
+
+    /**
+     * Smoothed latency and min latency of the latest window.
+     */
+    private static class LatencyGradient {
+
+        //weight of the latest latency in the moving average
+        private static final double SMOOTHING = 0.1;
+
+        private int samples;
+
+        private double smoothedMs;
+
+        //min of the previous window
+        private double previousMinMs = Double.MAX_VALUE;
+
+        private double windowMinMs = Double.MAX_VALUE;
+
+        private int windowCount;
+
+        void record(double latencyMs) {
+            smoothedMs = samples == 0 ? latencyMs : smoothedMs * (1 - SMOOTHING) + latencyMs * SMOOTHING;
+            samples++;
+            windowMinMs = Math.min(windowMinMs, latencyMs);
+            if (++windowCount == MIN_WINDOW_SIZE) {
+                previousMinMs = windowMinMs;
+                windowMinMs = Double.MAX_VALUE;
+                windowCount = 0;
+            }
+        }
+
+        double minMs() {
+            return Math.min(previousMinMs, windowMinMs);
+        }
+    }
+}
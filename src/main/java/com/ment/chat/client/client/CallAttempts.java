@@ -0,0 +1,32 @@
+package com.ment.chat.client.client;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the attempts of one call to a provider and the time spent waiting between them.
+ * Thread safe, the attempts may run on different threads.
+ */
+public class CallAttempts {
+
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private final AtomicLong backoffMs = new AtomicLong();
+
+    void onAttempt() {
+        attempts.incrementAndGet();
+    }
+
+    void onBackoff(Duration backoff) {
+        backoffMs.addAndGet(backoff.toMillis());
+    }
+
+    public int getAttempts() {
+        return attempts.get();
+    }
+
+    public long getBackoffMs() {
+        return backoffMs.get();
+    }
+}
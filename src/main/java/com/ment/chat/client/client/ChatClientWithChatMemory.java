@@ -3,6 +3,15 @@ package com.ment.chat.client.client;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
 
-public record ChatClientWithChatMemory(ChatClient chatClient, ChatMemory chatMemory) {
+/**
+ * @param chatClient          the client of the provider, reading and writing the chat memory
+ * @param chatMemory          the chat memory of the provider
+ * @param statelessChatClient the client of the provider without the chat memory, called with the history when a hedge may be sent, null when not hedged
+ * @param hedgeChatClient     the client of the backup endpoint or model of the provider without the chat memory, null when not hedged
+ */
+public record ChatClientWithChatMemory(ChatClient chatClient, ChatMemory chatMemory, ChatClient statelessChatClient, ChatClient hedgeChatClient) {
 
+    public ChatClientWithChatMemory(ChatClient chatClient, ChatMemory chatMemory) {
+        this(chatClient, chatMemory, null, null);
+    }
 }
@@ -0,0 +1,43 @@
+package com.ment.chat.client.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The latest execution times of calls to a provider, to find the percentiles of its recent latency.
+ * Thread safe.
+ */
+public class LatencyWindow {
+
+    private final long[] latenciesMs;
+
+    private int index;
+
+    private int count;
+
+    public LatencyWindow(int size) {
+        this.latenciesMs = new long[size];
+    }
+
+    public synchronized void record(long latencyMs) {
+        latenciesMs[index] = latencyMs;
+        index = (index + 1) % latenciesMs.length;
+        count = Math.min(count + 1, latenciesMs.length);
+    }
+
+    /**
+     * @param percentile the percentile, like 0.95
+     * @param minSamples the number of latencies needed for a meaningful percentile
+     * @return the latency at the percentile, empty if too few latencies are recorded
+     */
+    public synchronized Optional<Duration> percentile(double percentile, int minSamples) {
+        if (count == 0 || count < minSamples) {
+            return Optional.empty();
+        }
+        long[] sorted = Arrays.copyOf(latenciesMs, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * count) - 1;
+        return Optional.of(Duration.ofMillis(sorted[Math.clamp(rank, 0, count - 1)]));
+    }
+}
@@ -0,0 +1,193 @@
+package com.ment.chat.client.client;
+
+import com.ment.chat.client.domain.exception.ProviderBusyException;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent calls to one provider, so a slow provider like a local Ollama is not overloaded.
+ * Calls above the limit wait in a bounded queue, calls above the queue size fail fast.
+ * The limit adapts to the latency and overload errors of the provider, between a min limit and the configured max concurrency,
+ * and is shown by the limit gauge.
+ * Waiting blocks the calling thread, so it must be called from a virtual thread.
+ */
+@Slf4j
+public class ProviderBulkhead {
+
+    public static final String PERMITS_IN_USE_METRIC = "llm.provider.bulkhead.permits.in.use";
+    public static final String LIMIT_METRIC = "llm.provider.bulkhead.limit";
+    public static final String QUEUED_METRIC = "llm.provider.bulkhead.queued";
+    public static final String WAIT_METRIC = "llm.provider.bulkhead.wait";
+    public static final String REJECTED_METRIC = "llm.provider.bulkhead.rejected";
+    public static final String PROVIDER_TAG = "provider";
+    public static final String TARGET_TAG = "target";
+    //the endpoint or model of the provider called, the configured one or the backup sent hedges
+    public static final String PRIMARY_TARGET = "primary";
+    public static final String HEDGE_TARGET = "hedge";
+
+    private final LlmProvider llmProvider;
+
+    private final String target;
+
+    private final int maxQueueSize;
+
+    private final AdaptiveConcurrencyLimit adaptiveLimit;
+
+    private final ResizableSemaphore permits;
+
+    //the limit the permits are sized to, changed with the adaptive limit
+    private int limit;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Timer waitTimer;
+
+    private final Counter rejectedCounter;
+
+    /**
+     * @param target the called endpoint or model of the provider, {@link #PRIMARY_TARGET} or {@link #HEDGE_TARGET}
+     */
+    public ProviderBulkhead(LlmProvider llmProvider, String target, AdaptiveConcurrencyLimit adaptiveLimit, int maxQueueSize, MeterRegistry meterRegistry) {
+        this.llmProvider = llmProvider;
+        this.target = target;
+        this.maxQueueSize = maxQueueSize;
+        this.adaptiveLimit = adaptiveLimit;
+        this.limit = adaptiveLimit.getLimit();
+        this.permits = new ResizableSemaphore(limit);
+        Tags tags = Tags.of(PROVIDER_TAG, llmProvider.name(), TARGET_TAG, target);
+        Gauge.builder(PERMITS_IN_USE_METRIC, this, ProviderBulkhead::permitsInUse)
+                .description("Number of concurrent calls to the provider")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder(LIMIT_METRIC, this, ProviderBulkhead::getLimit)
+                .description("Present limit of concurrent calls to the provider")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder(QUEUED_METRIC, queued, AtomicInteger::get)
+                .description("Number of calls waiting for the provider")
+                .tags(tags)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder(WAIT_METRIC)
+                .description("Time waiting for a permit to call the provider")
+                .tags(tags)
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder(REJECTED_METRIC)
+                .description("Number of calls rejected since the queue of the provider is full")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a permit, waiting in the queue if all permits are in use.
+     *
+     * @throws ProviderBusyException when the queue is full
+     * @throws InterruptedException  when the waiting call is cancelled
+     */
+    public void acquire() throws InterruptedException {
+        if (tryAcquire()) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueueSize) {
+            queued.decrementAndGet();
+            rejectedCounter.increment();
+            throw new ProviderBusyException(String.format("Provider %s (%s) is busy with %d concurrent calls and %d waiting calls",
+                    llmProvider, target, getLimit(), maxQueueSize));
+        }
+        long start = System.nanoTime();
+        try {
+            permits.acquire();
+        } finally {
+            queued.decrementAndGet();
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Takes a permit if one is available without waiting.
+     *
+     * @return true if a permit was taken
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            waitTimer.record(0, TimeUnit.NANOSECONDS);
+            return true;
+        }
+        return false;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Adapts the limit to a successful call, must be called before the permit is released.
+     *
+     * @param latencyMs        the latency of the call
+     * @param completionTokens the number of tokens in the answer, 0 when not known
+     */
+    public void onSuccess(long latencyMs, long completionTokens) {
+        resize(adaptiveLimit.onSuccess(latencyMs, completionTokens, permitsInUse()));
+    }
+
+    /**
+     * Adapts the limit to a completed stream, must be called before the permit is released.
+     *
+     * @param timeToFirstTokenMs the time until the first chunk of the stream
+     */
+    public void onStreamSuccess(long timeToFirstTokenMs) {
+        resize(adaptiveLimit.onStreamSuccess(timeToFirstTokenMs, permitsInUse()));
+    }
+
+    /**
+     * Adapts the limit to a failed call, only errors showing an overloaded provider lower the limit.
+     *
+     * @param throwable the error from the call
+     */
+    public void onFailure(Throwable throwable) {
+        if (ProviderErrors.isOverload(throwable)) {
+            resize(adaptiveLimit.onOverload());
+        }
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int permitsInUse() {
+        //available permits are negative while calls above a lowered limit are finishing
+        return limit - permits.availablePermits();
+    }
+
+    private synchronized void resize(int newLimit) {
+        if (newLimit > limit) {
+            permits.release(newLimit - limit);
+        } else if (newLimit < limit) {
+            permits.reducePermits(limit - newLimit);
+        }
+        if (newLimit != limit) {
+            log.debug("Limit of concurrent calls to provider {} ({}) changed from {} to {}", llmProvider, target, limit, newLimit);
+            limit = newLimit;
+        }
+    }
+
+    private static class ResizableSemaphore extends Semaphore {
+
+        ResizableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
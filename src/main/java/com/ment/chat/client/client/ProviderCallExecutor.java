@@ -0,0 +1,353 @@
+package com.ment.chat.client.client;
+
+import com.ment.chat.client.config.AppProperties;
+import com.ment.chat.client.config.ProviderSchedulerProperties;
+import com.ment.chat.client.domain.ChatResponseTimer;
+import com.ment.chat.client.domain.exception.ProviderUnavailableException;
+import com.ment.chat.client.model.enums.CircuitState;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking calls to the LLM providers on virtual threads, so the number of calls in flight is not tied to the number of cores.
+ * The number of concurrent calls is bounded by config, further calls wait for a permit without holding a platform thread.
+ * Each provider also has its own bulkhead, so one provider cannot be overloaded by calls the others could handle,
+ * and its own circuit breaker, so calls to a provider that is down fail fast.
+ * Hedges to the backup of a provider have a bulkhead and circuit breaker of their own,
+ * so the limit and the circuit of the provider only follow the calls to the provider itself.
+ */
+@Slf4j
+@Component
+public class ProviderCallExecutor implements DisposableBean {
+
+    public static final String IN_FLIGHT_METRIC = "llm.provider.calls.in.flight";
+    public static final String QUEUED_METRIC = "llm.provider.calls.queued";
+    public static final String RETRIES_METRIC = "llm.provider.calls.retries";
+    public static final String HEDGES_METRIC = "llm.provider.hedges";
+    public static final String HEDGES_WON_METRIC = "llm.provider.hedges.won";
+    public static final String COALESCED_METRIC = "llm.provider.calls.coalesced";
+
+    //used for providers without config
+    private static final int DEFAULT_MAX_CONCURRENCY = 100;
+    private static final int DEFAULT_MAX_QUEUE_SIZE = 1000;
+    private static final AppProperties.Retry DEFAULT_RETRY =
+            new AppProperties.Retry(3, Duration.ofMillis(500), Duration.ofSeconds(10), 2.0, 0.5, Duration.ofSeconds(30));
+    //number of recent execution times the hedge delay is found from
+    private static final int LATENCY_WINDOW_SIZE = 200;
+
+    private final Scheduler scheduler;
+
+    private final Semaphore permits;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Map<LlmProvider, ProviderBulkhead> bulkheads = new EnumMap<>(LlmProvider.class);
+
+    private final Map<LlmProvider, ProviderCircuitBreaker> circuitBreakers = new EnumMap<>(LlmProvider.class);
+
+    private final Map<LlmProvider, ProviderBulkhead> hedgeBulkheads = new EnumMap<>(LlmProvider.class);
+
+    private final Map<LlmProvider, ProviderCircuitBreaker> hedgeCircuitBreakers = new EnumMap<>(LlmProvider.class);
+
+    private final Map<LlmProvider, ProviderRetryPolicy> retryPolicies = new EnumMap<>(LlmProvider.class);
+
+    private final Map<LlmProvider, AppProperties.Hedge> hedges = new EnumMap<>(LlmProvider.class);
+
+    private final Map<LlmProvider, LatencyWindow> latencyWindows = new EnumMap<>(LlmProvider.class);
+
+    private final MeterRegistry meterRegistry;
+
+    public ProviderCallExecutor(ProviderSchedulerProperties properties, AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.scheduler = Schedulers.fromExecutorService(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(properties.threadNamePrefix(), 0).factory()),
+                "provider-calls");
+        this.permits = new Semaphore(properties.maxConcurrentCalls(), true);
+        this.meterRegistry = meterRegistry;
+        Gauge.builder(IN_FLIGHT_METRIC, inFlight, AtomicInteger::get)
+                .description("Number of calls to LLM providers in flight")
+                .register(meterRegistry);
+        Gauge.builder(QUEUED_METRIC, queued, AtomicInteger::get)
+                .description("Number of calls to LLM providers waiting for a permit")
+                .register(meterRegistry);
+        log.info("Provider calls run on virtual threads with max {} concurrent calls", properties.maxConcurrentCalls());
+        for (LlmProvider llmProvider : LlmProvider.values()) {
+            AppProperties.ProviderModel providerModel = appProperties.models().get(llmProvider);
+            int maxConcurrency = providerModel == null ? DEFAULT_MAX_CONCURRENCY : providerModel.maxConcurrency();
+            int maxQueueSize = providerModel == null ? DEFAULT_MAX_QUEUE_SIZE : providerModel.maxQueueSize();
+            bulkheads.put(llmProvider, new ProviderBulkhead(llmProvider, ProviderBulkhead.PRIMARY_TARGET,
+                    limit(properties.adaptiveLimit(), maxConcurrency), maxQueueSize, meterRegistry));
+            circuitBreakers.put(llmProvider, circuitBreaker(llmProvider, ProviderBulkhead.PRIMARY_TARGET, properties.circuitBreaker(), meterRegistry));
+            retryPolicies.put(llmProvider, new ProviderRetryPolicy(providerModel == null ? DEFAULT_RETRY : providerModel.retry()));
+            if (providerModel != null && providerModel.hedge().enabled()) {
+                hedges.put(llmProvider, providerModel.hedge());
+                hedgeBulkheads.put(llmProvider, new ProviderBulkhead(llmProvider, ProviderBulkhead.HEDGE_TARGET,
+                        limit(properties.adaptiveLimit(), maxConcurrency), maxQueueSize, meterRegistry));
+                hedgeCircuitBreakers.put(llmProvider, circuitBreaker(llmProvider, ProviderBulkhead.HEDGE_TARGET, properties.circuitBreaker(), meterRegistry));
+            }
+            latencyWindows.put(llmProvider, new LatencyWindow(LATENCY_WINDOW_SIZE));
+        }
+    }
+
+    private static ProviderCircuitBreaker circuitBreaker(LlmProvider llmProvider, String target, ProviderSchedulerProperties.CircuitBreaker circuitBreaker,
+                                                         MeterRegistry meterRegistry) {
+        if (!circuitBreaker.enabled()) {
+            return ProviderCircuitBreaker.disabled(llmProvider, target, meterRegistry);
+        }
+        return new ProviderCircuitBreaker(llmProvider, target, circuitBreaker.slidingWindowSize(), circuitBreaker.failureThreshold(),
+                circuitBreaker.openDuration(), circuitBreaker.halfOpenTrialCalls(), meterRegistry);
+    }
+
+    private static AdaptiveConcurrencyLimit limit(ProviderSchedulerProperties.AdaptiveLimit adaptiveLimit, int maxConcurrency) {
+        if (!adaptiveLimit.enabled()) {
+            return AdaptiveConcurrencyLimit.fixed(maxConcurrency);
+        }
+        return new AdaptiveConcurrencyLimit(adaptiveLimit.minLimit(), maxConcurrency, adaptiveLimit.backoffRatio(), adaptiveLimit.latencyTolerance());
+    }
+
+    /**
+     * Runs a blocking provider call on a virtual thread when permits of the provider and of the scheduler are available.
+     *
+     * @param llmProvider the called provider
+     * @param call        the blocking call
+     * @return the result of the call, a ProviderUnavailableException when the circuit of the provider is open,
+     * or a ProviderBusyException when the queue of the provider is full
+     */
+    public <T> Mono<T> call(LlmProvider llmProvider, Callable<T> call) {
+        return call(llmProvider, bulkheads.get(llmProvider), circuitBreakers.get(llmProvider), call);
+    }
+
+    private <T> Mono<T> call(LlmProvider llmProvider, ProviderBulkhead bulkhead, ProviderCircuitBreaker circuitBreaker, Callable<T> call) {
+        return Mono.defer(() -> {
+            //checked before scheduling, so an open circuit fails immediately
+            ProviderCircuitBreaker.Permit permit = acquirePermission(llmProvider, circuitBreaker);
+            return Mono.fromCallable(() -> {
+                        bulkhead.acquire();
+                        try {
+                            return callWithPermit(bulkhead, permit, call);
+                        } finally {
+                            bulkhead.release();
+                        }
+                    })
+                    .subscribeOn(scheduler)
+                    .doFinally(_ -> permit.release());
+        });
+    }
+
+    /**
+     * Runs a blocking provider call like {@link #call(LlmProvider, Callable)}, and retries it when the provider is rate limited, overloaded or unreachable.
+     * A retry is only started when it can finish before both the retry budget of the provider and the deadline of the request.
+     *
+     * @param llmProvider the called provider
+     * @param call        the blocking call
+     * @param deadline    the deadline of the request
+     * @param attempts    counts the attempts and the time waiting between them
+     * @return the result of the latest attempt
+     */
+    public <T> Mono<T> call(LlmProvider llmProvider, Callable<T> call, Duration deadline, CallAttempts attempts) {
+        ProviderRetryPolicy retryPolicy = retryPolicies.get(llmProvider);
+        return Mono.defer(() -> {
+            long budgetEnd = System.currentTimeMillis() + Math.min(deadline.toMillis(), retryPolicy.budget().toMillis());
+            return Mono.defer(() -> {
+                        attempts.onAttempt();
+                        return call(llmProvider, call);
+                    })
+                    .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                        Throwable failure = signal.failure();
+                        Optional<Duration> backoff = retryPolicy.backoff(attempts.getAttempts(), failure)
+                                .filter(wait -> System.currentTimeMillis() + wait.toMillis() < budgetEnd);
+                        if (backoff.isEmpty()) {
+                            return Mono.error(failure);
+                        }
+                        log.warn("Retrying call to provider {} in {} ms after attempt {} failed, error: {}",
+                                llmProvider, backoff.get().toMillis(), attempts.getAttempts(), failure.getMessage());
+                        attempts.onBackoff(backoff.get());
+                        meterRegistry.counter(RETRIES_METRIC, ProviderBulkhead.PROVIDER_TAG, llmProvider.name()).increment();
+                        return Mono.delay(backoff.get());
+                    })));
+        });
+    }
+
+    /**
+     * Runs a hedge, a second call sent to the backup of a provider that is slow to answer, counted separately to follow the extra spend.
+     * The hedge takes a permit of the bulkhead of the backup and reports to the circuit breaker of the backup,
+     * and its execution time is not recorded for the hedge delay, so a slow or failing backup does not throttle or open the provider.
+     *
+     * @param llmProvider the called provider
+     * @param call        the blocking call to the backup
+     * @return the result of the call, an IllegalStateException when the provider is not hedged
+     */
+    public <T> Mono<T> hedge(LlmProvider llmProvider, Callable<T> call) {
+        return Mono.defer(() -> {
+            ProviderBulkhead bulkhead = hedgeBulkheads.get(llmProvider);
+            if (bulkhead == null) {
+                return Mono.error(new IllegalStateException(String.format("Provider %s is not hedged", llmProvider)));
+            }
+            meterRegistry.counter(HEDGES_METRIC, ProviderBulkhead.PROVIDER_TAG, llmProvider.name()).increment();
+            return call(llmProvider, bulkhead, hedgeCircuitBreakers.get(llmProvider), call);
+        });
+    }
+
+    public void onHedgeWon(LlmProvider llmProvider) {
+        meterRegistry.counter(HEDGES_WON_METRIC, ProviderBulkhead.PROVIDER_TAG, llmProvider.name()).increment();
+    }
+
+    /**
+     * @param llmProvider the provider of an identical call in flight, which the request waits for instead of calling the provider
+     */
+    public void onCoalesced(LlmProvider llmProvider) {
+        meterRegistry.counter(COALESCED_METRIC, ProviderBulkhead.PROVIDER_TAG, llmProvider.name()).increment();
+    }
+
+    /**
+     * @param llmProvider the provider
+     * @param latencyMs   the execution time of a completed call to the provider
+     */
+    public void recordLatency(LlmProvider llmProvider, long latencyMs) {
+        latencyWindows.get(llmProvider).record(latencyMs);
+    }
+
+    /**
+     * @param llmProvider the provider
+     * @return the time to wait for an answer before a hedge is sent, empty if the provider is not hedged
+     * or too few execution times are recorded
+     */
+    public Optional<Duration> hedgeDelay(LlmProvider llmProvider) {
+        AppProperties.Hedge hedge = hedges.get(llmProvider);
+        if (hedge == null) {
+            return Optional.empty();
+        }
+        return latencyWindows.get(llmProvider).percentile(hedge.percentile(), hedge.minSamples())
+                .map(delay -> delay.compareTo(hedge.minDelay()) < 0 ? hedge.minDelay() : delay);
+    }
+
+    private <T> T callWithPermit(ProviderBulkhead bulkhead, ProviderCircuitBreaker.Permit permit, Callable<T> call) throws Exception {
+        acquire();
+        inFlight.incrementAndGet();
+        long start = System.currentTimeMillis();
+        try {
+            T result = call.call();
+            //the same latency as measured into the execution time of the answer
+            bulkhead.onSuccess(System.currentTimeMillis() - start, completionTokens(result));
+            permit.onSuccess();
+            return result;
+        } catch (Exception e) {
+            bulkhead.onFailure(e);
+            permit.onFailure(e);
+            throw e;
+        } finally {
+            inFlight.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * @param result the result of a call
+     * @return the number of tokens in the answer, 0 when the result is not an answer or the provider did not report its usage
+     */
+    private static long completionTokens(Object result) {
+        if (result instanceof ChatResponseTimer chatResponseTimer && chatResponseTimer.chatResponse() != null) {
+            Integer completionTokens = chatResponseTimer.chatResponse().getMetadata().getUsage().getCompletionTokens();
+            return completionTokens == null ? 0 : completionTokens;
+        }
+        return 0;
+    }
+
+    /**
+     * Streams from the provider when a permit of the provider is available, the permit is held until the stream terminates or is cancelled.
+     * A stream holds no thread, so it does not take a permit of the scheduler.
+     *
+     * @param llmProvider the called provider
+     * @param stream      the stream from the provider
+     * @return the stream, a ProviderUnavailableException when the circuit of the provider is open,
+     * or a ProviderBusyException when the queue of the provider is full
+     */
+    public <T> Flux<T> stream(LlmProvider llmProvider, Supplier<Flux<T>> stream) {
+        ProviderBulkhead bulkhead = bulkheads.get(llmProvider);
+        return Flux.defer(() -> {
+            ProviderCircuitBreaker.Permit permit = acquirePermission(llmProvider, circuitBreakers.get(llmProvider));
+            Flux<T> guarded;
+            if (bulkhead.tryAcquire()) {
+                guarded = Flux.using(() -> bulkhead, _ -> measured(bulkhead, permit, stream), ProviderBulkhead::release);
+            } else {
+                guarded = Flux.using(() -> {
+                                    bulkhead.acquire();
+                                    return bulkhead;
+                                },
+                                _ -> measured(bulkhead, permit, stream),
+                                ProviderBulkhead::release)
+                        //waiting for a permit is blocking
+                        .subscribeOn(scheduler);
+            }
+            //a cancelled or rejected stream has no outcome
+            return guarded.doFinally(_ -> permit.release());
+        });
+    }
+
+    private <T> Flux<T> measured(ProviderBulkhead bulkhead, ProviderCircuitBreaker.Permit permit, Supplier<Flux<T>> stream) {
+        return Flux.defer(() -> {
+            long start = System.currentTimeMillis();
+            AtomicLong firstTokenAt = new AtomicLong();
+            return stream.get()
+                    .doOnNext(_ -> firstTokenAt.compareAndSet(0, System.currentTimeMillis()))
+                    .doOnComplete(() -> {
+                        //an empty stream counts as answered when completed
+                        long end = firstTokenAt.get() > 0 ? firstTokenAt.get() : System.currentTimeMillis();
+                        bulkhead.onStreamSuccess(end - start);
+                        permit.onSuccess();
+                    })
+                    .doOnError(e -> {
+                        bulkhead.onFailure(e);
+                        permit.onFailure(e);
+                    });
+        });
+    }
+
+    /**
+     * @param llmProvider the provider
+     * @return the state of the circuit breaker of the provider
+     */
+    public CircuitState getCircuitState(LlmProvider llmProvider) {
+        return circuitBreakers.get(llmProvider).getState();
+    }
+
+    private ProviderCircuitBreaker.Permit acquirePermission(LlmProvider llmProvider, ProviderCircuitBreaker circuitBreaker) {
+        return circuitBreaker.tryAcquirePermission()
+                .orElseThrow(() -> new ProviderUnavailableException(String.format("Provider %s is unavailable, its circuit breaker is open", llmProvider)));
+    }
+
+    private void acquire() throws InterruptedException {
+        queued.incrementAndGet();
+        try {
+            permits.acquire();
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,230 @@
+package com.ment.chat.client.client;
+
+import com.ment.chat.client.model.enums.CircuitState;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Count based circuit breaker of one provider, so calls to a provider that is down fail fast instead of waiting for the http timeout.
+ * The circuit opens when the failures among the latest calls in the sliding window reach the failure threshold.
+ * After the open duration a limited number of trial calls are let through, the circuit closes when all of them succeed
+ * and opens again when one of them fails.
+ * Thread safe.
+ */
+@Slf4j
+public class ProviderCircuitBreaker {
+
+    public static final String STATE_METRIC = "llm.provider.circuit.state";
+    public static final String SHORT_CIRCUITED_METRIC = "llm.provider.circuit.short.circuited";
+    public static final String STATE_TAG = "state";
+
+    private final LlmProvider llmProvider;
+
+    private final String target;
+
+    private final int failureThreshold;
+
+    private final long openDurationMs;
+
+    private final int halfOpenTrialCalls;
+
+    private final LongSupplier currentTimeMillis;
+
+    //outcomes of the latest calls, true is a failure
+    private final boolean[] window;
+
+    private int windowIndex;
+
+    private int windowCount;
+
+    private int failures;
+
+    private CircuitState state = CircuitState.CLOSED;
+
+    private long openedAt;
+
+    private int trialCallsStarted;
+
+    private int trialCallsSucceeded;
+
+    private final Counter shortCircuitedCounter;
+
+    /**
+     * @param target the called endpoint or model of the provider, {@link ProviderBulkhead#PRIMARY_TARGET} or {@link ProviderBulkhead#HEDGE_TARGET}
+     */
+    public ProviderCircuitBreaker(LlmProvider llmProvider, String target, int slidingWindowSize, int failureThreshold, Duration openDuration,
+                                  int halfOpenTrialCalls, MeterRegistry meterRegistry) {
+        this(llmProvider, target, slidingWindowSize, failureThreshold, openDuration, halfOpenTrialCalls, meterRegistry, System::currentTimeMillis);
+    }
+
+    ProviderCircuitBreaker(LlmProvider llmProvider, String target, int slidingWindowSize, int failureThreshold, Duration openDuration,
+                           int halfOpenTrialCalls, MeterRegistry meterRegistry, LongSupplier currentTimeMillis) {
+        this.llmProvider = llmProvider;
+        this.target = target;
+        this.window = new boolean[slidingWindowSize];
+        this.failureThreshold = failureThreshold;
+        this.openDurationMs = openDuration.toMillis();
+        this.halfOpenTrialCalls = halfOpenTrialCalls;
+        this.currentTimeMillis = currentTimeMillis;
+        for (CircuitState circuitState : CircuitState.values()) {
+            Gauge.builder(STATE_METRIC, this, breaker -> breaker.getState() == circuitState ? 1 : 0)
+                    .description("1 when the circuit breaker of the provider is in the state, otherwise 0")
+                    .tags(Tags.of(ProviderBulkhead.PROVIDER_TAG, llmProvider.name(), ProviderBulkhead.TARGET_TAG, target, STATE_TAG, circuitState.name()))
+                    .register(meterRegistry);
+        }
+        this.shortCircuitedCounter = Counter.builder(SHORT_CIRCUITED_METRIC)
+                .description("Number of calls failed fast since the circuit breaker of the provider is open")
+                .tags(Tags.of(ProviderBulkhead.PROVIDER_TAG, llmProvider.name(), ProviderBulkhead.TARGET_TAG, target))
+                .register(meterRegistry);
+    }
+
+    /**
+     * A circuit breaker that never opens.
+     */
+    public static ProviderCircuitBreaker disabled(LlmProvider llmProvider, String target, MeterRegistry meterRegistry) {
+        return new ProviderCircuitBreaker(llmProvider, target, 1, Integer.MAX_VALUE, Duration.ZERO, 1, meterRegistry);
+    }
+
+    /**
+     * Asks for permission to call the provider.
+     *
+     * @return the permit to report the outcome of the call to, empty when the call must fail fast
+     */
+    public synchronized Optional<Permit> tryAcquirePermission() {
+        if (state == CircuitState.OPEN && currentTimeMillis.getAsLong() - openedAt >= openDurationMs) {
+            transitionTo(CircuitState.HALF_OPEN);
+        }
+        boolean permitted = switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> trialCallsStarted < halfOpenTrialCalls;
+        };
+        if (!permitted) {
+            shortCircuitedCounter.increment();
+            return Optional.empty();
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            trialCallsStarted++;
+        }
+        return Optional.of(new Permit());
+    }
+
+    public synchronized CircuitState getState() {
+        return state;
+    }
+
+    private synchronized void onSuccess() {
+        switch (state) {
+            case CLOSED -> record(false);
+            case HALF_OPEN -> {
+                if (++trialCallsSucceeded >= halfOpenTrialCalls) {
+                    transitionTo(CircuitState.CLOSED);
+                }
+            }
+            case OPEN -> {
+                //a call started before the circuit opened, the circuit stays open until the trial calls
+            }
+        }
+    }
+
+    private synchronized void onFailure() {
+        switch (state) {
+            case CLOSED -> {
+                record(true);
+                if (failures >= failureThreshold) {
+                    transitionTo(CircuitState.OPEN);
+                }
+            }
+            case HALF_OPEN -> transitionTo(CircuitState.OPEN);
+            case OPEN -> {
+                //already open
+            }
+        }
+    }
+
+    private synchronized void onIgnored() {
+        if (state == CircuitState.HALF_OPEN) {
+            //the trial gave no answer, so another call may try
+            trialCallsStarted--;
+        }
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                failures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            failures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void transitionTo(CircuitState newState) {
+        log.warn("Circuit breaker of provider {} ({}) changed from {} to {}", llmProvider, target, state, newState);
+        state = newState;
+        switch (newState) {
+            case OPEN -> openedAt = currentTimeMillis.getAsLong();
+            case HALF_OPEN -> {
+                trialCallsStarted = 0;
+                trialCallsSucceeded = 0;
+            }
+            case CLOSED -> {
+                windowIndex = 0;
+                windowCount = 0;
+                failures = 0;
+            }
+        }
+    }
+
+    /**
+     * Permission for one call, only the first outcome reported is recorded.
+     */
+    public class Permit {
+
+        private final AtomicBoolean reported = new AtomicBoolean();
+
+        public void onSuccess() {
+            if (reported.compareAndSet(false, true)) {
+                ProviderCircuitBreaker.this.onSuccess();
+            }
+        }
+
+        /**
+         * Only errors showing the provider is failing are recorded as failures.
+         *
+         * @param throwable the error from the call
+         */
+        public void onFailure(Throwable throwable) {
+            if (reported.compareAndSet(false, true)) {
+                if (ProviderErrors.isProviderFailure(throwable)) {
+                    ProviderCircuitBreaker.this.onFailure();
+                } else {
+                    ProviderCircuitBreaker.this.onIgnored();
+                }
+            }
+        }
+
+        /**
+         * Releases the permit without an outcome, when the call is cancelled or never started.
+         */
+        public void release() {
+            if (reported.compareAndSet(false, true)) {
+                ProviderCircuitBreaker.this.onIgnored();
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.ment.chat.client.client;
 
 import com.ment.chat.client.domain.ChatResponseTimer;
+import com.ment.chat.client.domain.LlmPromptText;
 import com.ment.chat.client.model.enums.LlmProvider;
 import com.ment.chat.client.model.in.CreateCompletionsRequest;
 import lombok.extern.slf4j.Slf4j;
@@ -13,7 +14,9 @@ import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -45,6 +48,74 @@ public class ProviderClient {
         return callProvider(llmProvider, input, completionRequest.getSystem());
     }
 
+    /**
+     * @return true if the provider has a backup endpoint or model to send hedges to
+     */
+    public boolean hasHedge() {
+        return chatClient.hedgeChatClient() != null;
+    }
+
+    /**
+     * Calls the provider with the history of the chat read before the call, and leaves the chat memory as it is.
+     * Used when a hedge may be sent, only the first answer of the provider or its backup is added to the chat memory.
+     *
+     * @param completionRequest the llm request
+     * @param llmProvider       the llm provider, only used for logging
+     * @param history           the messages of the chat memory read before the call
+     * @return the answer from the provider with response time
+     */
+    public ChatResponseTimer callWithHistory(CreateCompletionsRequest completionRequest, LlmProvider llmProvider, List<Message> history) {
+        Message message = createMessage(completionRequest.createPrompt());
+        ChatClient.ChatClientRequestSpec input = createRequestSpec(chatClient.statelessChatClient(), history, message);
+        return callProvider(llmProvider, input, completionRequest.getSystem());
+    }
+
+    /**
+     * Sends the same prompt with the same history to the backup endpoint or model of the provider, the chat memory is left as it is.
+     *
+     * @param completionRequest the llm request
+     * @param llmProvider       the llm provider, only used for logging
+     * @param history           the messages of the chat memory read before the call to the provider
+     * @return the answer from the backup with response time
+     */
+    public ChatResponseTimer callHedge(CreateCompletionsRequest completionRequest, LlmProvider llmProvider, List<Message> history) {
+        Message message = createMessage(completionRequest.createPrompt());
+        ChatClient.ChatClientRequestSpec input = createRequestSpec(chatClient.hedgeChatClient(), history, message);
+        log.info("Sending hedge to backup of provider {}", llmProvider);
+        return callProvider(llmProvider, input, completionRequest.getSystem());
+    }
+
+    /**
+     * Streams the answer from the provider chunk by chunk as the tokens arrive.
+     * The chat memory is updated by the memory advisor when the stream completes.
+     *
+     * @param completionRequest the llm request
+     * @param llmProvider       the llm provider, only used for logging
+     * @return the chunks of the answer from the provider
+     */
+    public Flux<ChatResponse> streamProvider(CreateCompletionsRequest completionRequest, LlmProvider llmProvider) {
+        Message message = createMessage(completionRequest.createPrompt());
+        ChatClient.ChatClientRequestSpec reqSpec = createRequestSpec(completionRequest, chatClient.chatClient(), message);
+        log.info("Streaming from provider {} with system {}", llmProvider, completionRequest.getSystem());
+        setSystem(reqSpec, completionRequest.getSystem());
+        return reqSpec
+                .stream()
+                .chatResponse()
+                .doOnError(e -> log.error("Error streaming from provider {}", llmProvider, e));
+    }
+
+    /**
+     * Adds a prompt and an answer not received from the provider, like a cached answer, to the chat memory,
+     * so the following prompts in the chat have the same history as if the provider was called.
+     *
+     * @param completionRequest the llm request
+     * @param answer            the answer to the prompt
+     */
+    public void addToSessionHistory(CreateCompletionsRequest completionRequest, String answer) {
+        chatClient.chatMemory().add(sessionChatId(completionRequest.getChatId()),
+                List.of(createMessage(completionRequest.createPrompt()), new AssistantMessage(answer)));
+    }
+
     public void clearSessionHistory(String chatId) {
         chatClient.chatMemory().clear(sessionChatId(chatId));
     }
@@ -53,6 +124,32 @@ public class ProviderClient {
         return chatClient.chatMemory().get(sessionChatId(chatId));
     }
 
+    /**
+     * @return a copy of the messages in the chat memory, not changed by the prompts and answers added later
+     */
+    public List<Message> historySnapshot(String chatId) {
+        return List.copyOf(getSessionMessages(chatId));
+    }
+
+    /**
+     * The chat memory is sent to the provider with the prompt, so an answer depends on the history of its chat.
+     *
+     * @param chatId the chat id of the request
+     * @return a hash of the messages in the chat memory, null when the chat has no history
+     */
+    public String historyHash(String chatId) {
+        List<Message> messages = getSessionMessages(chatId);
+        if (messages.isEmpty()) {
+            return null;
+        }
+        StringBuilder history = new StringBuilder();
+        messages.forEach(message -> history.append(message.getMessageType())
+                .append(':')
+                .append(message.getText())
+                .append('\u0000'));
+        return LlmPromptText.hash(history.toString());
+    }
+
     private ChatClient.ChatClientRequestSpec createRequestSpec(CreateCompletionsRequest completionRequest, ChatClient chatClient, Message message) {
         ChatClient.ChatClientRequestSpec reqSpec = chatClient
                 .prompt(Prompt.builder()
@@ -62,6 +159,16 @@ public class ProviderClient {
         return reqSpec;
     }
 
+    //the history is sent before the prompt, like the memory advisor does
+    private ChatClient.ChatClientRequestSpec createRequestSpec(ChatClient chatClient, List<Message> history, Message message) {
+        List<Message> messages = new ArrayList<>(history);
+        messages.add(message);
+        return chatClient
+                .prompt(Prompt.builder()
+                        .messages(messages)
+                        .build());
+    }
+
     private String sessionChatId(String chatId) {
         return Optional.ofNullable(chatId)
                 .map(id -> sessionId + "-" + id)
@@ -72,11 +179,7 @@ public class ProviderClient {
         try {
             long start = System.currentTimeMillis();
             log.info("Calling provider {} with system {}", llmProvider, system);
-            if (system != null) {
-                reqSpec
-                        //dynamic system value overrides default system from config
-                        .system(system);
-            }
+            setSystem(reqSpec, system);
 
             ChatResponse chatResponse = reqSpec
                             .call()
@@ -91,6 +194,14 @@ public class ProviderClient {
         }
     }
 
+    private void setSystem(ChatClient.ChatClientRequestSpec reqSpec, String system) {
+        if (system != null) {
+            reqSpec
+                    //dynamic system value overrides default system from config
+                    .system(system);
+        }
+    }
+
     private Message createMessage(String prompt) {
         log.info("Sending {} message to LLMs: {}", messageType, prompt);
         return switch (messageType) {
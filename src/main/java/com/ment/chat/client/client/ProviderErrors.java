@@ -0,0 +1,139 @@
+package com.ment.chat.client.client;
+
+import com.ment.chat.client.domain.exception.ProviderBusyException;
+import com.ment.chat.client.domain.exception.ProviderUnavailableException;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies the errors from calls to the providers.
+ */
+public final class ProviderErrors {
+
+    //spring ai error handler creates messages like "429 - {error body}"
+    private static final Pattern AI_EXCEPTION_STATUS = Pattern.compile("^(\\d{3}) - ");
+
+    //529 is sent by Anthropic when overloaded
+    private static final Set<Integer> RETRYABLE_STATUS = Set.of(408, 429, 500, 502, 503, 504, 529);
+
+    private ProviderErrors() {
+    }
+
+    /**
+     * @param throwable the error from the call
+     * @return the http status of the failed call, empty if the call did not get a response
+     */
+    public static Optional<Integer> httpStatus(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof RestClientResponseException e) {
+                return Optional.of(e.getStatusCode().value());
+            }
+            if (t instanceof WebClientResponseException e) {
+                return Optional.of(e.getStatusCode().value());
+            }
+            if ((t instanceof NonTransientAiException || t instanceof TransientAiException) && t.getMessage() != null) {
+                Matcher matcher = AI_EXCEPTION_STATUS.matcher(t.getMessage());
+                if (matcher.find()) {
+                    return Optional.of(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The provider is overloaded when it answers 429 or 5xx, or does not answer in time.
+     *
+     * @param throwable the error from the call
+     * @return true if the error is a sign of an overloaded provider
+     */
+    public static boolean isOverload(Throwable throwable) {
+        Optional<Integer> status = httpStatus(throwable);
+        if (status.isPresent()) {
+            return status.get() == 429 || status.get() >= 500;
+        }
+        return isTransient(throwable);
+    }
+
+    /**
+     * The provider is failing unless it answered that the request was wrong, or the call never reached the provider.
+     *
+     * @param throwable the error from the call
+     * @return true if the error counts as a failure of the provider
+     */
+    public static boolean isProviderFailure(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof ProviderBusyException || t instanceof ProviderUnavailableException || t instanceof InterruptedException) {
+                return false;
+            }
+        }
+        return httpStatus(throwable)
+                .map(status -> status >= 500 || status == 408 || status == 429)
+                .orElse(true);
+    }
+
+    /**
+     * Rate limited, overloaded and unreachable providers are worth a retry, errors in the request are not.
+     *
+     * @param throwable the error from the call
+     * @return true if the call may succeed when retried
+     */
+    public static boolean isRetryable(Throwable throwable) {
+        if (!isProviderFailure(throwable)) {
+            return false;
+        }
+        return httpStatus(throwable)
+                .map(RETRYABLE_STATUS::contains)
+                .orElseGet(() -> hasCause(throwable, ResourceAccessException.class));
+    }
+
+    /**
+     * @param throwable the error from the call
+     * @param now       the time the error is handled
+     * @return the time to wait before retrying as asked for by the provider, empty if not told
+     */
+    public static Optional<Duration> retryAfter(Throwable throwable, Instant now) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof RestClientResponseException e) {
+                return RetryAfter.from(e.getResponseHeaders(), now);
+            }
+            if (t instanceof WebClientResponseException e) {
+                return RetryAfter.from(e.getHeaders(), now);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean hasCause(Throwable throwable, Class<? extends Throwable> type) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTransient(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof TransientAiException
+                    || t instanceof ResourceAccessException
+                    || t instanceof TimeoutException
+                    || t instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ment.chat.client.client;
+
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Throws the same exceptions with the same messages as the default error handler of Spring AI,
+ * but keeps the failed response as cause, so the Retry-After and rate limit headers can be read when retrying.
+ */
+public class ProviderResponseErrorHandler implements ResponseErrorHandler {
+
+    @Override
+    public boolean hasError(@NonNull ClientHttpResponse response) throws IOException {
+        return response.getStatusCode().isError();
+    }
+
+    @Override
+    public void handleError(@NonNull ClientHttpResponse response) throws IOException {
+        byte[] body = StreamUtils.copyToByteArray(response.getBody());
+        String message = String.format("%s - %s", response.getStatusCode().value(), new String(body, StandardCharsets.UTF_8));
+        RestClientResponseException cause = new RestClientResponseException(message, response.getStatusCode(), response.getStatusText(),
+                response.getHeaders(), body, StandardCharsets.UTF_8);
+        if (response.getStatusCode().is4xxClientError()) {
+            throw new NonTransientAiException(message, cause);
+        }
+        throw new TransientAiException(message, cause);
+    }
+}
@@ -0,0 +1,50 @@
+package com.ment.chat.client.client;
+
+import com.ment.chat.client.config.AppProperties;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides if and when a failed call to a provider is retried.
+ * The wait is the one asked for by the provider, otherwise an exponential backoff with jitter,
+ * so calls rate limited at the same time are not retried at the same time.
+ */
+public class ProviderRetryPolicy {
+
+    private final AppProperties.Retry retry;
+
+    public ProviderRetryPolicy(AppProperties.Retry retry) {
+        this.retry = retry;
+    }
+
+    /**
+     * @param attempts the number of attempts made
+     * @param failure  the error from the latest attempt
+     * @return the time to wait before the next attempt, empty when the call must not be retried
+     */
+    public Optional<Duration> backoff(int attempts, Throwable failure) {
+        if (attempts >= retry.maxAttempts() || !ProviderErrors.isRetryable(failure)) {
+            return Optional.empty();
+        }
+        return ProviderErrors.retryAfter(failure, Instant.now())
+                .or(() -> Optional.of(exponentialBackoff(attempts)));
+    }
+
+    /**
+     * @return the max total time of all attempts, also bounded by the deadline of the request
+     */
+    public Duration budget() {
+        return retry.budget();
+    }
+
+    private Duration exponentialBackoff(int attempts) {
+        double backoffMs = Math.min(retry.maxBackoff().toMillis(),
+                retry.initialBackoff().toMillis() * Math.pow(retry.multiplier(), attempts - 1));
+        //a random part of the backoff is skipped
+        double jitterMs = backoffMs * retry.jitter() * ThreadLocalRandom.current().nextDouble();
+        return Duration.ofMillis(Math.round(backoffMs - jitterMs));
+    }
+}
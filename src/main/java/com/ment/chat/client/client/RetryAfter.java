@@ -0,0 +1,122 @@
+package com.ment.chat.client.client;
+
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the time to wait before retrying from the headers of a rate limited or overloaded answer.
+ * The standard Retry-After header is preferred, then the reset headers of the exhausted rate limits of OpenAI and Anthropic.
+ */
+public final class RetryAfter {
+
+    //sent by OpenAI
+    private static final String RETRY_AFTER_MS = "retry-after-ms";
+
+    //remaining and reset header of each rate limit, OpenAI resets like "6m0s" and Anthropic resets like "2025-11-14T16:50:01Z"
+    private static final List<List<String>> RATE_LIMIT_HEADERS = List.of(
+            List.of("x-ratelimit-remaining-requests", "x-ratelimit-reset-requests"),
+            List.of("x-ratelimit-remaining-tokens", "x-ratelimit-reset-tokens"),
+            List.of("anthropic-ratelimit-requests-remaining", "anthropic-ratelimit-requests-reset"),
+            List.of("anthropic-ratelimit-tokens-remaining", "anthropic-ratelimit-tokens-reset"),
+            List.of("anthropic-ratelimit-input-tokens-remaining", "anthropic-ratelimit-input-tokens-reset"),
+            List.of("anthropic-ratelimit-output-tokens-remaining", "anthropic-ratelimit-output-tokens-reset"));
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private RetryAfter() {
+    }
+
+    /**
+     * @param headers the headers of the answer
+     * @param now     the time the answer is handled
+     * @return the time to wait, empty if the headers do not tell
+     */
+    public static Optional<Duration> from(HttpHeaders headers, Instant now) {
+        if (headers == null) {
+            return Optional.empty();
+        }
+        Optional<Duration> retryAfterMs = Optional.ofNullable(headers.getFirst(RETRY_AFTER_MS))
+                .flatMap(value -> parseNumber(value).map(ms -> Duration.ofMillis(Math.round(ms))));
+        if (retryAfterMs.isPresent()) {
+            return retryAfterMs;
+        }
+        Optional<Duration> retryAfter = Optional.ofNullable(headers.getFirst(HttpHeaders.RETRY_AFTER))
+                .flatMap(value -> parseRetryAfter(value, now));
+        if (retryAfter.isPresent()) {
+            return retryAfter;
+        }
+        //wait for all exhausted limits to be reset
+        return RATE_LIMIT_HEADERS.stream()
+                .filter(pair -> "0".equals(headers.getFirst(pair.getFirst())))
+                .map(pair -> headers.getFirst(pair.getLast()))
+                .flatMap(value -> parseReset(value, now).stream())
+                .max(Duration::compareTo);
+    }
+
+    private static Optional<Duration> parseRetryAfter(String value, Instant now) {
+        //either delay seconds or an http date
+        Optional<Duration> seconds = parseNumber(value).map(s -> Duration.ofMillis(Math.round(s * 1000)));
+        if (seconds.isPresent()) {
+            return seconds;
+        }
+        try {
+            return Optional.of(until(ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant(), now));
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Duration> parseReset(String value, Instant now) {
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(until(OffsetDateTime.parse(value.trim()).toInstant(), now));
+        } catch (DateTimeParseException e) {
+            return parseGoDuration(value.trim());
+        }
+    }
+
+    private static Optional<Duration> parseGoDuration(String value) {
+        Matcher matcher = DURATION_PART.matcher(value);
+        double ms = 0;
+        int end = 0;
+        while (matcher.find() && matcher.start() == end) {
+            double amount = Double.parseDouble(matcher.group(1));
+            ms += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+            end = matcher.end();
+        }
+        return end > 0 && end == value.length()
+                ? Optional.of(Duration.ofMillis(Math.round(ms)))
+                : Optional.empty();
+    }
+
+    private static Optional<Double> parseNumber(String value) {
+        try {
+            double number = Double.parseDouble(value.trim());
+            return number >= 0 ? Optional.of(number) : Optional.empty();
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Duration until(Instant instant, Instant now) {
+        Duration duration = Duration.between(now, instant);
+        return duration.isNegative() ? Duration.ZERO : duration;
+    }
+}
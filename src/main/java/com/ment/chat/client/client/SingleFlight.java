@@ -0,0 +1,58 @@
+package com.ment.chat.client.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Calls with the same key share the call in flight, so identical requests arriving together cause one call.
+ * The key is released when the call completes, a later request makes a new call.
+ * Thread safe.
+ *
+ * @param <K> the key of a call
+ * @param <V> the result of a call
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param key  the key of the call
+     * @param call starts the call, only run when no call with the key is in flight
+     * @return the result of the call in flight, or of the started call
+     */
+    public Flight<V> join(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, result);
+        if (existing != null) {
+            return new Flight<>(existing, false);
+        }
+        try {
+            call.get().whenComplete((value, throwable) -> {
+                //released before completing, so a caller seeing the result does not join a finished call
+                inFlight.remove(key, result);
+                if (throwable != null) {
+                    result.completeExceptionally(throwable);
+                } else {
+                    result.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, result);
+            result.completeExceptionally(e);
+        }
+        return new Flight<>(result, true);
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * @param result the result of the call
+     * @param leader the call was started by this caller, false when joining a call in flight
+     */
+    public record Flight<V>(CompletableFuture<V> result, boolean leader) {
+    }
+}
@@ -2,11 +2,17 @@ package com.ment.chat.client.config;
 
 import com.ment.chat.client.model.enums.LlmProvider;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
 import java.util.Map;
 
 @ConfigurationProperties(prefix = "app")
@@ -20,8 +26,57 @@ public record AppProperties(@NotNull @Valid Toggle toggle,
                          Boolean enableChatHistory) {
     }
 
+    /**
+     * @param deadline       max time to wait for an answer from the provider, a late answer is still saved when it arrives
+     * @param maxConcurrency max number of concurrent calls to the provider
+     * @param maxQueueSize   max number of calls waiting for the provider, further calls fail fast, 0 means no waiting
+     * @param retry          retry of calls failing since the provider is rate limited, overloaded or unreachable
+     * @param hedge          hedge of slow calls to a backup endpoint or model
+     */
     public record ProviderModel(@NotNull String llmModelName,
-                                @NotNull @Valid ApiConnection apiConnection) {
+                                @NotNull @Valid ApiConnection apiConnection,
+                                @NotNull @DefaultValue("2m") Duration deadline,
+                                @NotNull @Positive @DefaultValue("100") Integer maxConcurrency,
+                                @NotNull @PositiveOrZero @DefaultValue("1000") Integer maxQueueSize,
+                                @NotNull @Valid @DefaultValue Retry retry,
+                                @NotNull @Valid @DefaultValue Hedge hedge) {
+    }
+
+    /**
+     * A Retry-After or rate limit reset header from the provider is used instead of the backoff.
+     *
+     * @param maxAttempts    max number of attempts including the first call, 1 means no retry
+     * @param initialBackoff wait before the first retry
+     * @param maxBackoff     max wait between two attempts
+     * @param multiplier     the wait is multiplied with this value for each retry
+     * @param jitter         max part of the wait that is randomly skipped
+     * @param budget         max total time of all attempts, also bounded by the deadline of the request
+     */
+    public record Retry(@NotNull @Positive @DefaultValue("3") Integer maxAttempts,
+                        @NotNull @DefaultValue("500ms") Duration initialBackoff,
+                        @NotNull @DefaultValue("10s") Duration maxBackoff,
+                        @NotNull @DecimalMin("1.0") @DefaultValue("2.0") Double multiplier,
+                        @NotNull @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.5") Double jitter,
+                        @NotNull @DefaultValue("30s") Duration budget) {
+    }
+
+    /**
+     * Opt in, a call to the provider that has not answered within a percentile of its recent execution times
+     * is sent again to the backup, and the first answer wins. Only used for the single provider endpoint.
+     *
+     * @param enabled       send hedges for the provider
+     * @param percentile    percentile of the recent execution times to wait before sending a hedge
+     * @param minDelay      min time to wait before sending a hedge
+     * @param minSamples    number of execution times recorded before hedges are sent
+     * @param llmModelName  model of the backup, the model of the provider when not set
+     * @param apiConnection endpoint of the backup, the endpoint of the provider when not set
+     */
+    public record Hedge(@NotNull @DefaultValue("false") Boolean enabled,
+                        @NotNull @DecimalMin("0.5") @DecimalMax("0.999") @DefaultValue("0.95") Double percentile,
+                        @NotNull @DefaultValue("1s") Duration minDelay,
+                        @NotNull @Positive @DefaultValue("20") Integer minSamples,
+                        String llmModelName,
+                        @Valid ApiConnection apiConnection) {
     }
 
     public record ApiConnection(@NotNull String url,
@@ -2,6 +2,7 @@ package com.ment.chat.client.config;
 
 import com.google.cloud.vertexai.VertexAI;
 import com.ment.chat.client.client.ChatClientWithChatMemory;
+import com.ment.chat.client.client.ProviderResponseErrorHandler;
 import com.ment.chat.client.model.enums.LlmProvider;
 import com.ment.chat.client.tools.PublisherTool;
 import lombok.RequiredArgsConstructor;
@@ -22,6 +23,7 @@ import org.springframework.ai.vertexai.gemini.VertexAiGeminiChatModel;
 import org.springframework.ai.vertexai.gemini.VertexAiGeminiChatOptions;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.support.RetryTemplate;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -49,32 +51,45 @@ public class ChatServiceConfig {
             .apiKey("NOT_NEEDED")
             .build();
 
+    //calls are retried by ProviderCallExecutor, which honours Retry-After and the deadline of the request
+    private final RetryTemplate noRetryTemplate = RetryTemplate.builder()
+            .maxAttempts(1)
+            .build();
+
     @Bean
     public ChatClientWithChatMemory ollamaChatClient(OpenAiChatModel baseChatModel, AppProperties appProperties) {
+        AppProperties.ProviderModel providerModel = appProperties.models().get(LlmProvider.OLLAMA);
         return mutateClient(baseChatModel,
-                nameToLlm(appProperties.models().get(LlmProvider.OLLAMA).llmModelName(), LLM_OLLAMA_QWEN_3),
-                appProperties.models().get(LlmProvider.OLLAMA).apiConnection());
+                nameToLlm(providerModel.llmModelName(), LLM_OLLAMA_QWEN_3),
+                providerModel.apiConnection(),
+                providerModel.hedge());
     }
 
     @Bean
     public ChatClientWithChatMemory dockerChatClient(OpenAiChatModel baseChatModel, AppProperties appProperties) {
+        AppProperties.ProviderModel providerModel = appProperties.models().get(LlmProvider.DOCKER);
         return mutateClient(baseChatModel,
-                nameToLlm(appProperties.models().get(LlmProvider.DOCKER).llmModelName(), LLM_DOCKER_DEEPSEEK_R1),
-                appProperties.models().get(LlmProvider.DOCKER).apiConnection());
+                nameToLlm(providerModel.llmModelName(), LLM_DOCKER_DEEPSEEK_R1),
+                providerModel.apiConnection(),
+                providerModel.hedge());
     }
 
     @Bean
     public ChatClientWithChatMemory openAiChatClient(OpenAiChatModel baseChatModel, AppProperties appProperties) {
+        AppProperties.ProviderModel providerModel = appProperties.models().get(LlmProvider.OPENAI);
         return mutateClient(baseChatModel,
-                nameToLlm(appProperties.models().get(LlmProvider.OPENAI).llmModelName(), LLM_OPEN_AI_GPT_5),
-                appProperties.models().get(LlmProvider.OPENAI).apiConnection());
+                nameToLlm(providerModel.llmModelName(), LLM_OPEN_AI_GPT_5),
+                providerModel.apiConnection(),
+                providerModel.hedge());
     }
 
     @Bean
     public ChatClientWithChatMemory grokChatClient(OpenAiChatModel baseChatModel, AppProperties appProperties) {
+        AppProperties.ProviderModel providerModel = appProperties.models().get(LlmProvider.GROK);
         return mutateClient(baseChatModel,
-                nameToLlm(appProperties.models().get(LlmProvider.GROK).llmModelName(), LLM_GROK_3_0),
-                appProperties.models().get(LlmProvider.GROK).apiConnection());
+                nameToLlm(providerModel.llmModelName(), LLM_GROK_3_0),
+                providerModel.apiConnection(),
+                providerModel.hedge());
     }
 
 
@@ -91,16 +106,20 @@ public class ChatServiceConfig {
      */
     @Bean
     public ChatClientWithChatMemory anthropicChatClient(AppProperties appProperties) {
+        AppProperties.ProviderModel providerModel = appProperties.models().get(LlmProvider.ANTHROPIC);
         return mutateAnthropicClient(
-                nameToLlm(appProperties.models().get(LlmProvider.ANTHROPIC).llmModelName(), LLM_ANTHROPIC_CLAUDE_4_5),
-                appProperties.models().get(LlmProvider.ANTHROPIC).apiConnection());
+                nameToLlm(providerModel.llmModelName(), LLM_ANTHROPIC_CLAUDE_4_5),
+                providerModel.apiConnection(),
+                providerModel.hedge());
     }
 
     @Bean
     public ChatClientWithChatMemory geminiChatClient(AppProperties appProperties, GeminiProperties geminiProperties) throws IOException {
+        AppProperties.ProviderModel providerModel = appProperties.models().get(LlmProvider.GEMINI);
         return mutateGeminiClient(
                 //the accessibility of models like 'gemini-3.0-pro-preview' in a location, like 'europe-north1' might change
-                nameToLlm(appProperties.models().get(LlmProvider.GEMINI).llmModelName(), LLM_GEMINI_2_5_PRO),
+                nameToLlm(providerModel.llmModelName(), LLM_GEMINI_2_5_PRO),
+                providerModel.hedge(),
                 geminiProperties);
     }
 
@@ -111,32 +130,76 @@ public class ChatServiceConfig {
                 .orElse(defaultModel);
     }
 
-    private ChatClientWithChatMemory mutateClient(OpenAiChatModel chatModel, LlmConfig llmConfig, AppProperties.ApiConnection apiConnection) {
+    private ChatClientWithChatMemory mutateClient(OpenAiChatModel chatModel, LlmConfig llmConfig, AppProperties.ApiConnection apiConnection,
+                                                  AppProperties.Hedge hedge) {
         OpenAiApi api = configOpenAiApi(apiConnection, llmConfig.getLlmProvider());
         OpenAiChatModel model = configChatModel(chatModel, api, llmConfig);
-        return createChatClient(llmConfig, model);
+        ChatMemory chatMemory = createChatMemory();
+        if (!hedge.enabled()) {
+            return new ChatClientWithChatMemory(createChatClient(llmConfig, model, chatMemory), chatMemory);
+        }
+        LlmConfig hedgeLlmConfig = hedgeLlm(hedge, llmConfig);
+        OpenAiApi hedgeApi = configOpenAiApi(hedgeApiConnection(hedge, apiConnection), llmConfig.getLlmProvider());
+        return new ChatClientWithChatMemory(createChatClient(llmConfig, model, chatMemory), chatMemory,
+                createChatClient(llmConfig, model, null),
+                createChatClient(hedgeLlmConfig, configChatModel(chatModel, hedgeApi, hedgeLlmConfig), null));
     }
 
-    private ChatClientWithChatMemory mutateAnthropicClient(LlmConfig llmConfig, AppProperties.ApiConnection apiConnection) {
+    private ChatClientWithChatMemory mutateAnthropicClient(LlmConfig llmConfig, AppProperties.ApiConnection apiConnection, AppProperties.Hedge hedge) {
         AnthropicApi api = configAnthropicApi(apiConnection, llmConfig.getLlmProvider());
         AnthropicChatModel model = configChatModel(api, llmConfig);
-        return createChatClient(llmConfig, model);
+        ChatMemory chatMemory = createChatMemory();
+        if (!hedge.enabled()) {
+            return new ChatClientWithChatMemory(createChatClient(llmConfig, model, chatMemory), chatMemory);
+        }
+        LlmConfig hedgeLlmConfig = hedgeLlm(hedge, llmConfig);
+        AnthropicApi hedgeApi = configAnthropicApi(hedgeApiConnection(hedge, apiConnection), llmConfig.getLlmProvider());
+        return new ChatClientWithChatMemory(createChatClient(llmConfig, model, chatMemory), chatMemory,
+                createChatClient(llmConfig, model, null),
+                createChatClient(hedgeLlmConfig, configChatModel(hedgeApi, hedgeLlmConfig), null));
     }
 
-    private ChatClientWithChatMemory mutateGeminiClient(LlmConfig llmConfig, GeminiProperties geminiProperties) throws IOException {
+    private ChatClientWithChatMemory mutateGeminiClient(LlmConfig llmConfig, AppProperties.Hedge hedge, GeminiProperties geminiProperties) throws IOException {
         VertexAiGeminiChatModel model = configVertexAiGeminiChatModel(llmConfig, geminiProperties);
-        return createChatClient(llmConfig, model);
+        ChatMemory chatMemory = createChatMemory();
+        if (!hedge.enabled()) {
+            return new ChatClientWithChatMemory(createChatClient(llmConfig, model, chatMemory), chatMemory);
+        }
+        //the endpoint is given by the vertex project and location, so only the model can be changed
+        LlmConfig hedgeLlmConfig = hedgeLlm(hedge, llmConfig);
+        return new ChatClientWithChatMemory(createChatClient(llmConfig, model, chatMemory), chatMemory,
+                createChatClient(llmConfig, model, null),
+                createChatClient(hedgeLlmConfig, configVertexAiGeminiChatModel(hedgeLlmConfig, geminiProperties), null));
+    }
+
+    private LlmConfig hedgeLlm(AppProperties.Hedge hedge, LlmConfig llmConfig) {
+        LlmConfig hedgeLlmConfig = nameToLlm(hedge.llmModelName(), llmConfig);
+        log.info("Hedges of provider {} are sent to model {}", llmConfig.getLlmProvider(), hedgeLlmConfig.getName());
+        return hedgeLlmConfig;
     }
 
-    private ChatClientWithChatMemory createChatClient(LlmConfig llmConfig, ChatModel model) {
-        ChatMemory chatMemory = MessageWindowChatMemory.builder()
+    private AppProperties.ApiConnection hedgeApiConnection(AppProperties.Hedge hedge, AppProperties.ApiConnection apiConnection) {
+        return hedge.apiConnection() != null ? hedge.apiConnection() : apiConnection;
+    }
+
+    private ChatMemory createChatMemory() {
+        return MessageWindowChatMemory.builder()
                 .build();
+    }
+
+    /**
+     * @param chatMemory the chat memory read and written by the client, null for a client sent the history with the prompt,
+     *                   like a hedged call, where only the first answer is written to the chat memory
+     */
+    private ChatClient createChatClient(LlmConfig llmConfig, ChatModel model, ChatMemory chatMemory) {
         ChatClient.Builder builder = ChatClient.builder(model)
-                .defaultSystem(llmConfig.getSystem())
-                .defaultAdvisors(MessageChatMemoryAdvisor.builder(
-                                chatMemory)
-                        .build())
-                .defaultAdvisors(new SimpleLoggerAdvisor());
+                .defaultSystem(llmConfig.getSystem());
+        if (chatMemory != null) {
+            builder.defaultAdvisors(MessageChatMemoryAdvisor.builder(
+                            chatMemory)
+                    .build());
+        }
+        builder.defaultAdvisors(new SimpleLoggerAdvisor());
         if (LLM_TOOL_CALLS_SUPPORTED.contains(llmConfig.getLlmProvider())) {
             //if system and tool description are consistent, then it works for Anthropic, Gemini but not OpenAI
             //triggered infinite loop for GROK tool calls, should filter to only be used for UserMessage
@@ -146,7 +209,7 @@ public class ChatServiceConfig {
         } else {
             log.info("LLM provider {} does not support tool calls, skipping", llmConfig.getLlmProvider());
         }
-        return new ChatClientWithChatMemory(builder.build(), chatMemory);
+        return builder.build();
     }
 
     private VertexAiGeminiChatModel configVertexAiGeminiChatModel(LlmConfig llmConfig, GeminiProperties geminiProperties) throws IOException {
@@ -175,6 +238,7 @@ public class ChatServiceConfig {
         return baseOpenAiApi.mutate()
                 .baseUrl(apiConnection.url())
                 .apiKey(apiConnection.key())
+                .responseErrorHandler(new ProviderResponseErrorHandler())
                 .build();
     }
 
@@ -183,16 +247,20 @@ public class ChatServiceConfig {
         return AnthropicApi.builder()
                 .baseUrl(apiConnection.url())
                 .apiKey(apiConnection.key())
+                .responseErrorHandler(new ProviderResponseErrorHandler())
                 .build();
     }
 
     private OpenAiChatModel configChatModel(OpenAiChatModel chatModel, OpenAiApi api, LlmConfig llmConfig) {
         return chatModel.mutate()
                 .openAiApi(api)
+                .retryTemplate(noRetryTemplate)
                 .defaultOptions(OpenAiChatOptions.builder()
                         .model(llmConfig.getName())
                         .maxTokens(llmConfig.getMaxTokens())
                         .temperature(llmConfig.getTemperature())
+                        //token usage is only sent in the last chunk of a stream when asked for
+                        .streamUsage(true)
                         .build())
                 .build();
     }
@@ -200,6 +268,7 @@ public class ChatServiceConfig {
     private AnthropicChatModel configChatModel(AnthropicApi api, LlmConfig llmConfig) {
         return AnthropicChatModel.builder()
                 .anthropicApi(api)
+                .retryTemplate(noRetryTemplate)
                 .defaultOptions(AnthropicChatOptions.builder()
                         .model(llmConfig.getName())
                         //maxTokens must be set explicitly for Anthropic to avoid: "invalid_request_error","message":"max_tokens: Field required"
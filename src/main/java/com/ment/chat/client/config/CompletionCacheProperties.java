@@ -0,0 +1,23 @@
+package com.ment.chat.client.config;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the cache of completions, an identical prompt to the same provider and model is answered from the cache.
+ *
+ * @param enabled some prompts, like "what time is it", should not be cached, it can also be turned off per request
+ * @param maxSize max number of cached completions, the least valuable are evicted
+ * @param ttl     time a completion is cached after it was received
+ */
+@ConfigurationProperties(prefix = "app.completion-cache")
+@Validated
+public record CompletionCacheProperties(@NotNull @DefaultValue("true") Boolean enabled,
+                                        @NotNull @Positive @DefaultValue("10000") Long maxSize,
+                                        @NotNull @DefaultValue("1h") Duration ttl) {
+}
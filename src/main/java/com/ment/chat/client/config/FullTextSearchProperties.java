@@ -0,0 +1,42 @@
+package com.ment.chat.client.config;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Configuration of the searches for a part of a prompt or a completion, answered by a full-text index instead of a table scan.
+ *
+ * @param engine          the full-text index searched
+ * @param maxHits         max number of prompts found by a search, the most relevant first
+ * @param indexDirectory  directory of the Lucene index
+ * @param refreshInterval max time before a written prompt or completion is found by the Lucene index
+ * @param commitInterval  time between the commits of the Lucene index to disk
+ * @param catchUp         at startup the prompts and completions prompted this long before the last commit are indexed again,
+ *                        so the writes after the last commit and the late completions are not lost by a crash
+ */
+@ConfigurationProperties(prefix = "app.full-text-search")
+@Validated
+public record FullTextSearchProperties(@NotNull @DefaultValue("ORACLE_TEXT") Engine engine,
+                                       @NotNull @Positive @DefaultValue("10000") Integer maxHits,
+                                       @NotNull @DefaultValue("search-index") Path indexDirectory,
+                                       @NotNull @DefaultValue("1s") Duration refreshInterval,
+                                       @NotNull @DefaultValue("1m") Duration commitInterval,
+                                       @NotNull @DefaultValue("1h") Duration catchUp) {
+
+    public enum Engine {
+        /**
+         * the Oracle Text CONTEXT indexes of the prompts and completions
+         */
+        ORACLE_TEXT,
+        /**
+         * an embedded Lucene index on local disk, for H2 and other databases, maintained as prompts and completions are written
+         */
+        LUCENE
+    }
+}
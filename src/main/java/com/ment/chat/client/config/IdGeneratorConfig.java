@@ -0,0 +1,37 @@
+package com.ment.chat.client.config;
+
+import com.ment.chat.client.service.UuidV7Generator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.JdkIdGenerator;
+
+/**
+ * The generator of the prompt and completion ids, chosen by {@code app.id-generator}.
+ */
+@Configuration
+@Slf4j
+public class IdGeneratorConfig {
+
+    /**
+     * Time-ordered ids, new rows are inserted next to each other in the primary key indexes.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app", name = "id-generator", havingValue = "UUID_V7", matchIfMissing = true)
+    public IdGenerator uuidV7IdGenerator() {
+        log.info("Prompt and completion ids are time-ordered UUIDv7");
+        return new UuidV7Generator();
+    }
+
+    /**
+     * Random ids, as by former versions.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app", name = "id-generator", havingValue = "RANDOM")
+    public IdGenerator randomIdGenerator() {
+        log.info("Prompt and completion ids are random UUIDv4");
+        return new JdkIdGenerator();
+    }
+}
@@ -0,0 +1,23 @@
+package com.ment.chat.client.config;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the cache of interactions, the stored prompts and completions are never updated, so recent interactions are read from memory.
+ *
+ * @param enabled read interactions from the cache
+ * @param maxSize max number of cached interactions, per prompt id and per completion id
+ * @param ttl     time an interaction is cached after it was loaded or last changed
+ */
+@ConfigurationProperties(prefix = "app.interaction-cache")
+@Validated
+public record InteractionCacheProperties(@NotNull @DefaultValue("true") Boolean enabled,
+                                         @NotNull @Positive @DefaultValue("10000") Long maxSize,
+                                         @NotNull @DefaultValue("1h") Duration ttl) {
+}
@@ -0,0 +1,45 @@
+package com.ment.chat.client.config;
+
+import com.ment.chat.client.model.enums.LlmProvider;
+import com.ment.chat.client.model.enums.LlmStatus;
+import com.ment.chat.client.service.ProviderHealthProber;
+import com.ment.chat.client.service.ProviderProbeResult;
+import org.springframework.boot.actuate.health.CompositeHealthContributor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+@Configuration
+public class ProviderHealthConfig {
+
+    /**
+     * A health indicator per provider under the health component 'llmProviders', from the latest probe of the provider.
+     * Not part of the readiness group, the service is ready when some providers are down.
+     */
+    @Bean
+    public CompositeHealthContributor llmProvidersHealthContributor(ProviderHealthProber providerHealthProber) {
+        Map<String, HealthIndicator> healthIndicators = new LinkedHashMap<>();
+        for (LlmProvider llmProvider : LlmProvider.values()) {
+            healthIndicators.put(llmProvider.name().toLowerCase(Locale.ROOT), () -> providerHealthProber.getProbeResult(llmProvider)
+                    .map(ProviderHealthConfig::toHealth)
+                    .orElseGet(() -> Health.unknown().build()));
+        }
+        return CompositeHealthContributor.fromMap(healthIndicators);
+    }
+
+    private static Health toHealth(ProviderProbeResult probeResult) {
+        Health.Builder builder = probeResult.status() == LlmStatus.AVAILABLE
+                ? Health.up()
+                : Health.down().withDetail("error", String.valueOf(probeResult.error()));
+        return builder
+                .withDetail("llm", probeResult.llm())
+                .withDetail("probedAt", probeResult.probedAt().toString())
+                .withDetail("latencyMs", probeResult.latencyMs())
+                .build();
+    }
+}
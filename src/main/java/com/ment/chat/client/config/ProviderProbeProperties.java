@@ -0,0 +1,20 @@
+package com.ment.chat.client.config;
+
+import jakarta.validation.constraints.NotNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the background probing of the providers, the status of the providers is served from the latest probes.
+ *
+ * @param interval time between the end of a probe of all providers and the start of the next
+ * @param timeout  max time a provider is given to answer a probe
+ */
+@ConfigurationProperties(prefix = "app.provider-probe")
+@Validated
+public record ProviderProbeProperties(@NotNull @DefaultValue("30s") Duration interval,
+                                      @NotNull @DefaultValue("5s") Duration timeout) {
+}
@@ -0,0 +1,59 @@
+package com.ment.chat.client.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the scheduler running the blocking calls to the LLM providers.
+ *
+ * @param maxConcurrentCalls max number of provider calls in flight, further calls are queued until a call has finished
+ * @param threadNamePrefix   prefix of the virtual threads running the calls
+ * @param adaptiveLimit      adaptive limit of concurrent calls per provider
+ * @param circuitBreaker     circuit breaker per provider
+ */
+@ConfigurationProperties(prefix = "app.provider-scheduler")
+@Validated
+public record ProviderSchedulerProperties(@NotNull @Positive @DefaultValue("1000") Integer maxConcurrentCalls,
+                                          @NotNull @DefaultValue("provider-call-") String threadNamePrefix,
+                                          @NotNull @Valid @DefaultValue AdaptiveLimit adaptiveLimit,
+                                          @NotNull @Valid @DefaultValue CircuitBreaker circuitBreaker) {
+
+    /**
+     * The limit of each provider starts at its max concurrency and adapts to overload errors, 429 and 5xx,
+     * and to the latency per completion token of calls and the time to first token of streams.
+     *
+     * @param enabled          when disabled, the max concurrency of each provider is a fixed limit
+     * @param minLimit         the limit is never decreased below this value
+     * @param backoffRatio     the limit is multiplied with this ratio when the provider is overloaded or slow
+     * @param latencyTolerance the provider is slow when its smoothed latency is above the min latency of its recent calls times this tolerance
+     */
+    public record AdaptiveLimit(@NotNull @DefaultValue("true") Boolean enabled,
+                                @NotNull @Positive @DefaultValue("1") Integer minLimit,
+                                @NotNull @DecimalMin("0.1") @DecimalMax("1.0") @DefaultValue("0.75") Double backoffRatio,
+                                @NotNull @DecimalMin("1.0") @DefaultValue("2.0") Double latencyTolerance) {
+    }
+
+    /**
+     * The circuit of a provider opens when too many of its latest calls failed, then calls fail fast until the open duration has passed.
+     *
+     * @param enabled            when disabled, the circuit never opens
+     * @param slidingWindowSize  number of latest calls the failures are counted in
+     * @param failureThreshold   number of failures in the sliding window opening the circuit
+     * @param openDuration       time the circuit is open before trial calls are let through
+     * @param halfOpenTrialCalls number of trial calls that must succeed to close the circuit again
+     */
+    public record CircuitBreaker(@NotNull @DefaultValue("true") Boolean enabled,
+                                 @NotNull @Positive @DefaultValue("10") Integer slidingWindowSize,
+                                 @NotNull @Positive @DefaultValue("5") Integer failureThreshold,
+                                 @NotNull @DefaultValue("30s") Duration openDuration,
+                                 @NotNull @Positive @DefaultValue("2") Integer halfOpenTrialCalls) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.ment.chat.client.config;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Period;
+
+/**
+ * Configuration of the retention of the prompts and completions, older interactions are removed by a scheduled job.
+ *
+ * @param enabled   remove the interactions older than the retention period
+ * @param strategy  how the old interactions are removed
+ * @param keep      the retention period, the age of the oldest prompt kept, like 12m for twelve months
+ * @param cron      when the job runs
+ * @param batchSize max number of prompts deleted with their completions in one transaction
+ */
+@ConfigurationProperties(prefix = "app.retention")
+@Validated
+public record RetentionProperties(@NotNull @DefaultValue("false") Boolean enabled,
+                                  @NotNull @DefaultValue("DROP_PARTITIONS") Strategy strategy,
+                                  @NotNull @DefaultValue("12m") Period keep,
+                                  @NotBlank @DefaultValue("0 30 3 * * *") String cron,
+                                  @NotNull @Positive @DefaultValue("1000") Integer batchSize) {
+
+    public enum Strategy {
+        /**
+         * Oracle, the monthly partitions of the prompts older than the retention period are dropped, the completions with them
+         */
+        DROP_PARTITIONS,
+        /**
+         * H2 and other databases, the old prompts and their completions are deleted in batches
+         */
+        DELETE_BATCHES
+    }
+}
@@ -0,0 +1,46 @@
+package com.ment.chat.client.config;
+
+import com.ment.chat.client.model.enums.LlmProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.MetadataMode;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.openai.OpenAiEmbeddingModel;
+import org.springframework.ai.openai.OpenAiEmbeddingOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.support.RetryTemplate;
+
+import java.util.Optional;
+
+@Configuration
+@Slf4j
+public class SemanticCacheConfig {
+
+    /**
+     * Embeds the prompts of the semantic cache, by default with Ollama through its OpenAI compatible api like the chat models.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.semantic-cache", name = "enabled", havingValue = "true")
+    public EmbeddingModel semanticCacheEmbeddingModel(SemanticCacheProperties semanticCacheProperties, AppProperties appProperties) {
+        AppProperties.ApiConnection apiConnection = Optional.ofNullable(semanticCacheProperties.apiConnection())
+                .or(() -> Optional.ofNullable(appProperties.models().get(LlmProvider.OLLAMA))
+                        .map(AppProperties.ProviderModel::apiConnection))
+                .orElseThrow(() -> new IllegalStateException("No api connection for the embedding model of the semantic cache"));
+        log.info("Prompts of the semantic cache are embedded by model {} at {}", semanticCacheProperties.embeddingModelName(), apiConnection.url());
+        OpenAiApi openAiApi = OpenAiApi.builder()
+                .baseUrl(apiConnection.url())
+                .apiKey(apiConnection.key())
+                .build();
+        //a failed embedding is a cache miss, the lookup is not retried
+        return new OpenAiEmbeddingModel(openAiApi,
+                MetadataMode.EMBED,
+                OpenAiEmbeddingOptions.builder()
+                        .model(semanticCacheProperties.embeddingModelName())
+                        .build(),
+                RetryTemplate.builder()
+                        .maxAttempts(1)
+                        .build());
+    }
+}
@@ -0,0 +1,33 @@
+package com.ment.chat.client.config;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the semantic cache of completions, a prompt similar to an answered prompt is answered with the stored completion.
+ *
+ * @param enabled             opt in, the prompts are embedded by a local model which must be available
+ * @param similarityThreshold min cosine similarity of the embeddings of the prompts, too low and a different question gets the same answer
+ * @param maxSize             max number of prompts in the index, also the number of latest prompts indexed at startup
+ * @param lookupTimeout       max time to embed and look up a prompt before the provider is called
+ * @param embeddingModelName  the embedding model
+ * @param apiConnection       the OpenAI compatible api of the embedding model, the connection of Ollama when not set
+ */
+@ConfigurationProperties(prefix = "app.semantic-cache")
+@Validated
+public record SemanticCacheProperties(@NotNull @DefaultValue("false") Boolean enabled,
+                                      @NotNull @DecimalMin("0.0") @DecimalMax("1.0") @DefaultValue("0.92") Double similarityThreshold,
+                                      @NotNull @Positive @DefaultValue("10000") Integer maxSize,
+                                      @NotNull @DefaultValue("500ms") Duration lookupTimeout,
+                                      @NotBlank @DefaultValue("nomic-embed-text") String embeddingModelName,
+                                      @Valid AppProperties.ApiConnection apiConnection) {
+}
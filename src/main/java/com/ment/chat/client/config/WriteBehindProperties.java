@@ -0,0 +1,44 @@
+package com.ment.chat.client.config;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the write-behind of prompts and completions, which are queued and inserted in batches by a background writer.
+ *
+ * @param enabled       when disabled, prompts and completions are saved one by one by the calling thread
+ * @param ack           when a write is acknowledged to the caller
+ * @param queueCapacity max number of prompts and completions waiting to be written
+ * @param batchSize     max number of prompts and completions inserted in one transaction
+ * @param flushInterval max time a write waits for the batch to fill up
+ * @param offerTimeout  max time a caller waits for room in a full queue, before the write is rejected
+ * @param drainTimeout  max time to write the queued prompts and completions at shutdown
+ * @param ackTimeout    max time a caller waits for its batch to be committed with SYNC ack, before the write is reported as not done
+ */
+@ConfigurationProperties(prefix = "app.write-behind")
+@Validated
+public record WriteBehindProperties(@NotNull @DefaultValue("true") Boolean enabled,
+                                    @NotNull @DefaultValue("ASYNC") Ack ack,
+                                    @NotNull @Positive @DefaultValue("10000") Integer queueCapacity,
+                                    @NotNull @Positive @DefaultValue("100") Integer batchSize,
+                                    @NotNull @DefaultValue("50ms") Duration flushInterval,
+                                    @NotNull @DefaultValue("1s") Duration offerTimeout,
+                                    @NotNull @DefaultValue("30s") Duration drainTimeout,
+                                    @NotNull @DefaultValue("10s") Duration ackTimeout) {
+
+    public enum Ack {
+        /**
+         * the caller waits until its batch is committed, and gets the error if it failed
+         */
+        SYNC,
+        /**
+         * the caller continues when the write is queued, failed writes are logged and counted
+         */
+        ASYNC
+    }
+}
@@ -1,16 +1,19 @@
 package com.ment.chat.client.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ment.chat.client.aop.LogExecutionTime;
 import com.ment.chat.client.model.enums.LlmProvider;
 import com.ment.chat.client.model.in.CreateCompletionByProviderRequest;
 import com.ment.chat.client.model.in.CreateCompletionsByProvidersAggregateRequest;
 import com.ment.chat.client.model.in.CreateCompletionsByProvidersRequest;
 import com.ment.chat.client.model.out.CreateCompletionByProviderResponse;
+import com.ment.chat.client.model.out.CreateCompletionEvent;
 import com.ment.chat.client.model.out.CreateCompletionsByProvidersAggregateResponse;
 import com.ment.chat.client.model.out.CreateCompletionsByProvidersResponse;
 import com.ment.chat.client.model.out.GetChatResponse;
 import com.ment.chat.client.model.out.GetInteractionResponse;
 import com.ment.chat.client.model.out.GetInteractionsResponse;
+import com.ment.chat.client.model.out.GetLlmProvidersStatsResponse;
 import com.ment.chat.client.model.out.GetLlmProvidersStatusResponse;
 import com.ment.chat.client.model.out.GetSessionMessagesResponse;
 import com.ment.chat.client.service.ChatService;
@@ -22,10 +25,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -35,10 +43,21 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static com.ment.chat.client.controller.ChatController.BASE_PATH;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_PROBLEM_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 @RestController
 @RequestMapping(
@@ -52,23 +71,33 @@ public class ChatController {
     public static final String PROVIDER_PATH = "/provider";
     public static final String PROVIDERS_PATH = "/providers";
     public static final String PROMPT_PATH = "/prompt";
+    public static final String STREAM_PATH = "/stream";
     public static final String PROVIDER_PROMPT_PATH = PROVIDER_PATH + PROMPT_PATH;
+    public static final String PROVIDER_PROMPT_STREAM_PATH = PROVIDER_PROMPT_PATH + STREAM_PATH;
     public static final String PROVIDERS_PROMPT_PATH = PROVIDERS_PATH + PROMPT_PATH;
+    public static final String PROVIDERS_PROMPT_STREAM_PATH = PROVIDERS_PROMPT_PATH + STREAM_PATH;
     public static final String PROVIDERS_PROMPT_AGGREGATE_PATH = PROVIDERS_PROMPT_PATH + "/aggregate";
+    public static final String PROVIDERS_PROMPT_RACE_PATH = PROVIDERS_PROMPT_PATH + "/race";
     public static final String PROVIDER_HAIKU_PATH = PROVIDER_PATH + "/haiku";
     public static final String PROMPT_CONTAINS_PATH = PROMPT_PATH + "/contains";
     public static final String COMPLETION_PATH = "/completion";
     public static final String COMPLETION_CONTAINS_PATH = COMPLETION_PATH + "/contains";
     public static final String CHAT_PATH = "/chat";
     public static final String PROVIDERS_STATUS_PATH = PROVIDERS_PATH + "/status";
+    public static final String PROVIDERS_STATS_PATH = PROVIDERS_PATH + "/stats";
     public static final String HISTORY_PATH = "/history";
     public static final String CLEAR_PATH = "/clear";
     public static final String CLEAR_HISTORY_PATH = HISTORY_PATH + CLEAR_PATH;
+    public static final String DEFAULT_PAGE_LIMIT = "100";
+    public static final String MAX_PAGE_LIMIT = "1000";
 
     private final ChatService chatService;
 
-    public ChatController(ChatService chatService) {
+    private final ObjectMapper objectMapper;
+
+    public ChatController(ChatService chatService, ObjectMapper objectMapper) {
         this.chatService = chatService;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(
@@ -95,7 +124,7 @@ public class ChatController {
     })
     @PostMapping(value = PROVIDER_HAIKU_PATH)
     @LogExecutionTime
-    public ResponseEntity<CreateCompletionByProviderResponse> createHaiku(
+    public Mono<ResponseEntity<CreateCompletionByProviderResponse>> createHaiku(
             @RequestParam LlmProvider provider,
             @Parameter(
                     description = "style of Haiku",
@@ -107,12 +136,12 @@ public class ChatController {
                     schema = @Schema(maxLength = 100)  // This shows in Swagger UI
             )
             @RequestParam(defaultValue = "christmas") @Size(max = 100) String topic) {
-        return ResponseEntity.ok(chatService.createCompletionByProvider(
-                CreateCompletionByProviderRequest.builder()
-                        .prompt(String.format("Write a %s Haiku about %s!", style, topic))
-                        .llmProvider(provider)
-                        .build()
-        ));
+        return chatService.createCompletionByProvider(
+                        CreateCompletionByProviderRequest.builder()
+                                .prompt(String.format("Write a %s Haiku about %s!", style, topic))
+                                .llmProvider(provider)
+                                .build())
+                .map(ResponseEntity::ok);
     }
 
     @Operation(
@@ -147,9 +176,43 @@ public class ChatController {
     })
     @PostMapping(value = PROVIDER_PROMPT_PATH, consumes = {APPLICATION_JSON_VALUE})
     @LogExecutionTime
-    public ResponseEntity<CreateCompletionByProviderResponse> createCompletionByProvider(
+    public Mono<ResponseEntity<CreateCompletionByProviderResponse>> createCompletionByProvider(
+            @RequestBody @Valid CreateCompletionByProviderRequest createCompletionByProviderRequest) {
+        return chatService.createCompletionByProvider(createCompletionByProviderRequest)
+                .map(ResponseEntity::ok);
+    }
+
+    @Operation(
+            summary = "Stream a completion for a specified prompt and given LLM provider.",
+            description = """
+                    Streams the interaction completion from the specified LLM provider as server sent events.
+                    Each token is sent in a 'token' event as it arrives, the stored completion with time to first token
+                    is sent in a final 'done' event, or an 'error' event if the provider fails.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Stream of events answering the interaction prompt",
+                    content = @Content(
+                            mediaType = TEXT_EVENT_STREAM_VALUE,
+                            schema = @Schema(implementation = CreateCompletionEvent.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid prompt",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @PostMapping(value = PROVIDER_PROMPT_STREAM_PATH, consumes = {APPLICATION_JSON_VALUE}, produces = {TEXT_EVENT_STREAM_VALUE, APPLICATION_PROBLEM_JSON_VALUE})
+    public Flux<ServerSentEvent<CreateCompletionEvent>> streamCompletionByProvider(
             @RequestBody @Valid CreateCompletionByProviderRequest createCompletionByProviderRequest) {
-        return ResponseEntity.ok(chatService.createCompletionByProvider(createCompletionByProviderRequest));
+        return chatService.streamCompletionByProvider(createCompletionByProviderRequest)
+                .map(this::toServerSentEvent);
     }
 
     @Operation(
@@ -184,8 +247,91 @@ public class ChatController {
     })
     @PostMapping(value = PROVIDERS_PROMPT_PATH, consumes = {APPLICATION_JSON_VALUE})
     @LogExecutionTime
-    public ResponseEntity<CreateCompletionsByProvidersResponse> createCompletionsByProviders(@RequestBody @Valid CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest) {
-        return ResponseEntity.ok(chatService.createCompletionsByProviders(createCompletionsByProvidersRequest));
+    public Mono<ResponseEntity<CreateCompletionsByProvidersResponse>> createCompletionsByProviders(@RequestBody @Valid CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest) {
+        return chatService.createCompletionsByProviders(createCompletionsByProvidersRequest)
+                .map(ResponseEntity::ok);
+    }
+
+    @Operation(
+            summary = "Create a completion for a specified prompt from the fastest of given LLM providers.",
+            description = """
+                    Sends the prompt to all given LLM providers and returns the first successful completion.
+                    The calls to the other providers are cancelled and recorded with status CANCELLED against the same prompt.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Successful completion of prompt from the fastest provider",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = CreateCompletionByProviderResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid prompt",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "502",
+                    description = "None of the providers answered",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Internal server error",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @PostMapping(value = PROVIDERS_PROMPT_RACE_PATH, consumes = {APPLICATION_JSON_VALUE})
+    @LogExecutionTime
+    public Mono<ResponseEntity<CreateCompletionByProviderResponse>> createCompletionByFastestProvider(@RequestBody @Valid CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest) {
+        return chatService.createCompletionByFastestProvider(createCompletionsByProvidersRequest)
+                .map(ResponseEntity::ok);
+    }
+
+    @Operation(
+            summary = "Stream completions for a specified prompt for given LLM providers.",
+            description = """
+                    Merges the streamed completions from all given LLM providers into one stream of server sent events.
+                    Each event is tagged with its provider, so answers from fast providers are seen without waiting for the slowest.
+                    Each provider ends with a 'done' event holding the stored completion with model, token usage and latency,
+                    or an 'error' event if the provider fails.
+                    """
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Merged stream of events from the providers",
+                    content = @Content(
+                            mediaType = TEXT_EVENT_STREAM_VALUE,
+                            schema = @Schema(implementation = CreateCompletionEvent.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid prompt",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @PostMapping(value = PROVIDERS_PROMPT_STREAM_PATH, consumes = {APPLICATION_JSON_VALUE}, produces = {TEXT_EVENT_STREAM_VALUE, APPLICATION_PROBLEM_JSON_VALUE})
+    public Flux<ServerSentEvent<CreateCompletionEvent>> streamCompletionsByProviders(
+            @RequestBody @Valid CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest) {
+        return chatService.streamCompletionsByProviders(createCompletionsByProvidersRequest)
+                .map(this::toServerSentEvent);
     }
 
     @Operation(
@@ -220,8 +366,9 @@ public class ChatController {
     })
     @PostMapping(value = PROVIDERS_PROMPT_AGGREGATE_PATH, consumes = {APPLICATION_JSON_VALUE})
     @LogExecutionTime
-    public ResponseEntity<CreateCompletionsByProvidersAggregateResponse> createAggregateCompletionByProviders(@RequestBody @Valid CreateCompletionsByProvidersAggregateRequest createCompletionsByProvidersRequest) {
-        return ResponseEntity.ok(chatService.createCompletionsByProvidersAggregate(createCompletionsByProvidersRequest));
+    public Mono<ResponseEntity<CreateCompletionsByProvidersAggregateResponse>> createAggregateCompletionByProviders(@RequestBody @Valid CreateCompletionsByProvidersAggregateRequest createCompletionsByProvidersRequest) {
+        return chatService.createCompletionsByProvidersAggregate(createCompletionsByProvidersRequest)
+                .map(ResponseEntity::ok);
     }
 
     @Operation(
@@ -281,7 +428,7 @@ public class ChatController {
 
     @Operation(
             summary = "Get the completions of an earlier prompt containing the sub-prompt.",
-            description = "Retrieves the completions from the LLM providers based on the given sub-prompt. If no match an empty list is returned."
+            description = "Retrieves the completions from the LLM providers based on the given sub-prompt, searched as a phrase of words in a full-text index, the most relevant first. If no match an empty list is returned."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -321,8 +468,36 @@ public class ChatController {
                             minLength = 5
                     )
             )
+            @PathVariable("part-of-prompt") @NotNull @Size(min = 5, max = 1000) String partOfPrompt,
+            @Parameter(
+                    description = "cursor of the page, the next_cursor of the previous page, not set for the first page",
+                    schema = @Schema(maxLength = 200)  // This shows in Swagger UI
+            )
+            @RequestParam(required = false) @Size(max = 200) String after,
+            @Parameter(
+                    description = "max number of interactions in the page",
+                    schema = @Schema(minimum = "1", maximum = MAX_PAGE_LIMIT)  // This shows in Swagger UI
+            )
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) @Min(1) @Max(1000) int limit) {
+        return ResponseEntity.ok(chatService.getChatByPrompt(partOfPrompt, after, limit));
+    }
+
+    @Operation(
+            summary = "Stream the completions of earlier prompts containing the sub-prompt.",
+            description = "Streams the interactions with a prompt containing the sub-prompt as newline delimited json, one interaction per line, the most relevant first."
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Interactions containing the sub-prompt, none if no match",
+            content = @Content(
+                    mediaType = APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = GetInteractionResponse.class)
+            )
+    )
+    @GetMapping(value = PROMPT_CONTAINS_PATH + "/{part-of-prompt}" + STREAM_PATH, produces = {APPLICATION_NDJSON_VALUE, APPLICATION_PROBLEM_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamInteractionsByPrompt(
             @PathVariable("part-of-prompt") @NotNull @Size(min = 5, max = 1000) String partOfPrompt) {
-        return ResponseEntity.ok(chatService.getChatByPrompt(partOfPrompt));
+        return toNdjson(consumer -> chatService.streamChatByPrompt(partOfPrompt, consumer));
     }
 
     @Operation(
@@ -382,7 +557,7 @@ public class ChatController {
 
     @Operation(
             summary = "Get the interactions of earlier interactions containing the sub-completion.",
-            description = "Retrieves the interactions from the LLM providers based on the given sub-completions. If no match an empty list is returned."
+            description = "Retrieves the interactions from the LLM providers based on the given sub-completions, searched as a phrase of words in a full-text index, the most relevant first. If no match an empty list is returned."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -422,8 +597,36 @@ public class ChatController {
                             minLength = 5
                     )
             )
+            @PathVariable("part-of-completion") @NotNull @Size(min = 5, max = 1000) String partOfCompletion,
+            @Parameter(
+                    description = "cursor of the page, the next_cursor of the previous page, not set for the first page",
+                    schema = @Schema(maxLength = 200)  // This shows in Swagger UI
+            )
+            @RequestParam(required = false) @Size(max = 200) String after,
+            @Parameter(
+                    description = "max number of interactions in the page",
+                    schema = @Schema(minimum = "1", maximum = MAX_PAGE_LIMIT)  // This shows in Swagger UI
+            )
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) @Min(1) @Max(1000) int limit) {
+        return ResponseEntity.ok(chatService.getInteractionsByCompletion(partOfCompletion, after, limit));
+    }
+
+    @Operation(
+            summary = "Stream the completions of earlier prompts with a completion containing the sub-completion.",
+            description = "Streams the interactions with a completion containing the sub-completion as newline delimited json, one interaction per line, the most relevant first."
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Interactions containing the sub-completion, none if no match",
+            content = @Content(
+                    mediaType = APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = GetInteractionResponse.class)
+            )
+    )
+    @GetMapping(value = COMPLETION_CONTAINS_PATH + "/{part-of-completion}" + STREAM_PATH, produces = {APPLICATION_NDJSON_VALUE, APPLICATION_PROBLEM_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamInteractionsByCompletion(
             @PathVariable("part-of-completion") @NotNull @Size(min = 5, max = 1000) String partOfCompletion) {
-        return ResponseEntity.ok(chatService.getInteractionsByCompletion(partOfCompletion));
+        return toNdjson(consumer -> chatService.streamInteractionsByCompletion(partOfCompletion, consumer));
     }
 
     @Operation(
@@ -475,8 +678,36 @@ public class ChatController {
                             maxLength = 36
                     )
             )
+            @PathVariable("chat-id") @NotNull @Size(max = 36) String chatId,
+            @Parameter(
+                    description = "cursor of the page, the next_cursor of the previous page, not set for the first page",
+                    schema = @Schema(maxLength = 200)  // This shows in Swagger UI
+            )
+            @RequestParam(required = false) @Size(max = 200) String after,
+            @Parameter(
+                    description = "max number of interactions in the page",
+                    schema = @Schema(minimum = "1", maximum = MAX_PAGE_LIMIT)  // This shows in Swagger UI
+            )
+            @RequestParam(defaultValue = DEFAULT_PAGE_LIMIT) @Min(1) @Max(1000) int limit) {
+        return ResponseEntity.ok(chatService.getChatByChatId(chatId, after, limit));
+    }
+
+    @Operation(
+            summary = "Stream the completions of earlier prompts with a given chat id.",
+            description = "Streams the interactions in the chat as newline delimited json, one interaction per line in the order of prompting."
+    )
+    @ApiResponse(
+            responseCode = "200",
+            description = "Interactions of the chat, none if the chat is unknown",
+            content = @Content(
+                    mediaType = APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = GetInteractionResponse.class)
+            )
+    )
+    @GetMapping(value = CHAT_PATH + "/{chat-id}" + STREAM_PATH, produces = {APPLICATION_NDJSON_VALUE, APPLICATION_PROBLEM_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamChatByChatId(
             @PathVariable("chat-id") @NotNull @Size(max = 36) String chatId) {
-        return ResponseEntity.ok(chatService.getChatByChatId(chatId));
+        return toNdjson(consumer -> chatService.streamChatByChatId(chatId, consumer));
     }
 
     @Operation(
@@ -502,8 +733,55 @@ public class ChatController {
             )
     })
     @GetMapping(value = PROVIDERS_STATUS_PATH)
-    public ResponseEntity<GetLlmProvidersStatusResponse> getAllStatuses() {
-        return ResponseEntity.ok(chatService.getAllProviderStatus());
+    public Mono<ResponseEntity<GetLlmProvidersStatusResponse>> getAllStatuses() {
+        return chatService.getAllProviderStatus()
+                .map(ResponseEntity::ok);
+    }
+
+    @Operation(
+            summary = "Get the statistics of all LLM providers.",
+            description = "Latency percentiles, tokens per second and token sums of the completions of each provider and model in a window of completion times, computed in the database."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Statistics of the LLMs with completions in the window",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = GetLlmProvidersStatsResponse.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Invalid window",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Internal server error",
+                    content = @Content(
+                            mediaType = "application/json",
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @GetMapping(value = PROVIDERS_STATS_PATH)
+    public ResponseEntity<GetLlmProvidersStatsResponse> getAllStats(
+            @Parameter(
+                    description = "start of the window of completion times, inclusive, default one day before the end",
+                    example = "2025-11-13T16:50:01+01:00"
+            )
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @Parameter(
+                    description = "end of the window of completion times, exclusive, default now",
+                    example = "2025-11-14T16:50:01+01:00"
+            )
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
+        OffsetDateTime end = Optional.ofNullable(to).orElseGet(OffsetDateTime::now);
+        return ResponseEntity.ok(chatService.getProviderStats(Optional.ofNullable(from).orElseGet(() -> end.minusDays(1)), end));
     }
 
     @Operation(
@@ -598,4 +876,28 @@ public class ChatController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * Each interaction is written as a line when read, so the response is never held in memory.
+     */
+    private ResponseEntity<StreamingResponseBody> toNdjson(Consumer<Consumer<GetInteractionResponse>> interactions) {
+        StreamingResponseBody body = outputStream -> interactions.accept(interaction -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(interaction));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private ServerSentEvent<CreateCompletionEvent> toServerSentEvent(CreateCompletionEvent event) {
+        return ServerSentEvent.<CreateCompletionEvent>builder()
+                .event(event.getEventType().name().toLowerCase())
+                .data(event)
+                .build();
+    }
+
 }
@@ -4,5 +4,52 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.ai.chat.model.ChatResponse;
 
-public record ChatResponseTimer(@Valid @NotNull ChatResponse chatResponse, Long executionTimeMs) {
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * The answer from a provider together with its timing.
+ *
+ * @param chatResponse        the answer from the provider
+ * @param executionTimeMs     total time until the complete answer was received
+ * @param timeToFirstTokenMs  time until the first token was received, only set for streamed answers
+ * @param timedOut            the provider did not answer before the deadline
+ * @param attempts            number of calls to the provider, more than 1 when retried
+ * @param backoffMs           total time waiting between the attempts
+ * @param cached              the answer is from the cache and not from the provider
+ * @param hedged              the answer is from the backup endpoint or model of the provider
+ */
+public record ChatResponseTimer(@Valid @NotNull ChatResponse chatResponse, Long executionTimeMs, Long timeToFirstTokenMs, boolean timedOut,
+                                int attempts, long backoffMs, boolean cached, boolean hedged) {
+
+    public ChatResponseTimer(ChatResponse chatResponse, Long executionTimeMs, Long timeToFirstTokenMs) {
+        this(chatResponse, executionTimeMs, timeToFirstTokenMs, false, 1, 0, false, false);
+    }
+
+    public ChatResponseTimer(ChatResponse chatResponse, Long executionTimeMs) {
+        this(chatResponse, executionTimeMs, null);
+    }
+
+    public static ChatResponseTimer timedOut(Duration deadline) {
+        return new ChatResponseTimer(new ChatResponse(List.of()), deadline.toMillis(), null, true, 1, 0, false, false);
+    }
+
+    public ChatResponseTimer withAttempts(int attempts, long backoffMs) {
+        return new ChatResponseTimer(chatResponse, executionTimeMs, timeToFirstTokenMs, timedOut, attempts, backoffMs, cached, hedged);
+    }
+
+    /**
+     * @return the answer from the backup of the provider
+     */
+    public ChatResponseTimer asHedge() {
+        return new ChatResponseTimer(chatResponse, executionTimeMs, timeToFirstTokenMs, timedOut, attempts, backoffMs, cached, true);
+    }
+
+    /**
+     * @param lookupTimeMs the time to find the answer in the cache
+     * @return the cached answer, no provider was called
+     */
+    public ChatResponseTimer asCached(long lookupTimeMs) {
+        return new ChatResponseTimer(chatResponse, lookupTimeMs, null, false, 0, 0, true, false);
+    }
 }
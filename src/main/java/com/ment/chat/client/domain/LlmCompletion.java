@@ -1,19 +1,25 @@
 package com.ment.chat.client.domain;
 
+import com.ment.chat.client.model.enums.CompletionStatus;
 import com.ment.chat.client.model.enums.LlmProvider;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.springframework.data.domain.Persistable;
 
 import java.time.OffsetDateTime;
 
@@ -24,7 +30,7 @@ import java.time.OffsetDateTime;
 @Builder
 @ToString
 
-public class LlmCompletion {
+public class LlmCompletion implements Persistable<String> {
 
     @Column(name = "COMPLETION_ID", nullable = false, updatable = false, length = 36)
     @Id
@@ -33,29 +39,80 @@ public class LlmCompletion {
     @Column(name = "PROMPT_ID", nullable = false, updatable = false, length = 36)
     private String promptId;
 
-    @Column(name = "COMPLETION", nullable = false, updatable = false)
+    //no completion when cancelled
+    @Column(name = "COMPLETION", updatable = false)
     @Lob
     private String completion;
 
-    @Column(name = "LLM", nullable = false, updatable = false, length = 100)
+    @Column(name = "LLM", updatable = false, length = 100)
     private String llm;
 
     @Column(name = "LLM_PROVIDER", nullable = false, updatable = false, length = 100)
     @Enumerated(EnumType.STRING)
     private LlmProvider llmProvider;
 
-    @Column(name = "TOKEN_USAGE", nullable = false, updatable = false, length = 128)
+    @Column(name = "TOKEN_USAGE", updatable = false, length = 128)
     private String tokenUsage;
 
+    //the token usage as numbers, for the statistics of the providers
+    @Column(name = "PROMPT_TOKENS", updatable = false)
+    private Integer promptTokens;
+
+    @Column(name = "COMPLETION_TOKENS", updatable = false)
+    private Integer completionTokens;
+
+    @Column(name = "TOTAL_TOKENS", updatable = false)
+    private Integer totalTokens;
+
     @Column(name = "EXECUTION_TIME_MS", nullable = false, updatable = false)
     private Long executionTimeMs;
 
+    @Column(name = "TIME_TO_FIRST_TOKEN_MS", updatable = false)
+    private Long timeToFirstTokenMs;
+
+    @Column(name = "ATTEMPTS", nullable = false, updatable = false)
+    private Integer attempts;
+
+    @Column(name = "BACKOFF_MS", nullable = false, updatable = false)
+    private Long backoffMs;
+
+    @Column(name = "CACHED", nullable = false, updatable = false)
+    private Boolean cached;
+
+    //answered by the backup endpoint or model of the provider
+    @Column(name = "HEDGED", nullable = false, updatable = false)
+    private Boolean hedged;
+
+    @Column(name = "STATUS", nullable = false, updatable = false, length = 20)
+    @Enumerated(EnumType.STRING)
+    private CompletionStatus status;
+
     @Column(name = "COMPLETED_AT", nullable = false, updatable = false)
     private OffsetDateTime completedAt;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "PROMPT_ID", referencedColumnName = "PROMPT_ID", nullable = false, insertable = false, updatable = false)
     // Needs to exclude, otherwise a toString() causes an infinite loop between InteractionPrompt and InteractionCompletion
     @ToString.Exclude
     private LlmPrompt llmPrompt;
+
+    //the id is assigned, so a save inserts the entity without first selecting it
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public String getId() {
+        return completionId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
 }
@@ -0,0 +1,30 @@
+package com.ment.chat.client.domain;
+
+import com.ment.chat.client.model.enums.LlmProvider;
+
+/**
+ * The completions of a model aggregated in the database over a window of completion times.
+ *
+ * @param llmProvider          the provider that answered
+ * @param llm                  the model that answered
+ * @param completions          number of completions
+ * @param p50ExecutionTimeMs   median execution time in ms
+ * @param p95ExecutionTimeMs   95th percentile of the execution time in ms
+ * @param promptTokens         sum of the prompt tokens
+ * @param completionTokens     sum of the completion tokens
+ * @param totalTokens          sum of the total tokens
+ * @param tokenExecutionTimeMs sum of the execution times of the completions with a number of completion tokens
+ */
+public record LlmCompletionStats(LlmProvider llmProvider, String llm, Long completions,
+                                 Double p50ExecutionTimeMs, Double p95ExecutionTimeMs,
+                                 Long promptTokens, Long completionTokens, Long totalTokens, Long tokenExecutionTimeMs) {
+
+    /**
+     * @return completion tokens generated per second of execution time, null when no completion has a number of tokens
+     */
+    public Double tokensPerSecond() {
+        return completionTokens == null || tokenExecutionTimeMs == null || tokenExecutionTimeMs == 0
+                ? null
+                : completionTokens * 1000.0 / tokenExecutionTimeMs;
+    }
+}
@@ -0,0 +1,19 @@
+package com.ment.chat.client.domain;
+
+import com.ment.chat.client.model.enums.CompletionStatus;
+import com.ment.chat.client.model.enums.LlmProvider;
+
+/**
+ * A completion without its text, read when only the answering model and status are needed.
+ *
+ * @param completionId the completion id
+ * @param promptId     the prompt id
+ * @param llmProvider  the provider that answered
+ * @param llm          the model that answered
+ * @param status       the status of the completion
+ * @param cached       the completion is from a cache
+ * @param hedged       the completion is from the backup endpoint or model of the provider
+ */
+public record LlmCompletionSummary(String completionId, String promptId, LlmProvider llmProvider, String llm,
+                                   CompletionStatus status, Boolean cached, Boolean hedged) {
+}
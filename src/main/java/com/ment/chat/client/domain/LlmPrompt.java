@@ -6,14 +6,20 @@ import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Lob;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OrderBy;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
+import org.springframework.data.domain.Persistable;
 
 import java.time.OffsetDateTime;
 import java.util.List;
@@ -25,16 +31,26 @@ import java.util.List;
 @Builder
 @ToString
 
-public class LlmPrompt {
+public class LlmPrompt implements Persistable<String> {
 
     @Id
     @Column(name = "PROMPT_ID", nullable = false, updatable = false, length = 36)
     private String promptId;
 
-    @Column(name = "PROMPT", nullable = false, updatable = false)
-    @Lob
+    //the text of a new prompt, stored once per hash in llm_prompt_text, written before the prompt by the InteractionWriter
+    @Transient
+    @Getter(AccessLevel.NONE)
     private String prompt;
 
+    @Column(name = "PROMPT_HASH", nullable = false, updatable = false, length = 64)
+    private String promptHash;
+
+    //lazy, joined by the queries reading the text of the prompts
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "PROMPT_HASH", insertable = false, updatable = false)
+    @ToString.Exclude
+    private LlmPromptText promptText;
+
     @Column(name = "SESSION_ID", nullable = false, updatable = false, length = 64)
     private String sessionId;
 
@@ -44,8 +60,40 @@ public class LlmPrompt {
     @Column(name = "PROMPTED_AT", nullable = false, updatable = false)
     private OffsetDateTime promptedAt;
 
-    @OneToMany(mappedBy = "llmPrompt", cascade = {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.REMOVE}, fetch = FetchType.EAGER)
+    //sent without a system message of its own and without chat history, so its answers fit any prompt sent the same way
+    @Column(name = "STATELESS", nullable = false, updatable = false)
+    private Boolean stateless;
+
+    //lazy, read by the queries fetching the prompts with their completions
+    @OneToMany(mappedBy = "llmPrompt", cascade = {CascadeType.PERSIST, CascadeType.MERGE, CascadeType.REMOVE}, fetch = FetchType.LAZY)
     @OrderBy("llm asc")
+    @ToString.Exclude
     private List<LlmCompletion> completions;
 
+    //the id is assigned, so a save inserts the entity without first selecting it
+    @Transient
+    private boolean persisted;
+
+    /**
+     * @return the text of a new prompt, or of a read prompt when read with its text
+     */
+    public String getPrompt() {
+        return prompt != null || promptText == null ? prompt : promptText.getPrompt();
+    }
+
+    @Override
+    public String getId() {
+        return promptId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
 }
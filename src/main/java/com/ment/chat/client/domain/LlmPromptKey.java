@@ -0,0 +1,18 @@
+package com.ment.chat.client.domain;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * The position of a prompt in the order of prompting, the prompt id orders prompts prompted at the same time.
+ *
+ * @param promptedAt the time of the prompt
+ * @param promptId   the prompt id
+ */
+public record LlmPromptKey(OffsetDateTime promptedAt, String promptId) {
+
+    /**
+     * Before all prompts, the prompt id is not compared as all prompts are later.
+     */
+    public static final LlmPromptKey FIRST = new LlmPromptKey(OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC), "");
+}
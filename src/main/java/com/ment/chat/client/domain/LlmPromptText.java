@@ -0,0 +1,79 @@
+package com.ment.chat.client.domain;
+
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.HexFormat;
+
+/**
+ * The text of a prompt, stored once for all prompts with the same text and keyed by its hash.
+ */
+@Entity
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+
+public class LlmPromptText implements Persistable<String> {
+
+    @Id
+    @Column(name = "PROMPT_HASH", nullable = false, updatable = false, length = 64)
+    private String promptHash;
+
+    @Column(name = "PROMPT", nullable = false, updatable = false)
+    @Lob
+    @ToString.Exclude
+    private String prompt;
+
+    @Column(name = "CREATED_AT", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+
+    //the id is assigned, so a save inserts the entity without first selecting it
+    @Transient
+    private boolean persisted;
+
+    @Override
+    public String getId() {
+        return promptHash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    /**
+     * @param prompt the prompt with style
+     * @return the SHA-256 hash of the UTF-8 prompt as lower case hex
+     */
+    public static String hash(String prompt) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(prompt.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not supported", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.ment.chat.client.domain;
+
+import java.util.List;
+
+/**
+ * Published when prompts are deleted with their completions by the retention.
+ *
+ * @param promptIds the ids of the deleted prompts
+ */
+public record LlmPromptsPurged(List<String> promptIds) {
+}
@@ -0,0 +1,21 @@
+package com.ment.chat.client.domain;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Published when the retention has removed the prompts of a time range with their completions,
+ * by dropping the partition of a month or by deleting in batches, so the caches and indexes can forget them.
+ *
+ * @param from the prompts prompted at or after this time are removed
+ * @param to   the prompts prompted before this time are removed
+ */
+public record LlmPromptsPurgedBetween(OffsetDateTime from, OffsetDateTime to) {
+
+    /**
+     * @param promptedAt the time of a prompt
+     * @return true if the prompt is removed
+     */
+    public boolean contains(OffsetDateTime promptedAt) {
+        return promptedAt != null && !promptedAt.isBefore(from) && promptedAt.isBefore(to);
+    }
+}
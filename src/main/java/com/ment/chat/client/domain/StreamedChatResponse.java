@@ -0,0 +1,90 @@
+package com.ment.chat.client.domain;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.EmptyUsage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+
+/**
+ * Assembles the chunks of a streamed answer into one ChatResponse.
+ * Model name and token usage are normally only sent in the last chunks, so the latest non-empty values are kept.
+ * Not thread safe, the chunks of a Flux are delivered sequentially.
+ */
+public class StreamedChatResponse {
+
+    private final long start = System.currentTimeMillis();
+
+    private final StringBuilder text = new StringBuilder();
+
+    private Long timeToFirstTokenMs;
+
+    private String model;
+
+    private Usage usage = new EmptyUsage();
+
+    /**
+     * Adds a streamed chunk.
+     *
+     * @param chunk the chunk from the provider
+     * @return the text of the chunk, empty if the chunk has no text
+     */
+    public String add(ChatResponse chunk) {
+        if (chunk.getMetadata() != null) {
+            if (StringUtils.hasText(chunk.getMetadata().getModel())) {
+                model = chunk.getMetadata().getModel();
+            }
+            Usage chunkUsage = chunk.getMetadata().getUsage();
+            if (chunkUsage != null && chunkUsage.getTotalTokens() != null && chunkUsage.getTotalTokens() > 0) {
+                usage = chunkUsage;
+            }
+        }
+        String token = chunk.getResult() != null && chunk.getResult().getOutput() != null
+                ? chunk.getResult().getOutput().getText()
+                : null;
+        if (!StringUtils.hasLength(token)) {
+            return "";
+        }
+        if (timeToFirstTokenMs == null) {
+            timeToFirstTokenMs = System.currentTimeMillis() - start;
+        }
+        text.append(token);
+        return token;
+    }
+
+    /**
+     * Assembles the received chunks, an answer without text gets no generation just like a failed call.
+     *
+     * @return the assembled answer with response times
+     */
+    public ChatResponseTimer toChatResponseTimer() {
+        return toChatResponseTimer(text.isEmpty()
+                ? List.of()
+                : List.of(new Generation(new AssistantMessage(text.toString()))));
+    }
+
+    /**
+     * A cancelled answer is incomplete, so only the model and response times are kept.
+     * May be called from another thread than the one delivering the chunks, so the text is not read.
+     *
+     * @return the cancelled answer with response times
+     */
+    public ChatResponseTimer toCancelledChatResponseTimer() {
+        return toChatResponseTimer(List.of());
+    }
+
+    private ChatResponseTimer toChatResponseTimer(List<Generation> generations) {
+        ChatResponse chatResponse = ChatResponse.builder()
+                .generations(generations)
+                .metadata(ChatResponseMetadata.builder()
+                        .model(model == null ? "" : model)
+                        .usage(usage)
+                        .build())
+                .build();
+        return new ChatResponseTimer(chatResponse, System.currentTimeMillis() - start, timeToFirstTokenMs);
+    }
+}
@@ -0,0 +1,8 @@
+package com.ment.chat.client.domain.exception;
+
+public class NoCompletionException extends RuntimeException {
+
+    public NoCompletionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.ment.chat.client.domain.exception;
+
+public class ProviderBusyException extends RuntimeException {
+
+    public ProviderBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.ment.chat.client.domain.exception;
+
+public class ProviderUnavailableException extends RuntimeException {
+
+    public ProviderUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.ment.chat.client.domain.exception;
+
+public class StorageBusyException extends RuntimeException {
+
+    public StorageBusyException(String message) {
+        super(message);
+    }
+}
@@ -1,14 +1,76 @@
 package com.ment.chat.client.domain.repository;
 
 import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmCompletionStats;
+import com.ment.chat.client.domain.LlmCompletionSummary;
+import com.ment.chat.client.model.enums.CompletionStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @SuppressWarnings("unused")
 @Repository
 public interface LlmCompletionRepository extends JpaRepository<LlmCompletion, String> {
 
-    List<LlmCompletion> findByCompletionContains(String partOfCompletion);
+    @Query("select c from LlmCompletion c join fetch c.llmPrompt p join fetch p.promptText where c.completionId = :completionId")
+    Optional<LlmCompletion> findWithPromptByCompletionId(@Param("completionId") String completionId);
+
+    /**
+     * @param promptIds the prompt ids
+     * @return the completions of the prompts without their text
+     */
+    List<LlmCompletionSummary> findByPromptIdIn(Collection<String> promptIds);
+
+    List<LlmCompletion> findByPromptIdInOrderByLlmAsc(Collection<String> promptIds);
+
+    @Modifying
+    @Query("delete from LlmCompletion c where c.promptId in :promptIds")
+    int deleteByPromptIdIn(@Param("promptIds") Collection<String> promptIds);
+
+    /**
+     * Oracle Text only, queries the CONTEXT index of the completions.
+     *
+     * @param text    the Oracle Text query
+     * @param maxHits max number of prompt ids
+     * @return the prompt ids of the matching completions, a prompt as relevant as its most relevant completion, the most relevant first
+     */
+    @Query(nativeQuery = true, value = """
+            select prompt_id from llm_completion
+            where contains(completion, :text, 1) > 0
+            group by prompt_id
+            order by max(score(1)) desc, prompt_id
+            fetch first :maxHits rows only
+            """)
+    List<String> searchPromptIdsByCompletion(@Param("text") String text, @Param("maxHits") int maxHits);
+
+    /**
+     * Aggregated in the database, the completions are not read.
+     *
+     * @param from   start of the window of completion times, inclusive
+     * @param to     end of the window of completion times, exclusive
+     * @param status status of the aggregated completions
+     * @return the statistics of the completions per provider and model, not counting the completions from a cache
+     */
+    @Query("""
+            select new com.ment.chat.client.domain.LlmCompletionStats(c.llmProvider, c.llm, count(c),
+                percentile_cont(0.5) within group (order by c.executionTimeMs),
+                percentile_cont(0.95) within group (order by c.executionTimeMs),
+                sum(c.promptTokens), sum(c.completionTokens), sum(c.totalTokens),
+                sum(case when c.completionTokens is not null then c.executionTimeMs end))
+            from LlmCompletion c
+            where c.completedAt >= :from and c.completedAt < :to
+            and c.status = :status and c.cached = false
+            group by c.llmProvider, c.llm
+            order by c.llmProvider, c.llm
+            """)
+    List<LlmCompletionStats> findStatsByCompletedAt(@Param("from") OffsetDateTime from,
+                                                    @Param("to") OffsetDateTime to,
+                                                    @Param("status") CompletionStatus status);
 }
@@ -1,16 +1,101 @@
 package com.ment.chat.client.domain.repository;
 
 import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptKey;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+/**
+ * The completions and the text of a prompt are lazy, the queries reading prompts with their completions or their text fetch them in the same select.
+ * Chats are read in pages of prompt keys after a given key, in the order of prompting, and the prompts of a page
+ * are then fetched with their completions. A fetch join can not be limited in the database, so the two steps.
+ * The streamed queries read the prompts without completions, with a JDBC fetch size, and must be read in a transaction.
+ * The search queries the Oracle Text CONTEXT index of the prompt texts and returns the ids of the prompts with a matching text by relevance.
+ */
 @SuppressWarnings("unused")
 @Repository
 public interface LlmPromptRepository extends JpaRepository<LlmPrompt, String> {
 
-    List<LlmPrompt> findByChatId(String chatId);
+    String FETCH_SIZE = "100";
 
-    List<LlmPrompt> findByPromptContains(String partOfPrompt);
+    @Query("select p from LlmPrompt p join fetch p.promptText left join fetch p.completions where p.promptId = :promptId")
+    Optional<LlmPrompt> findWithCompletionsByPromptId(@Param("promptId") String promptId);
+
+    @Query("select p from LlmPrompt p join fetch p.promptText left join fetch p.completions where p.promptId in :promptIds order by p.promptedAt, p.promptId")
+    List<LlmPrompt> findWithCompletionsByPromptIdIn(@Param("promptIds") Collection<String> promptIds);
+
+    @Query("select p from LlmPrompt p join fetch p.promptText where p.promptId = :promptId")
+    Optional<LlmPrompt> findWithTextByPromptId(@Param("promptId") String promptId);
+
+    @Query("select p from LlmPrompt p join fetch p.promptText where p.promptId in :promptIds")
+    List<LlmPrompt> findWithTextByPromptIdIn(@Param("promptIds") Collection<String> promptIds);
+
+    @Query("select p from LlmPrompt p join fetch p.promptText where p.stateless = true order by p.promptedAt desc, p.promptId desc")
+    List<LlmPrompt> findLatestStatelessWithText(Pageable pageable);
+
+    @Query("""
+            select new com.ment.chat.client.domain.LlmPromptKey(p.promptedAt, p.promptId) from LlmPrompt p
+            where p.chatId = :chatId
+            and (p.promptedAt > :promptedAt or (p.promptedAt = :promptedAt and p.promptId > :promptId))
+            order by p.promptedAt, p.promptId
+            """)
+    List<LlmPromptKey> findKeysByChatIdAfter(@Param("chatId") String chatId,
+                                             @Param("promptedAt") OffsetDateTime promptedAt,
+                                             @Param("promptId") String promptId,
+                                             Pageable pageable);
+
+    @Query("""
+            select new com.ment.chat.client.domain.LlmPromptKey(p.promptedAt, p.promptId) from LlmPrompt p
+            where p.promptedAt > :promptedAt or (p.promptedAt = :promptedAt and p.promptId > :promptId)
+            order by p.promptedAt, p.promptId
+            """)
+    List<LlmPromptKey> findKeysAfter(@Param("promptedAt") OffsetDateTime promptedAt,
+                                     @Param("promptId") String promptId,
+                                     Pageable pageable);
+
+    /**
+     * Oracle Text only, queries the CONTEXT index of the prompt texts.
+     *
+     * @param text    the Oracle Text query
+     * @param maxHits max number of prompt ids
+     * @return the prompt ids of the matching prompts, the most relevant first
+     */
+    @Query(nativeQuery = true, value = """
+            select p.prompt_id from llm_prompt p
+            join llm_prompt_text t on t.prompt_hash = p.prompt_hash
+            where contains(t.prompt, :text, 1) > 0
+            order by score(1) desc, p.prompt_id
+            fetch first :maxHits rows only
+            """)
+    List<String> searchPromptIdsByPrompt(@Param("text") String text, @Param("maxHits") int maxHits);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE))
+    @Query("select p from LlmPrompt p join fetch p.promptText where p.chatId = :chatId order by p.promptedAt, p.promptId")
+    Stream<LlmPrompt> streamByChatId(@Param("chatId") String chatId);
+
+    @Query("select min(p.promptedAt) from LlmPrompt p")
+    Optional<OffsetDateTime> findOldestPromptedAt();
+
+    @Query("select p.promptId from LlmPrompt p where p.promptedAt >= :from and p.promptedAt < :to")
+    List<String> findPromptIdsByPromptedAtBetween(@Param("from") OffsetDateTime from,
+                                                  @Param("to") OffsetDateTime to,
+                                                  Pageable pageable);
+
+    //the completions of the prompts must be deleted first
+    @Modifying
+    @Query("delete from LlmPrompt p where p.promptId in :promptIds")
+    int deleteByPromptIdIn(@Param("promptIds") Collection<String> promptIds);
 }
@@ -0,0 +1,27 @@
+package com.ment.chat.client.domain.repository;
+
+import com.ment.chat.client.domain.LlmPromptText;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@SuppressWarnings("unused")
+@Repository
+public interface LlmPromptTextRepository extends JpaRepository<LlmPromptText, String> {
+
+    /**
+     * @param promptHashes the hashes of prompt texts
+     * @return the hashes of the stored texts, without reading the texts
+     */
+    @Query("select t.promptHash from LlmPromptText t where t.promptHash in :promptHashes")
+    List<String> findStoredHashes(@Param("promptHashes") Collection<String> promptHashes);
+
+    @Modifying
+    @Query("delete from LlmPromptText t where not exists (select 1 from LlmPrompt p where p.promptHash = t.promptHash)")
+    int deleteUnreferenced();
+}
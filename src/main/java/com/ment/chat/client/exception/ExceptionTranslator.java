@@ -2,7 +2,11 @@ package com.ment.chat.client.exception;
 
 import com.ment.chat.client.domain.exception.ChatNotFoundException;
 import com.ment.chat.client.domain.exception.CompletionNotFoundException;
+import com.ment.chat.client.domain.exception.NoCompletionException;
 import com.ment.chat.client.domain.exception.PromptNotFoundException;
+import com.ment.chat.client.domain.exception.ProviderBusyException;
+import com.ment.chat.client.domain.exception.ProviderUnavailableException;
+import com.ment.chat.client.domain.exception.StorageBusyException;
 import jakarta.validation.ValidationException;
 import org.springframework.ai.retry.NonTransientAiException;
 import org.springframework.core.NestedRuntimeException;
@@ -30,6 +34,10 @@ public class ExceptionTranslator extends ResponseEntityExceptionHandler {
     public static final String TITLE_PROMPT_NOT_FOUND = "Prompt not found";
     public static final String TITLE_COMPLETION_NOT_FOUND = "Completion not found";
     public static final String TITLE_API_ERROR = "API error";
+    public static final String TITLE_NO_COMPLETION = "No completion";
+    public static final String TITLE_PROVIDER_BUSY = "Provider busy";
+    public static final String TITLE_PROVIDER_UNAVAILABLE = "Provider unavailable";
+    public static final String TITLE_STORAGE_BUSY = "Storage busy";
 
     public static final String TYPE_PROMPT = "prompt";
     public static final String TYPE_COMPLETION = "completion";
@@ -37,6 +45,7 @@ public class ExceptionTranslator extends ResponseEntityExceptionHandler {
     public static final String TYPE_CLIENT_CALL = "client-call";
     public static final String TYPE_VALIDATION = "validation";
     public static final String TYPE_LLM_CALL = "llm-call";
+    public static final String TYPE_STORAGE = "storage";
 
     public static final String PROPERTY_KEY_VIOLATIONS = "violations";
 
@@ -67,6 +76,42 @@ public class ExceptionTranslator extends ResponseEntityExceptionHandler {
         return problemDetail;
     }
 
+    @ExceptionHandler(NoCompletionException.class)
+    ProblemDetail handleNoCompletionException(NoCompletionException ex) {
+        HttpStatus status = HttpStatus.BAD_GATEWAY;
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(status, ex.getMessage());
+        problemDetail.setTitle(TITLE_NO_COMPLETION);
+        problemDetail.setType(URI.create(TYPE_LLM_CALL));
+        return problemDetail;
+    }
+
+    @ExceptionHandler(ProviderBusyException.class)
+    ProblemDetail handleProviderBusyException(ProviderBusyException ex) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(status, ex.getMessage());
+        problemDetail.setTitle(TITLE_PROVIDER_BUSY);
+        problemDetail.setType(URI.create(TYPE_LLM_CALL));
+        return problemDetail;
+    }
+
+    @ExceptionHandler(ProviderUnavailableException.class)
+    ProblemDetail handleProviderUnavailableException(ProviderUnavailableException ex) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(status, ex.getMessage());
+        problemDetail.setTitle(TITLE_PROVIDER_UNAVAILABLE);
+        problemDetail.setType(URI.create(TYPE_LLM_CALL));
+        return problemDetail;
+    }
+
+    @ExceptionHandler(StorageBusyException.class)
+    ProblemDetail handleStorageBusyException(StorageBusyException ex) {
+        HttpStatus status = HttpStatus.SERVICE_UNAVAILABLE;
+        ProblemDetail problemDetail = ProblemDetail.forStatusAndDetail(status, ex.getMessage());
+        problemDetail.setTitle(TITLE_STORAGE_BUSY);
+        problemDetail.setType(URI.create(TYPE_STORAGE));
+        return problemDetail;
+    }
+
     @ExceptionHandler(WebClientException.class)
     ProblemDetail handleWebClientException(WebClientException ex) {
         HttpStatus status = HttpStatus.BAD_REQUEST;
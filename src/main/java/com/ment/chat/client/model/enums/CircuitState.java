@@ -0,0 +1,15 @@
+package com.ment.chat.client.model.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = """
+        Enum representing the state of the circuit breaker of a provider.
+        CLOSED: calls are sent to the provider.
+        OPEN: the provider failed too often, calls fail fast without calling the provider.
+        HALF_OPEN: a few trial calls are sent to the provider to find out if it has recovered.
+        """)
+public enum CircuitState {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+}
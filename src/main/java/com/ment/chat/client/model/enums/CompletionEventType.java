@@ -0,0 +1,12 @@
+package com.ment.chat.client.model.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = """
+        Enum representing the type of event in a streamed completion.
+        """)
+public enum CompletionEventType {
+    TOKEN,
+    DONE,
+    ERROR
+}
@@ -0,0 +1,13 @@
+package com.ment.chat.client.model.enums;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = """
+        Enum representing the outcome of a call to an LLM provider.
+        """)
+public enum CompletionStatus {
+    COMPLETED,
+    FAILED,
+    TIMED_OUT,
+    CANCELLED
+}
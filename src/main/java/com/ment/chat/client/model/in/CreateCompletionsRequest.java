@@ -2,7 +2,9 @@ package com.ment.chat.client.model.in;
 
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
@@ -40,6 +42,14 @@ public class CreateCompletionsRequest {
     @Schema(description = "The system message for the current prompt, overrides default system message", example = "Answer with max 25 words!", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
     String system;
 
+    @Positive
+    @Max(value = 600000, message = "Deadline must be max 600000 ms")
+    @Schema(description = "Max time in ms to wait for each provider, overrides the configured deadline of the providers", example = "20000", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Long deadlineMs;
+
+    @Schema(description = "Do not answer from the cache of completions, the providers are always called", example = "false", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Boolean noCache;
+
 
     public String createPrompt() {
         return style != null && !style.isEmpty()
@@ -0,0 +1,34 @@
+package com.ment.chat.client.model.out;
+
+import com.ment.chat.client.model.enums.CompletionEventType;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Schema(description = "An event in a streamed completion, tokens as they arrive and the stored completion when done")
+@Value
+@Builder
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Jacksonized
+public class CreateCompletionEvent {
+
+    @Schema(description = "Type of event", example = "TOKEN", requiredMode = Schema.RequiredMode.REQUIRED)
+    CompletionEventType eventType;
+
+    @Schema(description = "Llm provider", example = "OPENAI", requiredMode = Schema.RequiredMode.REQUIRED)
+    LlmProvider llmProvider;
+
+    @Schema(description = "PromptId Id", example = "2466e808-a176-4a7f-a09b-2d461ef033b5", requiredMode = Schema.RequiredMode.REQUIRED)
+    String promptId;
+
+    @Schema(description = "Token text of a TOKEN event or error message of an ERROR event", example = "Trump", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    String content;
+
+    @Schema(description = "The stored completion, only set in the DONE event", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    InteractionCompletion interactionCompletion;
+
+}
@@ -19,4 +19,7 @@ public class GetChatResponse {
     @Schema(description = "List of interactions", requiredMode = Schema.RequiredMode.REQUIRED)
     List<GetInteractionResponse> interactions;
 
+    @Schema(description = "Cursor of the next page, given as 'after' to read it, not set on the last page", example = "MjAyNi0xMC0xOFQxMDoxNTozMCswMjowMHw2ZjFj", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    String nextCursor;
+
 }
@@ -0,0 +1,66 @@
+package com.ment.chat.client.model.out;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+@Schema(description = "Statistics of the completions of each LLM in a window of completion times, completions from a cache are not counted")
+@Value
+@Builder
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Jacksonized
+public class GetLlmProvidersStatsResponse {
+
+    @Schema(description = "Start of the window, inclusive", example = "2025-11-13T16:50:01.115667+01:00", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSSSSxxx")
+    OffsetDateTime from;
+
+    @Schema(description = "End of the window, exclusive", example = "2025-11-14T16:50:01.115667+01:00", requiredMode = Schema.RequiredMode.REQUIRED)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSSSSxxx")
+    OffsetDateTime to;
+
+    @Schema(description = "List of LLM statistics, none if no completions in the window", requiredMode = Schema.RequiredMode.REQUIRED)
+    List<LlmProviderStats> llmProviderStatsList;
+
+    @Value
+    @Builder
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    @Jacksonized
+    public static class LlmProviderStats {
+
+        @Schema(description = "Provider of LLM", example = "OPENAI", requiredMode = Schema.RequiredMode.REQUIRED)
+        LlmProvider provider;
+
+        @Schema(description = "Name of LLM", example = "gpt-5", requiredMode = Schema.RequiredMode.REQUIRED)
+        String llm;
+
+        @Schema(description = "Number of completed completions", example = "120", requiredMode = Schema.RequiredMode.REQUIRED)
+        Long completions;
+
+        @Schema(description = "Median execution time in ms", example = "1830.5", requiredMode = Schema.RequiredMode.REQUIRED)
+        Double p50ExecutionTimeMs;
+
+        @Schema(description = "95th percentile of the execution time in ms", example = "7421.0", requiredMode = Schema.RequiredMode.REQUIRED)
+        Double p95ExecutionTimeMs;
+
+        @Schema(description = "Completion tokens generated per second of execution time", example = "42.7", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+        Double tokensPerSecond;
+
+        @Schema(description = "Sum of the prompt tokens", example = "6240", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+        Long promptTokens;
+
+        @Schema(description = "Sum of the completion tokens", example = "27240", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+        Long completionTokens;
+
+        @Schema(description = "Sum of the total tokens", example = "33480", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+        Long totalTokens;
+    }
+}
@@ -1,5 +1,7 @@
 package com.ment.chat.client.model.out;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.ment.chat.client.model.enums.CircuitState;
 import com.ment.chat.client.model.enums.LlmProvider;
 import com.ment.chat.client.model.enums.LlmStatus;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -9,6 +11,7 @@ import lombok.Builder;
 import lombok.Value;
 import lombok.extern.jackson.Jacksonized;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 
 @Schema(description = "Status of all the provided LLMs")
@@ -35,6 +38,13 @@ public class GetLlmProvidersStatusResponse {
 
         @Schema(description = "Provider of LLM", example = "OPENAI", requiredMode = Schema.RequiredMode.REQUIRED)
         LlmProvider provider;
+
+        @Schema(description = "State of the circuit breaker of the provider, calls fail fast while OPEN", example = "CLOSED", requiredMode = Schema.RequiredMode.REQUIRED)
+        CircuitState circuitState;
+
+        @Schema(description = "Time of the latest probe of the provider, the status is from that probe", example = "2025-11-14T16:50:01.115667+01:00", requiredMode = Schema.RequiredMode.REQUIRED)
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSSSSxxx")
+        OffsetDateTime probedAt;
     }
 
 }
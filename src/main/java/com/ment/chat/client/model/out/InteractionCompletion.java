@@ -1,6 +1,7 @@
 package com.ment.chat.client.model.out;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.ment.chat.client.model.enums.CompletionStatus;
 import com.ment.chat.client.model.enums.LlmProvider;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AccessLevel;
@@ -36,9 +37,36 @@ public class InteractionCompletion implements Comparable<InteractionCompletion>
     @Schema(description = "Usage of tokens", example = "promptTokens=52, completionTokens=227, totalTokens=279", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
     String tokenUsage;
 
+    @Schema(description = "Number of tokens in the prompt", example = "52", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Integer promptTokens;
+
+    @Schema(description = "Number of tokens in the completion", example = "227", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Integer completionTokens;
+
+    @Schema(description = "Total number of tokens", example = "279", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Integer totalTokens;
+
     @Schema(description = "Execution time in ms", example = "199", requiredMode = Schema.RequiredMode.REQUIRED)
     Long executionTimeMs;
 
+    @Schema(description = "Time to first token in ms, only set for streamed completions", example = "87", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Long timeToFirstTokenMs;
+
+    @Schema(description = "Number of calls to the provider, more than 1 when retried since the provider was rate limited or overloaded", example = "1", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Integer attempts;
+
+    @Schema(description = "Total time waiting between the retries in ms", example = "0", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Long backoffMs;
+
+    @Schema(description = "The completion is from the cache of completions, no provider was called", example = "false", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Boolean cached;
+
+    @Schema(description = "The completion is from the backup endpoint or model of the provider, sent a hedge when the provider was slow", example = "false", requiredMode = Schema.RequiredMode.NOT_REQUIRED)
+    Boolean hedged;
+
+    @Schema(description = "Outcome of the call to the provider, a completion is only present when completed", example = "COMPLETED", requiredMode = Schema.RequiredMode.REQUIRED)
+    CompletionStatus status;
+
     @Schema(description = "Completion time of the interaction", example ="2025-11-14T16:50:01.115667+01:00", requiredMode = Schema.RequiredMode.REQUIRED)
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSSSSxxx")
     OffsetDateTime completedAt;
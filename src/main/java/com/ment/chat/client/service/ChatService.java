@@ -8,33 +8,68 @@ import com.ment.chat.client.model.in.CreateCompletionsRequest;
 import com.ment.chat.client.model.out.CreateCompletionsByProvidersAggregateResponse;
 import com.ment.chat.client.model.out.CreateCompletionsByProvidersResponse;
 import com.ment.chat.client.model.out.CreateCompletionByProviderResponse;
+import com.ment.chat.client.model.out.CreateCompletionEvent;
 import com.ment.chat.client.model.out.GetChatResponse;
 import com.ment.chat.client.model.out.GetInteractionResponse;
 import com.ment.chat.client.model.out.GetInteractionsResponse;
+import com.ment.chat.client.model.out.GetLlmProvidersStatsResponse;
 import com.ment.chat.client.model.out.GetLlmProvidersStatusResponse;
 import com.ment.chat.client.model.out.GetSessionMessagesResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.util.function.Consumer;
 
 public interface ChatService {
 
-    CreateCompletionByProviderResponse createCompletionByProvider(CreateCompletionByProviderRequest createCompletionByProviderRequest);
+    Mono<CreateCompletionByProviderResponse> createCompletionByProvider(CreateCompletionByProviderRequest createCompletionByProviderRequest);
+
+    Flux<CreateCompletionEvent> streamCompletionByProvider(CreateCompletionByProviderRequest createCompletionByProviderRequest);
+
+    Mono<CreateCompletionsByProvidersResponse> createCompletionsByProviders(CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest);
+
+    Mono<CreateCompletionByProviderResponse> createCompletionByFastestProvider(CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest);
 
-    CreateCompletionsByProvidersResponse createCompletionsByProviders(CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest);
+    Flux<CreateCompletionEvent> streamCompletionsByProviders(CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest);
 
-    CreateCompletionsByProvidersAggregateResponse createCompletionsByProvidersAggregate(CreateCompletionsByProvidersAggregateRequest createCompletionsByProvidersAggregatorRequest);
+    Mono<CreateCompletionsByProvidersAggregateResponse> createCompletionsByProvidersAggregate(CreateCompletionsByProvidersAggregateRequest createCompletionsByProvidersAggregatorRequest);
 
-    CreateCompletionsByProvidersResponse createCompletionsByAllProviders(CreateCompletionsRequest createCompletionsRequest);
+    Mono<CreateCompletionsByProvidersResponse> createCompletionsByAllProviders(CreateCompletionsRequest createCompletionsRequest);
 
     GetInteractionResponse getInteractionByPromptId(String promptId);
 
     GetInteractionResponse getInteractionByCompletionId(String completionId);
 
-    GetInteractionsResponse getInteractionsByCompletion(String partOfCompletion);
+    /**
+     * @param partOfCompletion part of a completion of the interactions
+     * @param after            cursor of the page, null for the first page
+     * @param limit            max number of interactions in the page
+     * @return a page of interactions, the most relevant first
+     */
+    GetInteractionsResponse getInteractionsByCompletion(String partOfCompletion, String after, int limit);
+
+    GetChatResponse getChatByChatId(String chatId, String after, int limit);
+
+    GetChatResponse getChatByPrompt(String partOfPrompt, String after, int limit);
+
+    /**
+     * Blocking, the interactions are read and handled one by one, the found interactions the most relevant first.
+     */
+    void streamInteractionsByCompletion(String partOfCompletion, Consumer<GetInteractionResponse> consumer);
+
+    void streamChatByChatId(String chatId, Consumer<GetInteractionResponse> consumer);
 
-    GetChatResponse getChatByChatId(String chatId);
+    void streamChatByPrompt(String partOfPrompt, Consumer<GetInteractionResponse> consumer);
 
-    GetChatResponse getChatByPrompt(String partOfPrompt);
+    Mono<GetLlmProvidersStatusResponse> getAllProviderStatus();
 
-    GetLlmProvidersStatusResponse getAllProviderStatus();
+    /**
+     * @param from start of the window of completion times, inclusive
+     * @param to   end of the window of completion times, exclusive
+     * @return the statistics of the completions of each provider and model in the window
+     */
+    GetLlmProvidersStatsResponse getProviderStats(OffsetDateTime from, OffsetDateTime to);
 
     void clearSessionHistory(String chatId, LlmProvider provider);
 
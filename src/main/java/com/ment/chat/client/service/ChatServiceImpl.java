@@ -1,48 +1,61 @@
 package com.ment.chat.client.service;
 
+import com.ment.chat.client.client.CallAttempts;
 import com.ment.chat.client.client.ChatClientWithChatMemory;
+import com.ment.chat.client.client.ProviderCallExecutor;
 import com.ment.chat.client.client.ProviderClient;
+import com.ment.chat.client.client.SingleFlight;
 import com.ment.chat.client.config.AppProperties;
 import com.ment.chat.client.domain.ChatResponseTimer;
 import com.ment.chat.client.domain.LlmCompletion;
 import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptKey;
+import com.ment.chat.client.domain.LlmPromptText;
+import com.ment.chat.client.domain.StreamedChatResponse;
 import com.ment.chat.client.domain.exception.ChatNotFoundException;
 import com.ment.chat.client.domain.exception.CompletionNotFoundException;
+import com.ment.chat.client.domain.exception.NoCompletionException;
 import com.ment.chat.client.domain.exception.PromptNotFoundException;
 import com.ment.chat.client.domain.repository.LlmCompletionRepository;
 import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import com.ment.chat.client.model.enums.CompletionEventType;
+import com.ment.chat.client.model.enums.CompletionStatus;
 import com.ment.chat.client.model.enums.LlmProvider;
-import com.ment.chat.client.model.enums.LlmStatus;
 import com.ment.chat.client.model.in.CreateCompletionByProviderRequest;
 import com.ment.chat.client.model.in.CreateCompletionsByProvidersAggregateRequest;
 import com.ment.chat.client.model.in.CreateCompletionsByProvidersRequest;
 import com.ment.chat.client.model.in.CreateCompletionsRequest;
 import com.ment.chat.client.model.out.CreateCompletionByProviderResponse;
+import com.ment.chat.client.model.out.CreateCompletionEvent;
 import com.ment.chat.client.model.out.CreateCompletionsByProvidersAggregateResponse;
 import com.ment.chat.client.model.out.CreateCompletionsByProvidersResponse;
 import com.ment.chat.client.model.out.GetChatResponse;
 import com.ment.chat.client.model.out.GetInteractionResponse;
 import com.ment.chat.client.model.out.GetInteractionsResponse;
+import com.ment.chat.client.model.out.GetLlmProvidersStatsResponse;
 import com.ment.chat.client.model.out.GetLlmProvidersStatusResponse;
 import com.ment.chat.client.model.out.GetSessionMessagesResponse;
 import com.ment.chat.client.model.out.InteractionCompletion;
 import com.ment.chat.client.model.out.InteractionPrompt;
 import com.ment.chat.client.model.out.UniformMessage;
 import jakarta.annotation.PostConstruct;
+import jakarta.validation.ValidationException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.annotation.Aspect;
 import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.util.IdGenerator;
 import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.EnumSet;
@@ -50,8 +63,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.ment.chat.client.config.Systems.SUMMARY_SYSTEM_FROM_LLMS;
 
@@ -62,22 +81,41 @@ import static com.ment.chat.client.config.Systems.SUMMARY_SYSTEM_FROM_LLMS;
 public class ChatServiceImpl implements ChatService {
 
     public static final String UNKNOWN_MODEL_NAME = "Unknown";
-    private static final String PING_STATUS_CHAT_ID = "ping-chat-service-status";
-    private static final String PING_STATUS_PROMPT = "ping LLM to check status";
+    //chat of the prompts sent by former versions to check the status of the providers
+    static final String PING_STATUS_CHAT_ID = "ping-chat-service-status";
     private static final Integer MAX_NO_PROVIDERS = 10;
+    private static final Duration DEFAULT_DEADLINE = Duration.ofMinutes(2);
 
     //To provide a unique name space for each chat session
     private static final String sessionId = setSecondsAndNanosOfInstant();
 
     private final AppProperties appProperties;
 
-    private static Scheduler scheduler;
-
     private final LlmPromptRepository llmPromptRepository;
 
     private final LlmCompletionRepository llmCompletionRepository;
 
-    private final ApplicationEventPublisher applicationEventPublisher;
+    private final InteractionWriter interactionWriter;
+
+    private final ProviderCallExecutor providerCallExecutor;
+
+    private final CompletionCache completionCache;
+
+    private final SemanticCompletionCache semanticCompletionCache;
+
+    private final ProviderHealthProber providerHealthProber;
+
+    private final InteractionCache interactionCache;
+
+    private final InteractionStreamer interactionStreamer;
+
+    private final FullTextSearch fullTextSearch;
+
+    //time-ordered by default, see IdGeneratorConfig
+    private final IdGenerator idGenerator;
+
+    //identical requests arriving together share one call to the provider
+    private final SingleFlight<CompletionCache.Key, ChatResponseTimer> inFlightCalls = new SingleFlight<>();
 
 
     @Qualifier("ollamaChatClient")
@@ -134,111 +172,167 @@ public class ChatServiceImpl implements ChatService {
             //config error
             System.exit(3);
         }
-        if (chatClientMap.size() > LlmProvider.values().length) {
-            scheduler = Schedulers.boundedElastic();
-        } else {
-            scheduler = Schedulers.parallel();
-        }
     }
 
     @Override
-    public CreateCompletionByProviderResponse createCompletionByProvider(CreateCompletionByProviderRequest createCompletionByProviderRequest) {
+    public Mono<CreateCompletionByProviderResponse> createCompletionByProvider(CreateCompletionByProviderRequest createCompletionByProviderRequest) {
         return getCompletionResponse(createUniqueId(), createCompletionByProviderRequest);
     }
 
     @Override
-    public CreateCompletionsByProvidersResponse createCompletionsByProviders(CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest) {
+    public Flux<CreateCompletionEvent> streamCompletionByProvider(CreateCompletionByProviderRequest createCompletionByProviderRequest) {
+        String id = createUniqueId();
+        return savePublishRequest(id, createCompletionByProviderRequest, EnumSet.of(createCompletionByProviderRequest.getLlmProvider()))
+                .thenMany(streamProvider(id, createCompletionByProviderRequest, createCompletionByProviderRequest.getLlmProvider()));
+    }
+
+    @Override
+    public Mono<CreateCompletionsByProvidersResponse> createCompletionsByProviders(CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest) {
         return getCompletionsResponse(createUniqueId(), createCompletionsByProvidersRequest, createCompletionsByProvidersRequest.getLlmProviders());
     }
 
     @Override
-    public CreateCompletionsByProvidersAggregateResponse createCompletionsByProvidersAggregate(CreateCompletionsByProvidersAggregateRequest createCompletionsByProvidersAggregatorRequest) {
-        CreateCompletionsByProvidersResponse completionsByProviders = createCompletionsByProviders(createCompletionsByProvidersAggregatorRequest);
-        CreateCompletionByProviderRequest aggregateRequest = aggregateCompletionsToRequest(
-                createCompletionsByProvidersAggregatorRequest,
-                completionsByProviders);
-        log.info("Aggregate request: {}", aggregateRequest);
-        CreateCompletionByProviderResponse completionByProvider = createCompletionByProvider(aggregateRequest);
-        return CreateCompletionsByProvidersAggregateResponse.builder()
-                .interactionCompletions(completionsByProviders.getInteractionCompletions())
-                .aggregateRequest(aggregateRequest)
-                .aggregateSummary(completionByProvider.getInteractionCompletion())
-                .build();
+    public Mono<CreateCompletionByProviderResponse> createCompletionByFastestProvider(CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest) {
+        String id = createUniqueId();
+        return savePublishRequest(id, createCompletionsByProvidersRequest, createCompletionsByProvidersRequest.getLlmProviders())
+                .then(raceProviders(id, createCompletionsByProvidersRequest, createCompletionsByProvidersRequest.getLlmProviders()));
     }
 
     @Override
-    public CreateCompletionsByProvidersResponse createCompletionsByAllProviders(CreateCompletionsRequest createCompletionsRequest) {
+    public Flux<CreateCompletionEvent> streamCompletionsByProviders(CreateCompletionsByProvidersRequest createCompletionsByProvidersRequest) {
+        String id = createUniqueId();
+        //the streams of all providers are merged, so the fastest provider is seen first
+        return savePublishRequest(id, createCompletionsByProvidersRequest, createCompletionsByProvidersRequest.getLlmProviders())
+                .thenMany(Flux.merge(createCompletionsByProvidersRequest.getLlmProviders().stream()
+                        .map(llmProvider -> streamProvider(id, createCompletionsByProvidersRequest, llmProvider))
+                        .toList()));
+    }
+
+    @Override
+    public Mono<CreateCompletionsByProvidersAggregateResponse> createCompletionsByProvidersAggregate(CreateCompletionsByProvidersAggregateRequest createCompletionsByProvidersAggregatorRequest) {
+        return createCompletionsByProviders(createCompletionsByProvidersAggregatorRequest)
+                .flatMap(completionsByProviders -> {
+                    CreateCompletionByProviderRequest aggregateRequest = aggregateCompletionsToRequest(
+                            createCompletionsByProvidersAggregatorRequest,
+                            completionsByProviders);
+                    log.info("Aggregate request: {}", aggregateRequest);
+                    return createCompletionByProvider(aggregateRequest)
+                            .map(completionByProvider -> CreateCompletionsByProvidersAggregateResponse.builder()
+                                    .interactionCompletions(completionsByProviders.getInteractionCompletions())
+                                    .aggregateRequest(aggregateRequest)
+                                    .aggregateSummary(completionByProvider.getInteractionCompletion())
+                                    .build());
+                });
+    }
+
+    @Override
+    public Mono<CreateCompletionsByProvidersResponse> createCompletionsByAllProviders(CreateCompletionsRequest createCompletionsRequest) {
         return getCompletionsResponse(createUniqueId(), createCompletionsRequest, EnumSet.allOf(LlmProvider.class));
     }
 
     @Override
     public GetInteractionResponse getInteractionByPromptId(String promptId) {
-        return llmPromptRepository.findById(promptId)
-                .map(llmPrompt -> GetInteractionResponse.builder()
-                        .interactionPrompt(transform(llmPrompt))
-                        .interactionCompletions(transform(llmPrompt.getCompletions()))
-                        .build())
-                .orElseThrow(() -> new PromptNotFoundException(promptId));
+        return interactionCache.getByPromptId(promptId, id -> llmPromptRepository.findWithCompletionsByPromptId(id)
+                .map(this::toInteraction)
+                .orElseThrow(() -> new PromptNotFoundException(id)));
     }
 
     @Override
     public GetInteractionResponse getInteractionByCompletionId(String completionId) {
-        return llmCompletionRepository.findById(completionId)
+        return interactionCache.getByCompletionId(completionId, id -> llmCompletionRepository.findWithPromptByCompletionId(id)
                 .map(llmCompletion ->
                         GetInteractionResponse.builder()
                                 .interactionPrompt(transform(llmCompletion.getLlmPrompt()))
                                 .interactionCompletions(List.of(transform(llmCompletion)))
                                 .build())
-                .orElseThrow(() -> new CompletionNotFoundException(completionId));
+                .orElseThrow(() -> new CompletionNotFoundException(id)));
     }
 
     @Override
-    public GetChatResponse getChatByChatId(String chatId) {
-        List<LlmPrompt> llmPrompts = llmPromptRepository.findByChatId(chatId);
-        if (llmPrompts.isEmpty()) {
+    public GetChatResponse getChatByChatId(String chatId, String after, int limit) {
+        LlmPromptKey afterKey = PromptCursor.decode(after);
+        List<LlmPromptKey> keys = llmPromptRepository.findKeysByChatIdAfter(chatId, afterKey.promptedAt(), afterKey.promptId(), PageRequest.of(0, limit + 1));
+        if (keys.isEmpty() && afterKey.equals(LlmPromptKey.FIRST)) {
             throw new ChatNotFoundException(chatId);
         }
 
-        return getGetChatResponse(llmPrompts);
+        return getGetChatResponse(readPage(keys, limit));
     }
 
+    /**
+     * The interactions are ranked by the relevance of their prompt, the most relevant first.
+     */
     @Override
-    public GetChatResponse getChatByPrompt(String partOfPrompt) {
-        List<LlmPrompt> llmPrompts = llmPromptRepository.findByPromptContains(partOfPrompt);
-        if (llmPrompts.isEmpty()) {
-            return GetChatResponse.builder()
-                    .interactions(List.of())
-                    .build();
-        }
-
-        return getGetChatResponse(llmPrompts);
+    public GetChatResponse getChatByPrompt(String partOfPrompt, String after, int limit) {
+        int offset = PromptCursor.decodeOffset(after);
+        return getGetChatResponse(readSearchPage(fullTextSearch.searchPrompts(partOfPrompt, maxHits(offset, limit)), offset, limit));
     }
 
+    /**
+     * The interactions are ranked by the relevance of their most relevant completion, the most relevant first.
+     */
     @Override
-    public GetInteractionsResponse getInteractionsByCompletion(String partOfCompletion) {
-        List<LlmCompletion> llmCompletions = llmCompletionRepository.findByCompletionContains(partOfCompletion);
-        if (llmCompletions.isEmpty()) {
-            return GetInteractionsResponse.builder()
-                    .interactions(List.of())
-                    .build();
-        }
-
+    public GetInteractionsResponse getInteractionsByCompletion(String partOfCompletion, String after, int limit) {
+        int offset = PromptCursor.decodeOffset(after);
+        InteractionPage page = readSearchPage(fullTextSearch.searchCompletions(partOfCompletion, maxHits(offset, limit)), offset, limit);
         return GetInteractionsResponse.builder()
-                .interactions(llmCompletions.stream()
-                        .map(LlmCompletion::getPromptId)
-                        .distinct()
-                        .map(this::getInteractionByPromptId)
-                        .sorted()
-                        .toList())
+                .interactions(page.interactions())
+                .nextCursor(page.nextCursor())
                 .build();
     }
 
     @Override
-    public GetLlmProvidersStatusResponse getAllProviderStatus() {
-        return extractStatusFrom(createCompletionsByAllProviders(CreateCompletionsRequest.builder()
-                .prompt(PING_STATUS_PROMPT)
-                .chatId(PING_STATUS_CHAT_ID)
-                .build()));
+    public void streamChatByChatId(String chatId, Consumer<GetInteractionResponse> consumer) {
+        interactionStreamer.forEach(() -> llmPromptRepository.streamByChatId(chatId),
+                (llmPrompt, llmCompletions) -> consumer.accept(toInteraction(llmPrompt, llmCompletions)));
+    }
+
+    @Override
+    public void streamChatByPrompt(String partOfPrompt, Consumer<GetInteractionResponse> consumer) {
+        interactionStreamer.forEach(fullTextSearch.searchPrompts(partOfPrompt, Integer.MAX_VALUE),
+                (llmPrompt, llmCompletions) -> consumer.accept(toInteraction(llmPrompt, llmCompletions)));
+    }
+
+    @Override
+    public void streamInteractionsByCompletion(String partOfCompletion, Consumer<GetInteractionResponse> consumer) {
+        interactionStreamer.forEach(fullTextSearch.searchCompletions(partOfCompletion, Integer.MAX_VALUE),
+                (llmPrompt, llmCompletions) -> consumer.accept(toInteraction(llmPrompt, llmCompletions)));
+    }
+
+    /**
+     * The status is served from the latest background probes of the providers, the providers are only probed here before the first probe is done.
+     */
+    @Override
+    public Mono<GetLlmProvidersStatusResponse> getAllProviderStatus() {
+        Map<LlmProvider, ProviderProbeResult> probeResults = providerHealthProber.getProbeResults();
+        return (probeResults.size() == LlmProvider.values().length
+                ? Mono.just(probeResults)
+                : blockingCall(providerHealthProber::probeAll))
+                .map(this::toStatusResponse);
+    }
+
+    @Override
+    public GetLlmProvidersStatsResponse getProviderStats(OffsetDateTime from, OffsetDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new ValidationException("from " + from + " must be before to " + to);
+        }
+        return GetLlmProvidersStatsResponse.builder()
+                .from(from)
+                .to(to)
+                .llmProviderStatsList(llmCompletionRepository.findStatsByCompletedAt(from, to, CompletionStatus.COMPLETED).stream()
+                        .map(stats -> GetLlmProvidersStatsResponse.LlmProviderStats.builder()
+                                .provider(stats.llmProvider())
+                                .llm(stats.llm())
+                                .completions(stats.completions())
+                                .p50ExecutionTimeMs(stats.p50ExecutionTimeMs())
+                                .p95ExecutionTimeMs(stats.p95ExecutionTimeMs())
+                                .tokensPerSecond(stats.tokensPerSecond())
+                                .promptTokens(stats.promptTokens())
+                                .completionTokens(stats.completionTokens())
+                                .totalTokens(stats.totalTokens())
+                                .build())
+                        .toList())
+                .build();
     }
 
     @Override
@@ -266,18 +360,67 @@ public class ChatServiceImpl implements ChatService {
                 .build();
     }
 
-    private GetChatResponse getGetChatResponse(List<LlmPrompt> llmPrompts) {
-        List<GetInteractionResponse> responses = llmPrompts
+    private GetChatResponse getGetChatResponse(InteractionPage page) {
+        return GetChatResponse.builder()
+                .interactions(page.interactions())
+                .nextCursor(page.nextCursor())
+                .build();
+    }
+
+    /**
+     * @param keys  the keys of the page, one more than the limit when there is a next page
+     * @param limit max number of interactions in the page
+     * @return the interactions of the page in the order of the keys
+     */
+    private InteractionPage readPage(List<LlmPromptKey> keys, int limit) {
+        if (keys.isEmpty()) {
+            return new InteractionPage(List.of(), null);
+        }
+        List<LlmPromptKey> pageKeys = keys.size() > limit ? keys.subList(0, limit) : keys;
+        List<GetInteractionResponse> interactions = llmPromptRepository.findWithCompletionsByPromptIdIn(pageKeys.stream()
+                        .map(LlmPromptKey::promptId)
+                        .toList())
                 .stream()
-                .map(llmPrompt -> GetInteractionResponse.builder()
-                        .interactionPrompt(transform(llmPrompt))
-                        .interactionCompletions(transform(llmPrompt.getCompletions()))
-                        .build())
-                .sorted()
+                .map(this::toInteraction)
                 .toList();
+        return new InteractionPage(interactions, keys.size() > limit ? PromptCursor.encode(pageKeys.getLast()) : null);
+    }
 
-        return GetChatResponse.builder()
-                .interactions(responses)
+    //the prompts of the page and the one after it, which tells if there is a next page
+    private static int maxHits(int offset, int limit) {
+        return Math.clamp((long) offset + limit + 1, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param promptIds the prompt ids found, ranked by relevance, one more than the end of the page when there is a next page
+     * @param offset    number of prompts found before the page
+     * @param limit     max number of interactions in the page
+     * @return the interactions of the page in the order of the prompt ids
+     */
+    private InteractionPage readSearchPage(List<String> promptIds, int offset, int limit) {
+        if (promptIds.size() <= offset) {
+            return new InteractionPage(List.of(), null);
+        }
+        List<String> pageIds = promptIds.subList(offset, Math.min(offset + limit, promptIds.size()));
+        Map<String, LlmPrompt> llmPrompts = llmPromptRepository.findWithCompletionsByPromptIdIn(pageIds).stream()
+                .collect(Collectors.toMap(LlmPrompt::getPromptId, Function.identity()));
+        List<GetInteractionResponse> interactions = pageIds.stream()
+                .map(llmPrompts::get)
+                .filter(Objects::nonNull)
+                .map(this::toInteraction)
+                .toList();
+        return new InteractionPage(interactions, promptIds.size() > offset + limit ? PromptCursor.encode(offset + limit) : null);
+    }
+
+    //the completions must be fetched with the prompt
+    private GetInteractionResponse toInteraction(LlmPrompt llmPrompt) {
+        return toInteraction(llmPrompt, llmPrompt.getCompletions());
+    }
+
+    private GetInteractionResponse toInteraction(LlmPrompt llmPrompt, List<LlmCompletion> llmCompletions) {
+        return GetInteractionResponse.builder()
+                .interactionPrompt(transform(llmPrompt))
+                .interactionCompletions(transform(llmCompletions))
                 .build();
     }
 
@@ -291,23 +434,19 @@ public class ChatServiceImpl implements ChatService {
                 .build();
     }
 
-    private GetLlmProvidersStatusResponse extractStatusFrom(CreateCompletionsByProvidersResponse combinedChatResponse) {
-        if (combinedChatResponse == null) {
-            return GetLlmProvidersStatusResponse.builder()
-                    .llmProviderStatusList(List.of())
-                    .build();
-        }
-        List<GetLlmProvidersStatusResponse.LlmProviderStatus> statusList = combinedChatResponse.getInteractionCompletions().stream()
-                .map(response -> GetLlmProvidersStatusResponse.LlmProviderStatus.builder()
-                        .status(response.getLlm() == null ? LlmStatus.UNAVAILABLE : LlmStatus.AVAILABLE)
-                        .llm(response.getLlm() == null ? UNKNOWN_MODEL_NAME : response.getLlm())
-                        .provider(response.getLlmProvider())
+    private GetLlmProvidersStatusResponse toStatusResponse(Map<LlmProvider, ProviderProbeResult> probeResults) {
+        List<GetLlmProvidersStatusResponse.LlmProviderStatus> statusList = probeResults.entrySet().stream()
+                .map(probeResult -> GetLlmProvidersStatusResponse.LlmProviderStatus.builder()
+                        .status(probeResult.getValue().status())
+                        .llm(probeResult.getValue().llm())
+                        .provider(probeResult.getKey())
+                        .probedAt(probeResult.getValue().probedAt())
+                        .circuitState(providerCallExecutor.getCircuitState(probeResult.getKey()))
                         .build())
                 .toList();
         return GetLlmProvidersStatusResponse.builder()
                 .llmProviderStatusList(statusList)
                 .build();
-
     }
 
     private InteractionCompletion transform(LlmCompletion completion) {
@@ -318,7 +457,16 @@ public class ChatServiceImpl implements ChatService {
                 .llm(completion.getLlm())
                 .llmProvider(completion.getLlmProvider())
                 .tokenUsage(completion.getTokenUsage())
+                .promptTokens(completion.getPromptTokens())
+                .completionTokens(completion.getCompletionTokens())
+                .totalTokens(completion.getTotalTokens())
                 .executionTimeMs(completion.getExecutionTimeMs())
+                .timeToFirstTokenMs(completion.getTimeToFirstTokenMs())
+                .attempts(completion.getAttempts())
+                .backoffMs(completion.getBackoffMs())
+                .cached(completion.getCached())
+                .hedged(completion.getHedged())
+                .status(completion.getStatus())
                 .completedAt(completion.getCompletedAt())
                 .build();
     }
@@ -330,43 +478,30 @@ public class ChatServiceImpl implements ChatService {
                 .toList();
     }
 
-    private CreateCompletionByProviderResponse getCompletionResponse(String id, CreateCompletionByProviderRequest completionRequest) {
-        try {
-            createSavePublishRequest(id, completionRequest);
-
-            ChatResponseTimer chatResponse = callProvider(completionRequest, completionRequest.getLlmProvider());
-
-            return createSavePublishResponse(id, OffsetDateTime.now(), completionRequest.getLlmProvider(), chatResponse);
-
-        } catch (Exception e) {
-            log.error("Error in flow from {}", completionRequest.getLlmProvider(), e);
-            throw e;
-        }
+    private Mono<CreateCompletionByProviderResponse> getCompletionResponse(String id, CreateCompletionByProviderRequest completionRequest) {
+        return savePublishRequest(id, completionRequest, EnumSet.of(completionRequest.getLlmProvider()))
+                .then(callProviderWithDeadline(id, completionRequest, completionRequest.getLlmProvider(), true))
+                .flatMap(chatResponse -> blockingCall(() ->
+                        createSavePublishResponse(id, OffsetDateTime.now(), completionRequest.getLlmProvider(), chatResponse)))
+                .doOnError(e -> log.error("Error in flow from {}", completionRequest.getLlmProvider(), e));
     }
 
-    private CreateCompletionsByProvidersResponse getCompletionsResponse(String id, CreateCompletionsRequest completionRequest, Set<LlmProvider> providers) {
-        try {
+    private Mono<CreateCompletionsByProvidersResponse> getCompletionsResponse(String id, CreateCompletionsRequest completionRequest, Set<LlmProvider> providers) {
+        return Mono.defer(() -> {
             long start = System.currentTimeMillis();
             log.info("Start combined calling");
 
-            createSavePublishRequest(id, completionRequest);
-
-            Map<LlmProvider, ChatResponseTimer> chatResponses =
-                    getChatResponsesInParallel(completionRequest, providers)
-                            .block();
-
-            CreateCompletionsByProvidersResponse response = combineResponses(id, Objects.requireNonNull(chatResponses));
-
-            log.info("Created combined completion response after {} ms", System.currentTimeMillis() - start);
-            return response;
-        } catch (Exception e) {
-            log.error("Error in combined flow ", e);
-            throw e;
-        }
+            return savePublishRequest(id, completionRequest, providers)
+                    .then(getChatResponsesInParallel(id, completionRequest, providers))
+                    .flatMap(chatResponses -> blockingCall(() -> combineResponses(id, chatResponses)))
+                    .doOnSuccess(_ -> log.info("Created combined completion response after {} ms", System.currentTimeMillis() - start))
+                    .doOnError(e -> log.error("Error in combined flow ", e));
+        });
     }
 
     // Parallel execution with Mono
-    public Mono<Map<LlmProvider, ChatResponseTimer>> getChatResponsesInParallel(CreateCompletionsRequest completionRequest,
+    public Mono<Map<LlmProvider, ChatResponseTimer>> getChatResponsesInParallel(String promptId,
+                                                                                CreateCompletionsRequest completionRequest,
                                                                                 Set<LlmProvider> providers) {
 
         return Flux.fromIterable(providers)
@@ -374,11 +509,8 @@ public class ChatServiceImpl implements ChatService {
                 .flatMap(tupleClientProvider -> {
                     LlmProvider llmProvider = tupleClientProvider.getT1();
 
-                    return Mono.fromCallable(() -> {
-                                ChatResponseTimer result = callProvider(completionRequest, llmProvider);
-                                return Map.entry(llmProvider, result);
-                            })
-                            .subscribeOn(scheduler)
+                    return callProviderWithDeadline(promptId, completionRequest, llmProvider, false)
+                            .map(result -> Map.entry(llmProvider, result))
                             .onErrorResume(ex -> {
                                 log.error("Error calling provider {} with client {}, error: {}", llmProvider, chatClientMap.get(llmProvider), ex.getMessage());
                                 return errorResponse(llmProvider);
@@ -389,13 +521,317 @@ public class ChatServiceImpl implements ChatService {
 
     /**
      * This is the interface function calling the class handling the provider functionality.
+     * The ChatClient call is blocking, so it is run on a virtual thread and never on the thread subscribing.
+     * A rate limited or overloaded provider is called again as long as the deadline allows.
+     *
+     * @param completionRequest the llm request
+     * @param llmProvider       the llm provider
+     * @param deadline          the deadline of the request
+     * @return the answer from the provider with response time and attempts
+     */
+    private Mono<ChatResponseTimer> callProvider(CreateCompletionsRequest completionRequest, LlmProvider llmProvider, Duration deadline) {
+        return callProvider(llmProvider, () -> chatClientMap.get(llmProvider).callProvider(completionRequest, llmProvider), deadline);
+    }
+
+    private Mono<ChatResponseTimer> callProvider(LlmProvider llmProvider, Callable<ChatResponseTimer> call, Duration deadline) {
+        return Mono.defer(() -> {
+            CallAttempts attempts = new CallAttempts();
+            return providerCallExecutor.call(llmProvider, call, deadline, attempts)
+                    .map(response -> response.withAttempts(attempts.getAttempts(), attempts.getBackoffMs()))
+                    .doOnNext(response -> providerCallExecutor.recordLatency(llmProvider, response.executionTimeMs()));
+        });
+    }
+
+    /**
+     * Calls the provider, and sends the same prompt to the backup of the provider when no answer has arrived
+     * within a percentile of the recent execution times of the provider.
+     * The first answer wins and the other call is cancelled. A failing hedge is ignored, errors are handled by the retries of the call.
+     * Both calls are sent the history of the chat read before the call, and only the first answer is added to the chat memory.
+     *
+     * @param completionRequest the llm request
+     * @param llmProvider       the llm provider
+     * @param deadline          the deadline of the request
+     * @return the first answer from the provider or its backup
+     */
+    private Mono<ChatResponseTimer> callProviderHedged(CreateCompletionsRequest completionRequest, LlmProvider llmProvider, Duration deadline) {
+        ProviderClient providerClient = chatClientMap.get(llmProvider);
+        Optional<Duration> hedgeDelay = providerCallExecutor.hedgeDelay(llmProvider);
+        if (!providerClient.hasHedge() || hedgeDelay.isEmpty()) {
+            return callProvider(completionRequest, llmProvider, deadline);
+        }
+        List<Message> history = providerClient.historySnapshot(completionRequest.getChatId());
+        Mono<ChatResponseTimer> hedge = Mono.delay(hedgeDelay.get())
+                .then(providerCallExecutor.hedge(llmProvider, () -> providerClient.callHedge(completionRequest, llmProvider, history)))
+                .map(ChatResponseTimer::asHedge)
+                .doOnNext(_ -> {
+                    log.info("Hedge to backup of provider {} answered first", llmProvider);
+                    providerCallExecutor.onHedgeWon(llmProvider);
+                })
+                .onErrorResume(ex -> {
+                    log.error("Hedge to backup of provider {} failed, error: {}", llmProvider, ex.getMessage());
+                    return Mono.empty();
+                });
+        return Flux.merge(callProvider(llmProvider, () -> providerClient.callWithHistory(completionRequest, llmProvider, history), deadline), hedge)
+                //the first answer cancels the other call
+                .next()
+                .doOnNext(response -> {
+                    if (response.chatResponse().getResult() != null) {
+                        providerClient.addToSessionHistory(completionRequest, response.chatResponse().getResult().getOutput().getText());
+                    }
+                });
+    }
+
+    /**
+     * Calls the provider and stops waiting when the deadline has passed, so one stuck provider does not hold up the others.
+     * The call itself goes on and an answer arriving after the deadline is saved and published in the background.
+     *
+     * @param promptId          the id of the saved prompt
+     * @param completionRequest the llm request
+     * @param llmProvider       the llm provider
+     * @param hedged            send a hedge to the backup of the provider when it is slow to answer
+     * @return the answer from the provider with response time, or a timed out answer when the deadline has passed
+     */
+    private Mono<ChatResponseTimer> callProviderWithDeadline(String promptId, CreateCompletionsRequest completionRequest, LlmProvider llmProvider,
+                                                             boolean hedged) {
+        Duration deadline = deadline(completionRequest, llmProvider);
+        return Mono.defer(() -> {
+            CompletionCache.Key cacheKey = cacheKey(completionRequest, llmProvider);
+            boolean useCache = !Boolean.TRUE.equals(completionRequest.getNoCache());
+            if (useCache) {
+                Optional<ChatResponseTimer> cached = fromCache(completionRequest, llmProvider, cacheKey);
+                if (cached.isPresent()) {
+                    return Mono.just(cached.get());
+                }
+            }
+            return (useCache ? fromSemanticCache(completionRequest, llmProvider, cacheKey) : Mono.<ChatResponseTimer>empty())
+                    .switchIfEmpty(Mono.defer(() -> {
+                        //subscribed at once and not cancelled by the timeout, so a late answer is not lost
+                        CompletableFuture<ChatResponseTimer> call = joinCall(completionRequest, llmProvider, cacheKey, () -> (hedged
+                                ? callProviderHedged(completionRequest, llmProvider, deadline)
+                                : callProvider(completionRequest, llmProvider, deadline))
+                                //the answer of a backup model is not the answer of the model in the key
+                                .doOnNext(response -> {
+                                    if (!response.hedged()) {
+                                        completionCache.put(cacheKey, response);
+                                    }
+                                })
+                                .toFuture());
+                        return Mono.fromFuture(call, true)
+                                .timeout(deadline, Mono.fromSupplier(() -> {
+                                    log.warn("Provider {} did not answer within {} ms", llmProvider, deadline.toMillis());
+                                    saveLateResponse(promptId, llmProvider, call);
+                                    return ChatResponseTimer.timedOut(deadline);
+                                }));
+                    }));
+        });
+    }
+
+    /**
+     * Joins an identical call to the provider in flight, or starts the call. The calls are identical when their chats have the same history.
+     * A joining request gets its own prompt and completion, and the answer is added to the chat memory of its chat.
+     */
+    private CompletableFuture<ChatResponseTimer> joinCall(CreateCompletionsRequest completionRequest, LlmProvider llmProvider, CompletionCache.Key cacheKey,
+                                                          Supplier<CompletableFuture<ChatResponseTimer>> call) {
+        SingleFlight.Flight<ChatResponseTimer> flight = inFlightCalls.join(cacheKey, call);
+        if (flight.leader()) {
+            return flight.result();
+        }
+        log.info("Identical call to provider {} in flight, waiting for its answer", llmProvider);
+        providerCallExecutor.onCoalesced(llmProvider);
+        return flight.result()
+                .thenApply(response -> {
+                    if (response.chatResponse().getResult() != null) {
+                        chatClientMap.get(llmProvider).addToSessionHistory(completionRequest, response.chatResponse().getResult().getOutput().getText());
+                    }
+                    return response;
+                });
+    }
+
+    private CompletionCache.Key cacheKey(CreateCompletionsRequest completionRequest, LlmProvider llmProvider) {
+        String llm = Optional.ofNullable(appProperties.models().get(llmProvider))
+                .map(AppProperties.ProviderModel::llmModelName)
+                .orElse(null);
+        return new CompletionCache.Key(llmProvider, llm, completionRequest.getSystem(),
+                chatClientMap.get(llmProvider).historyHash(completionRequest.getChatId()), completionRequest.createPrompt());
+    }
+
+    /**
+     * A cached answer is added to the chat memory of the provider, as if the provider was called.
+     */
+    private Optional<ChatResponseTimer> fromCache(CreateCompletionsRequest completionRequest, LlmProvider llmProvider, CompletionCache.Key cacheKey) {
+        long start = System.currentTimeMillis();
+        return completionCache.get(cacheKey)
+                .map(response -> {
+                    log.info("Answer from provider {} found in cache", llmProvider);
+                    chatClientMap.get(llmProvider).addToSessionHistory(completionRequest, response.chatResponse().getResult().getOutput().getText());
+                    return response.asCached(System.currentTimeMillis() - start);
+                });
+    }
+
+    /**
+     * The prompt is embedded by a http call, so the lookup is blocking and given a short timeout before the provider is called.
+     * Prompts with their own system message are not looked up, the system message is not stored with the answered prompts.
+     * Neither are prompts in a chat with history, an answer of another chat was given without that history.
+     */
+    private Mono<ChatResponseTimer> fromSemanticCache(CreateCompletionsRequest completionRequest, LlmProvider llmProvider, CompletionCache.Key cacheKey) {
+        if (!semanticCompletionCache.isEnabled() || completionRequest.getSystem() != null || cacheKey.history() != null) {
+            return Mono.empty();
+        }
+        return blockingCall(() -> semanticCompletionCache.find(llmProvider, completionRequest.createPrompt()))
+                .mapNotNull(cached -> cached.orElse(null))
+                .timeout(semanticCompletionCache.lookupTimeout(), Mono.fromRunnable(() ->
+                        log.warn("Semantic cache lookup for provider {} not done within {} ms", llmProvider, semanticCompletionCache.lookupTimeout().toMillis())))
+                .doOnNext(response -> {
+                    log.info("Answer from provider {} found in semantic cache", llmProvider);
+                    chatClientMap.get(llmProvider).addToSessionHistory(completionRequest, response.chatResponse().getResult().getOutput().getText());
+                });
+    }
+
+    private Duration deadline(CreateCompletionsRequest completionRequest, LlmProvider llmProvider) {
+        if (completionRequest.getDeadlineMs() != null) {
+            return Duration.ofMillis(completionRequest.getDeadlineMs());
+        }
+        //not all providers need to be configured
+        return Optional.ofNullable(appProperties.models().get(llmProvider))
+                .map(AppProperties.ProviderModel::deadline)
+                .orElse(DEFAULT_DEADLINE);
+    }
+
+    private void saveLateResponse(String promptId, LlmProvider llmProvider, CompletableFuture<ChatResponseTimer> call) {
+        Mono.fromFuture(call)
+                .flatMap(response -> blockingCall(() -> createSavePublishResponse(promptId, OffsetDateTime.now(), llmProvider, response)))
+                .subscribe(
+                        _ -> log.info("Saved late answer from provider {} to prompt {}", llmProvider, promptId),
+                        ex -> log.error("Late call to provider {} failed, error: {}", llmProvider, ex.getMessage()));
+    }
+
+    private Flux<ChatResponse> streamFromProvider(CreateCompletionsRequest completionRequest, LlmProvider llmProvider) {
+        return providerCallExecutor.stream(llmProvider, () -> chatClientMap.get(llmProvider).streamProvider(completionRequest, llmProvider));
+    }
+
+    /**
+     * Saving to db and publishing is blocking and is run on a scheduler meant for blocking work.
+     *
+     * @param callable the blocking work
+     * @return the result of the blocking work
+     */
+    private static <T> Mono<T> blockingCall(Callable<T> callable) {
+        return Mono.fromCallable(callable)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Mono<Void> savePublishRequest(String promptId, CreateCompletionsRequest completionRequest, Set<LlmProvider> providers) {
+        return Mono.fromRunnable(() -> createSavePublishRequest(promptId, completionRequest, providers))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * Streams the answer from the provider as TOKEN events and ends with a DONE event holding the stored completion.
+     * The completion is assembled from the chunks and saved when the provider has finished.
+     * A failing provider ends with an ERROR event instead, since the http status is already sent when streaming.
      *
+     * @param promptId          the id of the saved prompt
      * @param completionRequest the llm request
      * @param llmProvider       the llm provider
-     * @return the answer from the provider with response time
+     * @return the events of the streamed answer
      */
-    private ChatResponseTimer callProvider(CreateCompletionsRequest completionRequest, LlmProvider llmProvider) {
-        return chatClientMap.get(llmProvider).callProvider(completionRequest, llmProvider);
+    private Flux<CreateCompletionEvent> streamProvider(String promptId, CreateCompletionsRequest completionRequest, LlmProvider llmProvider) {
+        return Flux.defer(() -> {
+            StreamedChatResponse streamedChatResponse = new StreamedChatResponse();
+            return streamFromProvider(completionRequest, llmProvider)
+                    .map(streamedChatResponse::add)
+                    .filter(StringUtils::hasLength)
+                    .map(token -> createEvent(CompletionEventType.TOKEN, promptId, llmProvider)
+                            .content(token)
+                            .build())
+                    //saving to db is blocking and must not be done on the thread delivering the stream
+                    .concatWith(blockingCall(() -> createSavePublishResponse(promptId, OffsetDateTime.now(), llmProvider, streamedChatResponse.toChatResponseTimer()))
+                            .map(response -> createEvent(CompletionEventType.DONE, promptId, llmProvider)
+                                    .interactionCompletion(response.getInteractionCompletion())
+                                    .build()))
+                    .onErrorResume(ex -> {
+                        log.error("Error streaming from provider {}, error: {}", llmProvider, ex.getMessage());
+                        return Mono.just(createEvent(CompletionEventType.ERROR, promptId, llmProvider)
+                                .content(ex.getMessage())
+                                .build());
+                    });
+        });
+    }
+
+    /**
+     * Sends the prompt to all providers and returns the first complete answer.
+     * The answers are streamed, so the calls of the losers are really cancelled and stop spending tokens.
+     *
+     * @param promptId          the id of the saved prompt
+     * @param completionRequest the llm request
+     * @param providers         the providers racing
+     * @return the first complete answer, saved and published
+     */
+    private Mono<CreateCompletionByProviderResponse> raceProviders(String promptId, CreateCompletionsRequest completionRequest, Set<LlmProvider> providers) {
+        return Flux.merge(providers.stream()
+                        .map(llmProvider -> streamToCompletion(promptId, completionRequest, llmProvider)
+                                .map(response -> Map.entry(llmProvider, response)))
+                        .toList())
+                //the first answer cancels the other streams
+                .next()
+                .flatMap(winner -> {
+                    log.info("Provider {} won the race for prompt {}", winner.getKey(), promptId);
+                    return blockingCall(() -> createSavePublishResponse(promptId, OffsetDateTime.now(), winner.getKey(), winner.getValue()));
+                })
+                .switchIfEmpty(Mono.error(() -> new NoCompletionException("No completion from any of the providers " + providers)));
+    }
+
+    /**
+     * Streams the answer from the provider and assembles it to one answer.
+     * A failing provider gives no answer, and a cancelled provider is saved with status CANCELLED.
+     */
+    private Mono<ChatResponseTimer> streamToCompletion(String promptId, CreateCompletionsRequest completionRequest, LlmProvider llmProvider) {
+        return Mono.defer(() -> {
+            StreamedChatResponse streamedChatResponse = new StreamedChatResponse();
+            return streamFromProvider(completionRequest, llmProvider)
+                    .doOnNext(streamedChatResponse::add)
+                    .then(Mono.fromSupplier(streamedChatResponse::toChatResponseTimer))
+                    .filter(response -> response.chatResponse().getResult() != null)
+                    .doOnCancel(() -> savePublishCancelled(promptId, llmProvider, streamedChatResponse.toCancelledChatResponseTimer()))
+                    .onErrorResume(ex -> {
+                        log.error("Error in race from provider {}, error: {}", llmProvider, ex.getMessage());
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    private void savePublishCancelled(String promptId, LlmProvider llmProvider, ChatResponseTimer response) {
+        log.info("Call to provider {} for prompt {} cancelled after {} ms", llmProvider, promptId, response.executionTimeMs());
+        InteractionCompletion interactionCompletion = InteractionCompletion.builder()
+                .completionId(createUniqueId())
+                .promptId(promptId)
+                .llm(StringUtils.hasText(response.chatResponse().getMetadata().getModel())
+                        ? response.chatResponse().getMetadata().getModel()
+                        : null)
+                .llmProvider(llmProvider)
+                .executionTimeMs(response.executionTimeMs())
+                .timeToFirstTokenMs(response.timeToFirstTokenMs())
+                .attempts(response.attempts())
+                .backoffMs(response.backoffMs())
+                .status(CompletionStatus.CANCELLED)
+                .completedAt(OffsetDateTime.now())
+                .build();
+        blockingCall(() -> {
+            savePublishResponse(promptId, CreateCompletionByProviderResponse.builder()
+                    .interactionCompletion(interactionCompletion)
+                    .build());
+            return interactionCompletion;
+        }).subscribe(
+                _ -> {},
+                ex -> log.error("Error saving cancelled call to provider {}, error: {}", llmProvider, ex.getMessage()));
+    }
+
+    private CreateCompletionEvent.CreateCompletionEventBuilder createEvent(CompletionEventType eventType, String promptId, LlmProvider llmProvider) {
+        return CreateCompletionEvent.builder()
+                .eventType(eventType)
+                .promptId(promptId)
+                .llmProvider(llmProvider);
     }
 
     /**
@@ -429,31 +865,46 @@ public class ChatServiceImpl implements ChatService {
                 .toList();
     }
 
-    private void createSavePublishRequest(String promptId, CreateCompletionsRequest completionRequest) {
+    /**
+     * The prompt is saved as stateless when sent without a system message of its own and without chat history to all the providers,
+     * only the answers of those prompts are answers to any similar prompt, see SemanticCompletionCache.
+     */
+    private void createSavePublishRequest(String promptId, CreateCompletionsRequest completionRequest, Set<LlmProvider> providers) {
         String prompt = completionRequest.createPrompt();
         log.info("Save and publish prompt to be sent: {}", prompt);
-        LlmPrompt llmPrompt = createLlmPrompt(promptId, prompt, completionRequest.getChatId());
-        llmPromptRepository.save(llmPrompt);
-        LlmPrompt savedPrompt = llmPromptRepository.findById(llmPrompt.getPromptId())
-                .orElseThrow(() -> new PromptNotFoundException(llmPrompt.getPromptId())); //should be present as just saved (not really needed)
-        applicationEventPublisher.publishEvent(savedPrompt);
+        boolean stateless = completionRequest.getSystem() == null && providers.stream()
+                .allMatch(llmProvider -> chatClientMap.get(llmProvider).getSessionMessages(completionRequest.getChatId()).isEmpty());
+        LlmPrompt llmPrompt = createLlmPrompt(promptId, prompt, completionRequest.getChatId(), stateless);
+        CompletableFuture<Void> written = interactionWriter.write(llmPrompt);
+        interactionCache.putPrompt(promptId, transform(llmPrompt));
+        //cached right away, and forgotten when the write behind the response fails
+        written.whenComplete((_, ex) -> {
+            if (ex != null) {
+                interactionCache.evictPrompt(promptId);
+            }
+        });
     }
 
     @SuppressWarnings("ConstantConditions")
     private CreateCompletionByProviderResponse createSavePublishResponse(String promptId, OffsetDateTime dateTime, LlmProvider llmProvider, ChatResponseTimer response) {
         if (Objects.isNull(response.chatResponse().getResult())) {
-            // No answer received that might happen if LLM is not available
+            // No answer received that might happen if LLM is not available or has not answered yet
             return CreateCompletionByProviderResponse.builder()
                     .interactionCompletion(
                             InteractionCompletion.builder()
                                     .completionId(createUniqueId())
                                     .promptId(promptId)
                                     .llmProvider(llmProvider)
+                                    .executionTimeMs(response.executionTimeMs())
+                                    .attempts(response.attempts())
+                                    .backoffMs(response.backoffMs())
+                                    .status(response.timedOut() ? CompletionStatus.TIMED_OUT : CompletionStatus.FAILED)
                                     .build())
                     .build();
         }
         //vertex sometimes answers with an empty model value which is not accepted by db constraints
         String llm = lookupModel(llmProvider, response);
+        Usage usage = response.chatResponse().getMetadata().getUsage();
         CreateCompletionByProviderResponse createCompletionByProviderResponse = CreateCompletionByProviderResponse.builder()
                 .interactionCompletion(
                         InteractionCompletion.builder()
@@ -462,8 +913,17 @@ public class ChatServiceImpl implements ChatService {
                                 .completion(response.chatResponse().getResults().getFirst().getOutput().getText())
                                 .llm(llm)
                                 .llmProvider(llmProvider)
-                                .tokenUsage(response.chatResponse().getMetadata().getUsage().toString())
+                                .tokenUsage(usage.toString())
+                                .promptTokens(usage.getPromptTokens())
+                                .completionTokens(usage.getCompletionTokens())
+                                .totalTokens(usage.getTotalTokens())
                                 .executionTimeMs(response.executionTimeMs())
+                                .timeToFirstTokenMs(response.timeToFirstTokenMs())
+                                .attempts(response.attempts())
+                                .backoffMs(response.backoffMs())
+                                .cached(response.cached())
+                                .hedged(response.hedged())
+                                .status(CompletionStatus.COMPLETED)
                                 .completedAt(dateTime)
                                 .build())
                 .build();
@@ -485,17 +945,24 @@ public class ChatServiceImpl implements ChatService {
 
     private void savePublishResponse(String promptId, CreateCompletionByProviderResponse createCompletionByProviderResponse) {
         LlmCompletion llmCompletion = createLlmCompletion(promptId, createCompletionByProviderResponse);
-        llmCompletionRepository.save(llmCompletion);
-        applicationEventPublisher.publishEvent(llmCompletion);
+        CompletableFuture<Void> written = interactionWriter.write(llmCompletion);
+        interactionCache.putCompletion(promptId, transform(llmCompletion));
+        written.whenComplete((_, ex) -> {
+            if (ex != null) {
+                interactionCache.evictCompletion(promptId, llmCompletion.getCompletionId());
+            }
+        });
     }
 
-    private LlmPrompt createLlmPrompt(String id, String prompt, String chatId) {
+    private LlmPrompt createLlmPrompt(String id, String prompt, String chatId, boolean stateless) {
         return LlmPrompt.builder()
                 .promptId(id)
                 .prompt(prompt)
+                .promptHash(LlmPromptText.hash(prompt))
                 .sessionId(getSessionId())
                 .chatId(chatId)
                 .promptedAt(OffsetDateTime.now())
+                .stateless(stateless)
                 .build();
     }
 
@@ -507,7 +974,16 @@ public class ChatServiceImpl implements ChatService {
                 .llm(response.getInteractionCompletion().getLlm())
                 .llmProvider(response.getInteractionCompletion().getLlmProvider())
                 .tokenUsage(response.getInteractionCompletion().getTokenUsage())
+                .promptTokens(response.getInteractionCompletion().getPromptTokens())
+                .completionTokens(response.getInteractionCompletion().getCompletionTokens())
+                .totalTokens(response.getInteractionCompletion().getTotalTokens())
                 .executionTimeMs(response.getInteractionCompletion().getExecutionTimeMs())
+                .timeToFirstTokenMs(response.getInteractionCompletion().getTimeToFirstTokenMs())
+                .attempts(response.getInteractionCompletion().getAttempts())
+                .backoffMs(response.getInteractionCompletion().getBackoffMs())
+                .cached(Boolean.TRUE.equals(response.getInteractionCompletion().getCached()))
+                .hedged(Boolean.TRUE.equals(response.getInteractionCompletion().getHedged()))
+                .status(response.getInteractionCompletion().getStatus())
                 .completedAt(response.getInteractionCompletion().getCompletedAt())
                 .build();
     }
@@ -517,17 +993,26 @@ public class ChatServiceImpl implements ChatService {
         return CreateCompletionByProviderRequest.builder()
                 .llmProvider(aggregateRequest.getLlmAggregator())
                 .prompt(completionsByProviders.getInteractionCompletions().stream()
+                        .filter(c -> c.getStatus() == CompletionStatus.COMPLETED)
                         .map(c -> c.getLlmProvider() + ": " + c.getCompletion())
                         .reduce((a, b) -> a + "\n\n" + b)
                         .orElse(""))
                 .chatId(aggregateRequest.getChatId())
                 .system(SUMMARY_SYSTEM_FROM_LLMS)
                 .style(aggregateRequest.getStyle())
+                .deadlineMs(aggregateRequest.getDeadlineMs())
                 .build();
     }
 
     private String createUniqueId() {
-        return UUID.randomUUID().toString();
+        return idGenerator.generateId().toString();
+    }
+
+    /**
+     * @param interactions the interactions of the page
+     * @param nextCursor   cursor of the next page, null on the last page
+     */
+    private record InteractionPage(List<GetInteractionResponse> interactions, String nextCursor) {
     }
 
 
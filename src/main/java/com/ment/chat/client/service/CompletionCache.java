@@ -0,0 +1,91 @@
+package com.ment.chat.client.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ment.chat.client.config.CompletionCacheProperties;
+import com.ment.chat.client.domain.ChatResponseTimer;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+/**
+ * Bounded cache of completed answers, evicted by size with W-TinyLFU and by age.
+ * Hit, miss and eviction metrics are exposed as cache.* metrics tagged with cache=llm.completion.
+ */
+@Slf4j
+@Component
+public class CompletionCache {
+
+    public static final String CACHE_NAME = "llm.completion";
+
+    private final boolean enabled;
+
+    private final Cache<Key, ChatResponseTimer> cache;
+
+    public CompletionCache(CompletionCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maxSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        log.info("Completion cache enabled: {}, max size {}, ttl {}", enabled, properties.maxSize(), properties.ttl());
+    }
+
+    /**
+     * @param key the prompt sent to the provider
+     * @return the cached answer, empty when not cached or the cache is disabled
+     */
+    public Optional<ChatResponseTimer> get(Key key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    /**
+     * Caches a completed answer, answers without a completion are not cached.
+     *
+     * @param key      the prompt sent to the provider
+     * @param response the answer from the provider
+     */
+    public void put(Key key, ChatResponseTimer response) {
+        if (enabled && response.chatResponse().getResult() != null && !response.cached()) {
+            cache.put(key, response);
+        }
+    }
+
+    /**
+     * Forgets the answers to the prompts removed by the retention.
+     * An answer is cached when the prompt is answered, so the time it was cached stands for the time of the prompt.
+     */
+    @EventListener
+    public void handlePurged(LlmPromptsPurgedBetween llmPromptsPurged) {
+        OffsetDateTime now = OffsetDateTime.now();
+        cache.policy().expireAfterWrite().ifPresent(expiration -> cache.asMap().keySet()
+                .removeIf(key -> expiration.ageOf(key)
+                        .map(age -> llmPromptsPurged.contains(now.minus(age)))
+                        .orElse(false)));
+    }
+
+    /**
+     * The answer of a provider depends on the model, the system message and the history sent with the prompt,
+     * but not on the id of the chat the prompt is sent in.
+     *
+     * @param llmProvider the provider
+     * @param llm         the configured model of the provider
+     * @param system      the system message of the request, null when the default system message of the model is used
+     * @param history     the hash of the chat memory sent with the prompt, null for the first prompt of a chat
+     * @param prompt      the prompt with style as sent to the provider
+     */
+    public record Key(LlmProvider llmProvider, String llm, String system, String history, String prompt) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.ment.chat.client.service;
+
+import java.util.List;
+
+/**
+ * Finds the prompts by a part of the prompt or of a completion in a full-text index, so a search does not scan the stored texts.
+ * The part is searched as a phrase of words, the case and punctuation are ignored.
+ */
+public interface FullTextSearch {
+
+    /**
+     * @param partOfPrompt the words to find in the prompts
+     * @param maxHits      max number of prompt ids, bounded by the configured max hits
+     * @return the prompt ids of the matching prompts, the most relevant first
+     */
+    List<String> searchPrompts(String partOfPrompt, int maxHits);
+
+    /**
+     * @param partOfCompletion the words to find in the completions
+     * @param maxHits          max number of prompt ids, bounded by the configured max hits
+     * @return the prompt ids of the matching completions, each prompt once, the most relevant first
+     */
+    List<String> searchCompletions(String partOfCompletion, int maxHits);
+}
@@ -0,0 +1,162 @@
+package com.ment.chat.client.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ment.chat.client.config.InteractionCacheProperties;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.model.out.GetInteractionResponse;
+import com.ment.chat.client.model.out.InteractionCompletion;
+import com.ment.chat.client.model.out.InteractionPrompt;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Bounded read-through cache of interactions per prompt id and per completion id.
+ * The rows of a prompt and its completions are never updated, but completions are added as the providers answer,
+ * so a saved completion is added to the cached interaction of its prompt.
+ * Hit, miss and eviction metrics are exposed as cache.* metrics tagged with the cache name.
+ */
+@Slf4j
+@Component
+public class InteractionCache {
+
+    public static final String BY_PROMPT_CACHE_NAME = "llm.interaction.by.prompt";
+
+    public static final String BY_COMPLETION_CACHE_NAME = "llm.interaction.by.completion";
+
+    private final boolean enabled;
+
+    private final Cache<String, GetInteractionResponse> byPromptId;
+
+    private final Cache<String, GetInteractionResponse> byCompletionId;
+
+    public InteractionCache(InteractionCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled();
+        this.byPromptId = createCache(properties);
+        this.byCompletionId = createCache(properties);
+        CaffeineCacheMetrics.monitor(meterRegistry, byPromptId, BY_PROMPT_CACHE_NAME);
+        CaffeineCacheMetrics.monitor(meterRegistry, byCompletionId, BY_COMPLETION_CACHE_NAME);
+        log.info("Interaction cache enabled: {}, max size {}, ttl {}", enabled, properties.maxSize(), properties.ttl());
+    }
+
+    /**
+     * @param promptId the prompt id
+     * @param loader   reads the interaction from the database when not cached, an exception is thrown to the caller and nothing is cached
+     * @return the interaction of the prompt
+     */
+    public GetInteractionResponse getByPromptId(String promptId, Function<String, GetInteractionResponse> loader) {
+        return enabled ? byPromptId.get(promptId, loader) : loader.apply(promptId);
+    }
+
+    /**
+     * @param completionId the completion id
+     * @param loader       reads the interaction from the database when not cached, an exception is thrown to the caller and nothing is cached
+     * @return the interaction with the prompt and only the given completion
+     */
+    public GetInteractionResponse getByCompletionId(String completionId, Function<String, GetInteractionResponse> loader) {
+        return enabled ? byCompletionId.get(completionId, loader) : loader.apply(completionId);
+    }
+
+    /**
+     * Caches the interaction of a saved prompt, which has no completions yet.
+     *
+     * @param promptId          the prompt id
+     * @param interactionPrompt the saved prompt
+     */
+    public void putPrompt(String promptId, InteractionPrompt interactionPrompt) {
+        if (enabled) {
+            byPromptId.put(promptId, GetInteractionResponse.builder()
+                    .interactionPrompt(interactionPrompt)
+                    .interactionCompletions(List.of())
+                    .build());
+        }
+    }
+
+    /**
+     * Adds a saved completion to the cached interaction of its prompt, and caches the interaction of the completion.
+     * Nothing is cached when the interaction of the prompt is not cached, it is read from the database when needed.
+     *
+     * @param promptId              the prompt id
+     * @param interactionCompletion the saved completion
+     */
+    public void putCompletion(String promptId, InteractionCompletion interactionCompletion) {
+        if (!enabled) {
+            return;
+        }
+        //blocks while the interaction is loaded, so a completion saved during the load is not lost
+        GetInteractionResponse interaction = byPromptId.asMap().computeIfPresent(promptId,
+                (_, cached) -> withCompletion(cached, interactionCompletion));
+        if (interaction != null) {
+            byCompletionId.put(interactionCompletion.getCompletionId(), GetInteractionResponse.builder()
+                    .interactionPrompt(interaction.getInteractionPrompt())
+                    .interactionCompletions(List.of(interactionCompletion))
+                    .build());
+        }
+    }
+
+    /**
+     * Forgets a prompt whose write behind the response failed, so an interaction not in the database is not served.
+     *
+     * @param promptId the prompt id
+     */
+    public void evictPrompt(String promptId) {
+        byPromptId.invalidate(promptId);
+        byCompletionId.asMap().values().removeIf(interaction -> Objects.equals(interaction.getInteractionPrompt().getPromptId(), promptId));
+    }
+
+    /**
+     * Forgets a completion whose write behind the response failed, the interaction of its prompt is served without it.
+     *
+     * @param promptId     the prompt id
+     * @param completionId the completion id
+     */
+    public void evictCompletion(String promptId, String completionId) {
+        byCompletionId.invalidate(completionId);
+        byPromptId.asMap().computeIfPresent(promptId, (_, cached) -> GetInteractionResponse.builder()
+                .interactionPrompt(cached.getInteractionPrompt())
+                .interactionCompletions(cached.getInteractionCompletions().stream()
+                        .filter(completion -> !Objects.equals(completion.getCompletionId(), completionId))
+                        .toList())
+                .build());
+    }
+
+    //the completion might already be read from the database by the load of the interaction
+    private static GetInteractionResponse withCompletion(GetInteractionResponse interaction, InteractionCompletion interactionCompletion) {
+        return GetInteractionResponse.builder()
+                .interactionPrompt(interaction.getInteractionPrompt())
+                .interactionCompletions(Stream.concat(
+                                interaction.getInteractionCompletions().stream()
+                                        .filter(completion -> !Objects.equals(completion.getCompletionId(), interactionCompletion.getCompletionId())),
+                                Stream.of(interactionCompletion))
+                        .sorted()
+                        .toList())
+                .build();
+    }
+
+    /**
+     * Forgets the interactions of the prompts removed by the retention.
+     */
+    @EventListener
+    public void handlePurged(LlmPromptsPurgedBetween llmPromptsPurged) {
+        Predicate<GetInteractionResponse> purged = interaction -> llmPromptsPurged.contains(interaction.getInteractionPrompt().getPromptedAt());
+        byPromptId.asMap().values().removeIf(purged);
+        byCompletionId.asMap().values().removeIf(purged);
+    }
+
+    private static Cache<String, GetInteractionResponse> createCache(InteractionCacheProperties properties) {
+        return Caffeine.newBuilder()
+                .maximumSize(properties.maxSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+    }
+}
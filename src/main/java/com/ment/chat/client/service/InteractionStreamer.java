@@ -0,0 +1,87 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.repository.LlmCompletionRepository;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads streamed or found prompts in chunks, the completions of each chunk are read in one query and the chunk is then
+ * detached, so the memory used does not grow with the number of prompts.
+ */
+@Component
+@RequiredArgsConstructor
+public class InteractionStreamer {
+
+    static final int CHUNK_SIZE = 100;
+
+    private final LlmPromptRepository llmPromptRepository;
+
+    private final LlmCompletionRepository llmCompletionRepository;
+
+    private final EntityManager entityManager;
+
+    /**
+     * The database connection is held until the consumer has handled the last prompt.
+     *
+     * @param prompts  the streamed query of prompts, opened in the transaction of this method
+     * @param consumer handles each prompt with its completions, in the order of the prompts
+     */
+    @Transactional(readOnly = true)
+    public void forEach(Supplier<Stream<LlmPrompt>> prompts, BiConsumer<LlmPrompt, List<LlmCompletion>> consumer) {
+        try (Stream<LlmPrompt> stream = prompts.get()) {
+            Iterator<LlmPrompt> iterator = stream.iterator();
+            List<LlmPrompt> chunk = new ArrayList<>(CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == CHUNK_SIZE || !iterator.hasNext()) {
+                    accept(chunk, consumer);
+                    chunk.clear();
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param promptIds the prompt ids found by a search
+     * @param consumer  handles each prompt with its completions, in the order of the prompt ids
+     */
+    @Transactional(readOnly = true)
+    public void forEach(List<String> promptIds, BiConsumer<LlmPrompt, List<LlmCompletion>> consumer) {
+        for (int from = 0; from < promptIds.size(); from += CHUNK_SIZE) {
+            List<String> chunkIds = promptIds.subList(from, Math.min(from + CHUNK_SIZE, promptIds.size()));
+            Map<String, LlmPrompt> llmPrompts = llmPromptRepository.findWithTextByPromptIdIn(chunkIds).stream()
+                    .collect(Collectors.toMap(LlmPrompt::getPromptId, Function.identity()));
+            accept(chunkIds.stream()
+                    .map(llmPrompts::get)
+                    .filter(Objects::nonNull)
+                    .toList(), consumer);
+            entityManager.clear();
+        }
+    }
+
+    private void accept(List<LlmPrompt> chunk, BiConsumer<LlmPrompt, List<LlmCompletion>> consumer) {
+        Map<String, List<LlmCompletion>> completions = llmCompletionRepository.findByPromptIdInOrderByLlmAsc(chunk.stream()
+                        .map(LlmPrompt::getPromptId)
+                        .toList())
+                .stream()
+                .collect(Collectors.groupingBy(LlmCompletion::getPromptId));
+        chunk.forEach(llmPrompt -> consumer.accept(llmPrompt, completions.getOrDefault(llmPrompt.getPromptId(), List.of())));
+    }
+}
@@ -0,0 +1,356 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.WriteBehindProperties;
+import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.exception.StorageBusyException;
+import com.ment.chat.client.domain.repository.LlmCompletionRepository;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes the prompts and completions behind the responses. The writes are queued and inserted by a background writer
+ * in batches, a prompt and the completions queued after it in one transaction with JDBC batched inserts.
+ * The text of a prompt is written by the {@link PromptTextStore} in the same transaction, unless it is stored already.
+ * The queue is bounded, a caller waits for room in a full queue and the write is rejected when there is no room in time.
+ * The entities are published as events when written, so listeners can read them from the database.
+ * At shutdown the writer stops after the web server and writes the queued prompts and completions before the database is closed,
+ * a write arriving while stopping is written by the caller.
+ */
+@Slf4j
+@Component
+public class InteractionWriter implements SmartLifecycle {
+
+    public static final String QUEUED_METRIC = "llm.write.behind.queued";
+    public static final String BATCH_SIZE_METRIC = "llm.write.behind.batch.size";
+    public static final String FAILED_METRIC = "llm.write.behind.failed";
+
+    //stopped after the graceful shutdown of the web server, so the writes of the last requests are queued first
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+
+    private final WriteBehindProperties properties;
+
+    private final LlmPromptRepository llmPromptRepository;
+
+    private final LlmCompletionRepository llmCompletionRepository;
+
+    private final PromptTextStore promptTextStore;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private final BlockingQueue<Write> queue;
+
+    private final DistributionSummary batchSizes;
+
+    private final Counter failures;
+
+    private volatile boolean running;
+
+    //a write checks running and is queued under the read lock, so no write is queued after stop has drained the queue
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+    private volatile Thread writer;
+
+    public InteractionWriter(WriteBehindProperties properties,
+                             LlmPromptRepository llmPromptRepository,
+                             LlmCompletionRepository llmCompletionRepository,
+                             PromptTextStore promptTextStore,
+                             PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher applicationEventPublisher,
+                             MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.llmPromptRepository = llmPromptRepository;
+        this.llmCompletionRepository = llmCompletionRepository;
+        this.promptTextStore = promptTextStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.queue = new ArrayBlockingQueue<>(properties.queueCapacity());
+        Gauge.builder(QUEUED_METRIC, queue, BlockingQueue::size)
+                .description("Number of prompts and completions waiting to be written")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder(BATCH_SIZE_METRIC)
+                .description("Number of prompts and completions written in one transaction")
+                .register(meterRegistry);
+        this.failures = Counter.builder(FAILED_METRIC)
+                .description("Number of prompts and completions not written")
+                .register(meterRegistry);
+        log.info("Write-behind enabled: {}, ack {}, batch size {}, flush interval {}",
+                properties.enabled(), properties.ack(), properties.batchSize(), properties.flushInterval());
+    }
+
+    /**
+     * @return completed when the prompt is written, or exceptionally when its write fails after the call has returned
+     */
+    public CompletableFuture<Void> write(LlmPrompt llmPrompt) {
+        return write((Object) llmPrompt);
+    }
+
+    /**
+     * @return completed when the completion is written, or exceptionally when its write fails after the call has returned
+     */
+    public CompletableFuture<Void> write(LlmCompletion llmCompletion) {
+        return write((Object) llmCompletion);
+    }
+
+    private CompletableFuture<Void> write(Object entity) {
+        Write write = new Write(entity, new CompletableFuture<>());
+        if (!enqueueWhileRunning(write)) {
+            //written by the caller when disabled, or not started yet or stopped
+            saveAndPublish(entity);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (properties.ack() == WriteBehindProperties.Ack.SYNC) {
+            awaitWritten(write);
+        }
+        return write.written();
+    }
+
+    /**
+     * @return false when the writer is not running and the write is not queued
+     */
+    private boolean enqueueWhileRunning(Write write) {
+        runningLock.readLock().lock();
+        try {
+            if (!running) {
+                return false;
+            }
+            enqueue(write);
+            return true;
+        } finally {
+            runningLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Waits for the batch of the write to be committed. A write not committed in time may still be written later.
+     */
+    private void awaitWritten(Write write) {
+        try {
+            write.written().get(properties.ackTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new StorageBusyException("Write-behind did not commit the write within " + properties.ackTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageBusyException("Interrupted while waiting for the write-behind to commit the write");
+        }
+    }
+
+    private void enqueue(Write write) {
+        try {
+            if (!queue.offer(write, properties.offerTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                failures.increment();
+                throw new StorageBusyException("Write-behind queue is full with " + queue.size() + " writes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageBusyException("Interrupted while waiting for room in the write-behind queue");
+        }
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>(properties.batchSize());
+        boolean interrupted = false;
+        //stopping, the queue is drained before the writer ends
+        while (!interrupted && (running || !queue.isEmpty())) {
+            try {
+                fill(batch);
+            } catch (InterruptedException e) {
+                //not drained in time, the rest of the queue is written by the stopping thread
+                interrupted = true;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Waits for the first write, then fills the batch until it is full or the flush interval has passed.
+     */
+    private void fill(List<Write> batch) throws InterruptedException {
+        Write first = queue.poll(properties.flushInterval().toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + properties.flushInterval().toNanos();
+        while (batch.size() < properties.batchSize()) {
+            queue.drainTo(batch, properties.batchSize() - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= properties.batchSize() || remaining <= 0) {
+                break;
+            }
+            Write next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    void flush(List<Write> batch) {
+        long start = System.currentTimeMillis();
+        //prompts first, a completion refers to its prompt
+        List<LlmPrompt> llmPrompts = batch.stream()
+                .map(Write::entity)
+                .filter(LlmPrompt.class::isInstance)
+                .map(LlmPrompt.class::cast)
+                .toList();
+        List<LlmCompletion> llmCompletions = batch.stream()
+                .map(Write::entity)
+                .filter(LlmCompletion.class::isInstance)
+                .map(LlmCompletion.class::cast)
+                .toList();
+        try {
+            transactionTemplate.executeWithoutResult(_ -> {
+                promptTextStore.saveAbsent(llmPrompts);
+                llmPromptRepository.saveAll(llmPrompts);
+                llmCompletionRepository.saveAll(llmCompletions);
+            });
+        } catch (RuntimeException e) {
+            //one bad row must not lose the batch, so the writes are retried one by one
+            promptTextStore.forget(llmPrompts);
+            log.warn("Batch of {} writes failed, retrying one by one, error: {}", batch.size(), e.getMessage());
+            batch.forEach(this::writeOne);
+            return;
+        }
+        promptTextStore.remember(llmPrompts);
+        batchSizes.record(batch.size());
+        log.debug("Wrote {} prompts and {} completions in {} ms", llmPrompts.size(), llmCompletions.size(), System.currentTimeMillis() - start);
+        batch.forEach(write -> {
+            publish(write.entity());
+            write.written().complete(null);
+        });
+    }
+
+    private void writeOne(Write write) {
+        try {
+            saveAndPublish(write.entity());
+            write.written().complete(null);
+        } catch (RuntimeException e) {
+            failures.increment();
+            log.error("Write of {} failed", write.entity(), e);
+            write.written().completeExceptionally(e);
+        }
+    }
+
+    private void saveAndPublish(Object entity) {
+        switch (entity) {
+            case LlmPrompt llmPrompt -> savePrompt(llmPrompt);
+            case LlmCompletion llmCompletion -> llmCompletionRepository.save(llmCompletion);
+            default -> throw new IllegalArgumentException("Not an interaction entity: " + entity);
+        }
+        publish(entity);
+    }
+
+    //the text first, the prompt refers to it
+    private void savePrompt(LlmPrompt llmPrompt) {
+        List<LlmPrompt> llmPrompts = List.of(llmPrompt);
+        try {
+            transactionTemplate.executeWithoutResult(_ -> {
+                promptTextStore.saveAbsent(llmPrompts);
+                llmPromptRepository.save(llmPrompt);
+            });
+        } catch (RuntimeException e) {
+            promptTextStore.forget(llmPrompts);
+            throw e;
+        }
+        promptTextStore.remember(llmPrompts);
+    }
+
+    private void publish(Object entity) {
+        try {
+            applicationEventPublisher.publishEvent(entity);
+        } catch (RuntimeException e) {
+            //the entity is written, a failing listener must not fail the write
+            log.warn("Listener of {} failed, error: {}", entity, e.getMessage());
+        }
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        if (properties.enabled()) {
+            running = true;
+            writer = Thread.ofPlatform()
+                    .name("write-behind")
+                    .daemon(true)
+                    .start(this::run);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (writer == null) {
+            return;
+        }
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        try {
+            writer.join(properties.drainTimeout());
+            if (writer.isAlive()) {
+                log.warn("Write-behind not drained within {}, {} writes left", properties.drainTimeout(), queue.size());
+                writer.interrupt();
+                writer.join(properties.flushInterval());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+        //writes queued before running was cleared and not drained by the writer, further writes are written by the caller
+        List<Write> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(this::writeOne);
+        log.info("Write-behind stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * @param entity  the prompt or completion to be written
+     * @param written completed when the entity is written
+     */
+    record Write(Object entity, CompletableFuture<Void> written) {
+    }
+}
@@ -0,0 +1,350 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.FullTextSearchProperties;
+import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptKey;
+import com.ment.chat.client.domain.LlmPromptsPurged;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.QueryBuilder;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Searches an embedded Lucene index of the prompts and completions, for databases without a full-text index of their own.
+ * Each prompt and completion is indexed when written, and found by a search after the next refresh of the index.
+ * The index is committed to disk with the time of the latest indexed prompt. At startup the prompts from a while before that time
+ * are indexed again with their completions, or all prompts when there is no index, so the index catches up with the database.
+ * An index of an older version is emptied and indexed again from all prompts.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "app.full-text-search", name = "engine", havingValue = "LUCENE")
+public class LuceneSearch implements FullTextSearch, DisposableBean {
+
+    static final String INDEXED_UNTIL = "indexedUntil";
+
+    static final String VERSION = "version";
+
+    //2: the prompts are indexed with their time, so the prompts purged by time are found
+    private static final String INDEX_VERSION = "2";
+
+    private static final String ID = "id";
+    private static final String TYPE = "type";
+    private static final String PROMPT_ID = "promptId";
+    private static final String TEXT = "text";
+    private static final String PROMPTED_AT = "promptedAt";
+    private static final String PROMPT_TYPE = "prompt";
+    private static final String COMPLETION_TYPE = "completion";
+
+    private static final int CATCH_UP_PAGE_SIZE = 100;
+
+    private static final int PURGE_PAGE_SIZE = 1000;
+
+    private final FullTextSearchProperties properties;
+
+    private final LlmPromptRepository llmPromptRepository;
+
+    private final IndexWriter indexWriter;
+
+    private final SearcherManager searcherManager;
+
+    private final QueryBuilder queryBuilder;
+
+    //the time of the latest prompt in the last commit, null when there is no index
+    private final OffsetDateTime committedUntil;
+
+    private final AtomicReference<OffsetDateTime> indexedUntil = new AtomicReference<>();
+
+    private final ExecutorService indexer = Executors.newVirtualThreadPerTaskExecutor();
+
+    public LuceneSearch(FullTextSearchProperties properties, LlmPromptRepository llmPromptRepository) throws IOException {
+        this(properties, llmPromptRepository, FSDirectory.open(Files.createDirectories(properties.indexDirectory())));
+        log.info("Full-text search by Lucene index in {}", properties.indexDirectory().toAbsolutePath());
+    }
+
+    LuceneSearch(FullTextSearchProperties properties, LlmPromptRepository llmPromptRepository, Directory directory) throws IOException {
+        this.properties = properties;
+        this.llmPromptRepository = llmPromptRepository;
+        Analyzer analyzer = new StandardAnalyzer();
+        this.indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(indexWriter, null);
+        this.queryBuilder = new QueryBuilder(analyzer);
+        String until = commitData(indexWriter, INDEXED_UNTIL);
+        if (!INDEX_VERSION.equals(commitData(indexWriter, VERSION))) {
+            //indexed again from all prompts
+            indexWriter.deleteAll();
+            until = null;
+        }
+        this.committedUntil = until == null ? null : OffsetDateTime.parse(until);
+        indexedUntil.set(committedUntil);
+    }
+
+    @Override
+    public List<String> searchPrompts(String partOfPrompt, int maxHits) {
+        return search(PROMPT_TYPE, partOfPrompt, maxHits);
+    }
+
+    @Override
+    public List<String> searchCompletions(String partOfCompletion, int maxHits) {
+        return search(COMPLETION_TYPE, partOfCompletion, maxHits);
+    }
+
+    private List<String> search(String type, String part, int maxHits) {
+        Query phrase = queryBuilder.createPhraseQuery(TEXT, part);
+        if (phrase == null) {
+            //no words in the part
+            return List.of();
+        }
+        Query query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(TYPE, type)), BooleanClause.Occur.FILTER)
+                .add(phrase, BooleanClause.Occur.MUST)
+                .build();
+        int hits = Math.min(maxHits, properties.maxHits());
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                StoredFields storedFields = searcher.storedFields();
+                //several completions of a prompt may match, so more are read until there are enough prompts
+                Set<String> promptIds = new LinkedHashSet<>();
+                ScoreDoc after = null;
+                while (promptIds.size() < hits) {
+                    ScoreDoc[] scoreDocs = searcher.searchAfter(after, query, hits - promptIds.size()).scoreDocs;
+                    if (scoreDocs.length == 0) {
+                        break;
+                    }
+                    for (ScoreDoc scoreDoc : scoreDocs) {
+                        promptIds.add(storedFields.document(scoreDoc.doc).get(PROMPT_ID));
+                    }
+                    after = scoreDocs[scoreDocs.length - 1];
+                }
+                return List.copyOf(promptIds);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @EventListener
+    public void handlePrompt(LlmPrompt llmPrompt) {
+        index(llmPrompt);
+    }
+
+    @EventListener
+    public void handleCompletion(LlmCompletion llmCompletion) {
+        index(llmCompletion);
+    }
+
+    /**
+     * Removes the prompts deleted by the retention and their completions.
+     */
+    @EventListener
+    public void handlePurged(LlmPromptsPurged llmPromptsPurged) {
+        deletePrompts(llmPromptsPurged.promptIds());
+    }
+
+    /**
+     * Removes the prompts of a time range removed by the retention and their completions,
+     * the prompt ids are found by the time of the indexed prompts.
+     */
+    @EventListener
+    public void handlePurgedBetween(LlmPromptsPurgedBetween llmPromptsPurged) {
+        Query query = LongPoint.newRangeQuery(PROMPTED_AT,
+                llmPromptsPurged.from().toInstant().toEpochMilli(), llmPromptsPurged.to().toInstant().toEpochMilli() - 1);
+        Set<String> promptIds = new LinkedHashSet<>();
+        try {
+            //the prompts indexed since the last refresh are found too
+            searcherManager.maybeRefreshBlocking();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                StoredFields storedFields = searcher.storedFields();
+                ScoreDoc after = null;
+                ScoreDoc[] scoreDocs;
+                do {
+                    scoreDocs = searcher.searchAfter(after, query, PURGE_PAGE_SIZE).scoreDocs;
+                    for (ScoreDoc scoreDoc : scoreDocs) {
+                        promptIds.add(storedFields.document(scoreDoc.doc).get(PROMPT_ID));
+                    }
+                    if (scoreDocs.length > 0) {
+                        after = scoreDocs[scoreDocs.length - 1];
+                    }
+                } while (scoreDocs.length == PURGE_PAGE_SIZE);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        deletePrompts(promptIds);
+        log.info("Removed {} prompts prompted from {} to {} from the Lucene index", promptIds.size(), llmPromptsPurged.from(), llmPromptsPurged.to());
+    }
+
+    private void deletePrompts(Collection<String> promptIds) {
+        try {
+            indexWriter.deleteDocuments(promptIds.stream()
+                    .map(promptId -> new Term(PROMPT_ID, promptId))
+                    .toArray(Term[]::new));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void index(LlmPrompt llmPrompt) {
+        update(PROMPT_TYPE, llmPrompt.getPromptId(), llmPrompt.getPromptId(), llmPrompt.getPrompt(), llmPrompt.getPromptedAt());
+        if (llmPrompt.getPromptedAt() != null) {
+            indexedUntil.accumulateAndGet(llmPrompt.getPromptedAt(),
+                    (until, promptedAt) -> until == null || promptedAt.isAfter(until) ? promptedAt : until);
+        }
+    }
+
+    void index(LlmCompletion llmCompletion) {
+        //a failed call has no completion
+        if (llmCompletion.getCompletion() != null) {
+            update(COMPLETION_TYPE, llmCompletion.getCompletionId(), llmCompletion.getPromptId(), llmCompletion.getCompletion(), null);
+        }
+    }
+
+    //replaces the document of an indexed prompt or completion, so indexing again is harmless
+    private void update(String type, String id, String promptId, String text, OffsetDateTime promptedAt) {
+        Document document = new Document();
+        document.add(new StringField(ID, id, Field.Store.NO));
+        document.add(new StringField(TYPE, type, Field.Store.NO));
+        //indexed, so the documents of a prompt are deleted with it
+        document.add(new StringField(PROMPT_ID, promptId, Field.Store.YES));
+        document.add(new TextField(TEXT, text, Field.Store.NO));
+        //the completions are deleted with their prompt, so only the prompt has a time
+        if (promptedAt != null) {
+            document.add(new LongPoint(PROMPTED_AT, promptedAt.toInstant().toEpochMilli()));
+        }
+        try {
+            indexWriter.updateDocument(new Term(ID, id), document);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUp() {
+        indexer.execute(this::catchUpIndex);
+    }
+
+    /**
+     * Indexes the prompts with their completions from the catch-up time before the last commit, in the order of prompting.
+     */
+    void catchUpIndex() {
+        long start = System.currentTimeMillis();
+        LlmPromptKey after = committedUntil == null
+                ? LlmPromptKey.FIRST
+                : new LlmPromptKey(committedUntil.minus(properties.catchUp()), "");
+        int indexed = 0;
+        try {
+            List<LlmPromptKey> keys;
+            do {
+                keys = llmPromptRepository.findKeysAfter(after.promptedAt(), after.promptId(), PageRequest.of(0, CATCH_UP_PAGE_SIZE));
+                if (keys.isEmpty()) {
+                    break;
+                }
+                llmPromptRepository.findWithCompletionsByPromptIdIn(keys.stream()
+                                .map(LlmPromptKey::promptId)
+                                .toList())
+                        .forEach(llmPrompt -> {
+                            index(llmPrompt);
+                            llmPrompt.getCompletions().forEach(this::index);
+                        });
+                indexed += keys.size();
+                after = keys.getLast();
+            } while (keys.size() == CATCH_UP_PAGE_SIZE);
+            refresh();
+            commit();
+            log.info("Lucene index caught up with {} prompts after {} in {} ms", indexed, after.promptedAt(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            //the prompts not indexed are found again at the next startup
+            log.warn("Lucene index not caught up after {} prompts, error: {}", indexed, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.full-text-search.refresh-interval:1s}")
+    public void refresh() {
+        try {
+            searcherManager.maybeRefresh();
+        } catch (IOException e) {
+            log.warn("Lucene index not refreshed, error: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.full-text-search.commit-interval:1m}")
+    public void commit() {
+        OffsetDateTime until = indexedUntil.get();
+        indexWriter.setLiveCommitData((until == null
+                ? Map.of(VERSION, INDEX_VERSION)
+                : Map.of(VERSION, INDEX_VERSION, INDEXED_UNTIL, until.toString())).entrySet());
+        try {
+            indexWriter.commit();
+        } catch (IOException e) {
+            log.warn("Lucene index not committed, error: {}", e.getMessage());
+        }
+    }
+
+    private static String commitData(IndexWriter indexWriter, String key) {
+        Iterable<Map.Entry<String, String>> commitData = indexWriter.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (key.equals(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        indexer.shutdownNow();
+        commit();
+        searcherManager.close();
+        indexWriter.close();
+    }
+}
@@ -0,0 +1,48 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.FullTextSearchProperties;
+import com.ment.chat.client.domain.repository.LlmCompletionRepository;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Searches the Oracle Text CONTEXT indexes of the prompts and completions, ranked by the score of Oracle Text.
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.full-text-search", name = "engine", havingValue = "ORACLE_TEXT", matchIfMissing = true)
+@RequiredArgsConstructor
+public class OracleTextSearch implements FullTextSearch {
+
+    private final FullTextSearchProperties properties;
+
+    private final LlmPromptRepository llmPromptRepository;
+
+    private final LlmCompletionRepository llmCompletionRepository;
+
+    @Override
+    public List<String> searchPrompts(String partOfPrompt, int maxHits) {
+        String text = toPhrase(partOfPrompt);
+        return text.isEmpty() ? List.of() : llmPromptRepository.searchPromptIdsByPrompt(text, Math.min(maxHits, properties.maxHits()));
+    }
+
+    @Override
+    public List<String> searchCompletions(String partOfCompletion, int maxHits) {
+        String text = toPhrase(partOfCompletion);
+        return text.isEmpty() ? List.of() : llmCompletionRepository.searchPromptIdsByCompletion(text, Math.min(maxHits, properties.maxHits()));
+    }
+
+    /**
+     * The part within braces is a phrase, its operators and wildcards are not interpreted by Oracle Text.
+     * A brace in the part would end the phrase, so the braces are removed, they are not indexed anyway.
+     */
+    static String toPhrase(String part) {
+        String words = part.replace('{', ' ')
+                .replace('}', ' ')
+                .strip();
+        return words.isEmpty() ? "" : "{" + words + "}";
+    }
+}
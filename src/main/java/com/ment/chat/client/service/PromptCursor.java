@@ -0,0 +1,69 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.domain.LlmPromptKey;
+import jakarta.validation.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque cursor of a page of interactions, the key of the last prompt of the previous page,
+ * or for a search ranked by relevance the number of prompts found before the page.
+ */
+public final class PromptCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private PromptCursor() {
+    }
+
+    public static String encode(LlmPromptKey llmPromptKey) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((llmPromptKey.promptedAt() + SEPARATOR + llmPromptKey.promptId()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor the cursor from the previous page, null for the first page
+     * @return the key to continue after
+     */
+    public static LlmPromptKey decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return LlmPromptKey.FIRST;
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = key.indexOf(SEPARATOR);
+            return new LlmPromptKey(OffsetDateTime.parse(key.substring(0, separator)), key.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ValidationException("Invalid cursor: " + cursor);
+        }
+    }
+
+    public static String encode(int offset) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(Integer.toString(offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor the cursor from the previous page of a search, null for the first page
+     * @return the number of prompts found before the page
+     */
+    public static int decodeOffset(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (offset < 0) {
+                throw new ValidationException("Invalid cursor: " + cursor);
+            }
+            return offset;
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid cursor: " + cursor);
+        }
+    }
+}
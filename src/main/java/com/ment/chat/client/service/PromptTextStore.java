@@ -0,0 +1,107 @@
+package com.ment.chat.client.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptText;
+import com.ment.chat.client.domain.repository.LlmPromptTextRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores the text of each prompt once, keyed by its hash, so the fan-outs, aggregates, retries and status pings
+ * repeating a prompt do not store its text again. The hashes of the stored texts are cached, so a repeated prompt
+ * is written without reading or writing its text. A cached hash may be stale when its text was deleted by the retention,
+ * the write of the prompt then fails and the hash is forgotten before the prompt is written again.
+ */
+@Component
+public class PromptTextStore {
+
+    public static final String TEXTS_METRIC = "llm.prompt.texts";
+
+    private static final int KNOWN_HASHES = 10_000;
+
+    private final LlmPromptTextRepository llmPromptTextRepository;
+
+    private final Cache<String, Boolean> stored = Caffeine.newBuilder()
+            .maximumSize(KNOWN_HASHES)
+            .build();
+
+    private final Counter written;
+
+    private final Counter skipped;
+
+    public PromptTextStore(LlmPromptTextRepository llmPromptTextRepository, MeterRegistry meterRegistry) {
+        this.llmPromptTextRepository = llmPromptTextRepository;
+        this.written = texts(meterRegistry, "written");
+        this.skipped = texts(meterRegistry, "skipped");
+    }
+
+    /**
+     * Writes the texts not stored yet, in the transaction writing the prompts and before them.
+     */
+    public void saveAbsent(List<LlmPrompt> llmPrompts) {
+        Map<String, String> unknown = new LinkedHashMap<>();
+        for (LlmPrompt llmPrompt : llmPrompts) {
+            if (stored.getIfPresent(llmPrompt.getPromptHash()) == null) {
+                unknown.putIfAbsent(llmPrompt.getPromptHash(), llmPrompt.getPrompt());
+            }
+        }
+        if (unknown.isEmpty()) {
+            skipped.increment(llmPrompts.size());
+            return;
+        }
+        Set<String> storedHashes = new HashSet<>(llmPromptTextRepository.findStoredHashes(unknown.keySet()));
+        OffsetDateTime now = OffsetDateTime.now();
+        List<LlmPromptText> absent = unknown.entrySet().stream()
+                .filter(text -> !storedHashes.contains(text.getKey()))
+                .map(text -> LlmPromptText.builder()
+                        .promptHash(text.getKey())
+                        .prompt(text.getValue())
+                        .createdAt(now)
+                        .build())
+                .toList();
+        llmPromptTextRepository.saveAll(absent);
+        written.increment(absent.size());
+        skipped.increment(llmPrompts.size() - absent.size());
+    }
+
+    /**
+     * Caches the hashes of the written prompts, after their transaction is committed.
+     */
+    public void remember(List<LlmPrompt> llmPrompts) {
+        llmPrompts.forEach(llmPrompt -> stored.put(llmPrompt.getPromptHash(), Boolean.TRUE));
+    }
+
+    public void forget(List<LlmPrompt> llmPrompts) {
+        stored.invalidateAll(llmPrompts.stream()
+                .map(LlmPrompt::getPromptHash)
+                .toList());
+    }
+
+    /**
+     * Deletes the texts of no prompt, in a transaction after the retention has removed prompts.
+     *
+     * @return the number of deleted texts
+     */
+    public int deleteUnreferenced() {
+        int deleted = llmPromptTextRepository.deleteUnreferenced();
+        stored.invalidateAll();
+        return deleted;
+    }
+
+    private static Counter texts(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(TEXTS_METRIC)
+                .description("Prompts written with or without their text")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,202 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.client.ChatClientWithChatMemory;
+import com.ment.chat.client.config.AppProperties;
+import com.ment.chat.client.config.ProviderProbeProperties;
+import com.ment.chat.client.model.enums.LlmProvider;
+import com.ment.chat.client.model.enums.LlmStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.ment.chat.client.service.ChatServiceImpl.UNKNOWN_MODEL_NAME;
+
+/**
+ * Probes the providers in the background by a cheap call, and keeps the latest result of each provider,
+ * so the status of the providers is served without calling them.
+ * Providers with an OpenAI or Anthropic api are asked for their list of models, which uses no tokens.
+ * Gemini is sent a prompt limited to one token in a chat of its own, which is cleared after the probe.
+ */
+@Slf4j
+@Component
+public class ProviderHealthProber implements DisposableBean {
+
+    static final String PROBE_CHAT_ID = "provider-probe";
+
+    private static final String MODELS_PATH = "/v1/models";
+    private static final String ANTHROPIC_VERSION = "2023-06-01";
+    private static final String PROBE_PROMPT = "ping";
+
+    private final AppProperties appProperties;
+
+    private final ProviderProbeProperties properties;
+
+    private final ChatClientWithChatMemory geminiChatClient;
+
+    private final RestClient restClient;
+
+    private final Map<LlmProvider, ProviderProbeResult> results = new ConcurrentHashMap<>();
+
+    private final ExecutorService prober = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ProviderHealthProber(AppProperties appProperties,
+                                ProviderProbeProperties properties,
+                                @Qualifier("geminiChatClient") ChatClientWithChatMemory geminiChatClient) {
+        this(appProperties, properties, geminiChatClient, RestClient.builder()
+                .requestFactory(requestFactory(properties))
+                .build());
+    }
+
+    ProviderHealthProber(AppProperties appProperties,
+                         ProviderProbeProperties properties,
+                         ChatClientWithChatMemory geminiChatClient,
+                         RestClient restClient) {
+        this.appProperties = appProperties;
+        this.properties = properties;
+        this.geminiChatClient = geminiChatClient;
+        this.restClient = restClient;
+    }
+
+    /**
+     * @return the latest probe result of each probed provider
+     */
+    public Map<LlmProvider, ProviderProbeResult> getProbeResults() {
+        return Collections.unmodifiableMap(new EnumMap<>(results));
+    }
+
+    /**
+     * @param llmProvider the provider
+     * @return the latest probe result of the provider, empty if not probed yet
+     */
+    public Optional<ProviderProbeResult> getProbeResult(LlmProvider llmProvider) {
+        return Optional.ofNullable(results.get(llmProvider));
+    }
+
+    @Scheduled(fixedDelayString = "${app.provider-probe.interval:30s}")
+    public void scheduledProbe() {
+        probeAll();
+    }
+
+    /**
+     * Probes all providers in parallel, each given the probe timeout.
+     *
+     * @return the probe result of each provider
+     */
+    public Map<LlmProvider, ProviderProbeResult> probeAll() {
+        Map<LlmProvider, Future<ProviderProbeResult>> probes = new EnumMap<>(LlmProvider.class);
+        for (LlmProvider llmProvider : LlmProvider.values()) {
+            probes.put(llmProvider, prober.submit(() -> probe(llmProvider)));
+        }
+        probes.forEach((llmProvider, probe) -> {
+            ProviderProbeResult result = await(llmProvider, probe);
+            ProviderProbeResult previous = results.put(llmProvider, result);
+            if (previous == null || previous.status() != result.status()) {
+                log.info("Provider {} is {}{}", llmProvider, result.status(), result.error() == null ? "" : ", error: " + result.error());
+            }
+        });
+        return getProbeResults();
+    }
+
+    private ProviderProbeResult await(LlmProvider llmProvider, Future<ProviderProbeResult> probe) {
+        long start = System.currentTimeMillis();
+        try {
+            return probe.get(properties.timeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            probe.cancel(true);
+            return unavailable(llmProvider, start, "no answer within " + properties.timeout().toMillis() + " ms");
+        } catch (ExecutionException e) {
+            return unavailable(llmProvider, start, e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return unavailable(llmProvider, start, "interrupted");
+        }
+    }
+
+    private ProviderProbeResult probe(LlmProvider llmProvider) {
+        long start = System.currentTimeMillis();
+        try {
+            if (llmProvider == LlmProvider.GEMINI) {
+                probeByPrompt();
+            } else {
+                AppProperties.ProviderModel providerModel = appProperties.models().get(llmProvider);
+                if (providerModel == null) {
+                    return unavailable(llmProvider, start, "not configured");
+                }
+                probeByModelList(llmProvider, providerModel.apiConnection());
+            }
+            return new ProviderProbeResult(LlmStatus.AVAILABLE, llm(llmProvider), OffsetDateTime.now(), System.currentTimeMillis() - start, null);
+        } catch (RuntimeException e) {
+            return unavailable(llmProvider, start, e.getMessage());
+        }
+    }
+
+    private void probeByModelList(LlmProvider llmProvider, AppProperties.ApiConnection apiConnection) {
+        RestClient.RequestHeadersSpec<?> request = restClient.get()
+                .uri(apiConnection.url() + MODELS_PATH);
+        if (llmProvider == LlmProvider.ANTHROPIC) {
+            request.header("x-api-key", apiConnection.key())
+                    .header("anthropic-version", ANTHROPIC_VERSION);
+        } else {
+            request.header("Authorization", "Bearer " + apiConnection.key());
+        }
+        request.retrieve()
+                .toBodilessEntity();
+    }
+
+    private void probeByPrompt() {
+        try {
+            geminiChatClient.chatClient()
+                    .prompt()
+                    .user(PROBE_PROMPT)
+                    .options(ChatOptions.builder()
+                            .maxTokens(1)
+                            .build())
+                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, PROBE_CHAT_ID))
+                    .call()
+                    .chatResponse();
+        } finally {
+            geminiChatClient.chatMemory().clear(PROBE_CHAT_ID);
+        }
+    }
+
+    private ProviderProbeResult unavailable(LlmProvider llmProvider, long start, String error) {
+        return new ProviderProbeResult(LlmStatus.UNAVAILABLE, llm(llmProvider), OffsetDateTime.now(), System.currentTimeMillis() - start, error);
+    }
+
+    private String llm(LlmProvider llmProvider) {
+        return Optional.ofNullable(appProperties.models().get(llmProvider))
+                .map(AppProperties.ProviderModel::llmModelName)
+                .orElse(UNKNOWN_MODEL_NAME);
+    }
+
+    private static SimpleClientHttpRequestFactory requestFactory(ProviderProbeProperties properties) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(properties.timeout());
+        requestFactory.setReadTimeout(properties.timeout());
+        return requestFactory;
+    }
+
+    @Override
+    public void destroy() {
+        prober.shutdownNow();
+    }
+}
@@ -0,0 +1,17 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.model.enums.LlmStatus;
+
+import java.time.OffsetDateTime;
+
+/**
+ * The outcome of a probe of a provider.
+ *
+ * @param status    the provider answered the probe
+ * @param llm       the configured model of the provider
+ * @param probedAt  time of the probe
+ * @param latencyMs time to answer the probe
+ * @param error     why the provider is unavailable, null when available
+ */
+public record ProviderProbeResult(LlmStatus status, String llm, OffsetDateTime probedAt, long latencyMs, String error) {
+}
@@ -0,0 +1,177 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.RetentionProperties;
+import com.ment.chat.client.domain.LlmPromptKey;
+import com.ment.chat.client.domain.LlmPromptsPurged;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.domain.repository.LlmCompletionRepository;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Removes the prompts and completions older than the retention period, so the tables and their indexes stop growing.
+ * On Oracle the prompts are partitioned by month and the completions by reference to their prompt, so a month of interactions
+ * is removed by dropping one partition. Otherwise the old prompts and their completions are deleted in batches.
+ */
+@Slf4j
+@Component
+public class RetentionJob {
+
+    public static final String DELETED_METRIC = "llm.retention.deleted";
+
+    //the completions are in the partition of their prompt and dropped with it
+    private static final String DROP_PARTITION = "ALTER TABLE llm_prompt DROP PARTITION FOR (TIMESTAMP '%s') UPDATE GLOBAL INDEXES";
+
+    private static final DateTimeFormatter TIMESTAMP_LITERAL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    //ORA-02149, no prompts in that month
+    private static final int PARTITION_NOT_FOUND = 2149;
+
+    //ORA-14758, the range partition below the monthly interval partitions
+    private static final int LAST_RANGE_PARTITION = 14758;
+
+    private final RetentionProperties properties;
+
+    private final LlmPromptRepository llmPromptRepository;
+
+    private final LlmCompletionRepository llmCompletionRepository;
+
+    private final PromptTextStore promptTextStore;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private final Counter deleted;
+
+    public RetentionJob(RetentionProperties properties,
+                        LlmPromptRepository llmPromptRepository,
+                        LlmCompletionRepository llmCompletionRepository,
+                        PromptTextStore promptTextStore,
+                        JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        ApplicationEventPublisher applicationEventPublisher,
+                        MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.llmPromptRepository = llmPromptRepository;
+        this.llmCompletionRepository = llmCompletionRepository;
+        this.promptTextStore = promptTextStore;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.deleted = Counter.builder(DELETED_METRIC)
+                .description("Number of prompts deleted with their completions by the retention, not counting dropped partitions")
+                .register(meterRegistry);
+        log.info("Retention enabled: {}, strategy {}, keep {}", properties.enabled(), properties.strategy(), properties.keep());
+    }
+
+    @Scheduled(cron = "${app.retention.cron:0 30 3 * * *}")
+    public void scheduledPurge() {
+        if (properties.enabled()) {
+            purge(OffsetDateTime.now().minus(properties.keep()));
+        }
+    }
+
+    /**
+     * @param before the prompts before this time are removed, by partitions only whole months before it
+     */
+    void purge(OffsetDateTime before) {
+        long start = System.currentTimeMillis();
+        try {
+            switch (properties.strategy()) {
+                case DROP_PARTITIONS -> dropPartitions(before);
+                case DELETE_BATCHES -> deleteBatches(LlmPromptKey.FIRST.promptedAt(), before);
+            }
+            //the texts shared with kept prompts are kept
+            Integer texts = transactionTemplate.execute(_ -> promptTextStore.deleteUnreferenced());
+            log.info("Retention of the prompts before {} done with {} prompt texts deleted in {} ms", before, texts, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            //the rest is removed by the next run
+            log.error("Retention of the prompts before {} failed", before, e);
+        }
+    }
+
+    /**
+     * The timestamps are stored in the time zone of the service, so are the bounds of the monthly partitions.
+     */
+    private void dropPartitions(OffsetDateTime before) {
+        Optional<OffsetDateTime> oldest = llmPromptRepository.findOldestPromptedAt();
+        if (oldest.isEmpty()) {
+            return;
+        }
+        ZonedDateTime firstKept = startOfMonth(before);
+        for (ZonedDateTime month = startOfMonth(oldest.get()); month.isBefore(firstKept); month = month.plusMonths(1)) {
+            dropPartition(month);
+        }
+    }
+
+    private void dropPartition(ZonedDateTime month) {
+        try {
+            jdbcTemplate.execute(DROP_PARTITION.formatted(month.toLocalDateTime().format(TIMESTAMP_LITERAL)));
+            log.info("Dropped the partition of the prompts of {}", YearMonth.from(month));
+            //no prompt ids are known of a dropped partition, so the prompts are forgotten by time
+            applicationEventPublisher.publishEvent(new LlmPromptsPurgedBetween(month.toOffsetDateTime(), month.plusMonths(1).toOffsetDateTime()));
+        } catch (DataAccessException e) {
+            int errorCode = e.getMostSpecificCause() instanceof SQLException sqlException ? sqlException.getErrorCode() : 0;
+            if (errorCode == LAST_RANGE_PARTITION) {
+                //the prompts from before the partitioning share a partition which can not be dropped
+                deleteBatches(month.toOffsetDateTime(), month.plusMonths(1).toOffsetDateTime());
+            } else if (errorCode != PARTITION_NOT_FOUND) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Each batch of prompts is deleted with its completions in a transaction of its own, so the locks are held briefly.
+     */
+    private void deleteBatches(OffsetDateTime from, OffsetDateTime to) {
+        List<String> promptIds;
+        boolean purged = false;
+        do {
+            promptIds = llmPromptRepository.findPromptIdsByPromptedAtBetween(from, to, PageRequest.of(0, properties.batchSize()));
+            if (promptIds.isEmpty()) {
+                break;
+            }
+            List<String> batch = promptIds;
+            transactionTemplate.executeWithoutResult(_ -> {
+                llmCompletionRepository.deleteByPromptIdIn(batch);
+                llmPromptRepository.deleteByPromptIdIn(batch);
+            });
+            deleted.increment(batch.size());
+            applicationEventPublisher.publishEvent(new LlmPromptsPurged(batch));
+            purged = true;
+        } while (promptIds.size() == properties.batchSize());
+        if (purged) {
+            applicationEventPublisher.publishEvent(new LlmPromptsPurgedBetween(from, to));
+        }
+    }
+
+    private static ZonedDateTime startOfMonth(OffsetDateTime dateTime) {
+        return dateTime.atZoneSameInstant(ZoneId.systemDefault())
+                .withDayOfMonth(1)
+                .truncatedTo(ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,283 @@
+package com.ment.chat.client.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ment.chat.client.config.SemanticCacheProperties;
+import com.ment.chat.client.domain.ChatResponseTimer;
+import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmCompletionSummary;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.domain.repository.LlmCompletionRepository;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import com.ment.chat.client.model.enums.CompletionStatus;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Answers a prompt with the stored completion of a similar prompt answered by the same provider and model,
+ * so paraphrases of a question are not sent to the provider again.
+ * The prompts are embedded by the semantic cache embedding model and kept in a bounded in-memory index,
+ * rebuilt from the latest prompts at startup and extended with each completed answer.
+ * Only prompts sent without a system message of their own and without chat history are indexed, as only those are looked up.
+ */
+@Slf4j
+@Component
+public class SemanticCompletionCache implements DisposableBean {
+
+    public static final String LOOKUPS_METRIC = "llm.semantic.cache.lookups";
+
+    public static final String SIZE_METRIC = "llm.semantic.cache.size";
+
+    private static final int EMBEDDING_BATCH_SIZE = 32;
+
+    private final SemanticCacheProperties properties;
+
+    private final EmbeddingModel embeddingModel;
+
+    private final LlmPromptRepository llmPromptRepository;
+
+    private final LlmCompletionRepository llmCompletionRepository;
+
+    private final SemanticIndex index;
+
+    //a prompt is embedded once, even when sent to several providers
+    private final Cache<String, float[]> embeddings = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    //the model answering for each provider, the index is searched for answers of that model only
+    private final Map<LlmProvider, String> currentLlms = new EnumMap<>(LlmProvider.class);
+
+    //embedding is a http call, so prompts are indexed in the background and not in the response path
+    private final ExecutorService indexer = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter errors;
+
+    public SemanticCompletionCache(SemanticCacheProperties properties,
+                                   @Qualifier("semanticCacheEmbeddingModel") Optional<EmbeddingModel> embeddingModel,
+                                   LlmPromptRepository llmPromptRepository,
+                                   LlmCompletionRepository llmCompletionRepository,
+                                   MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.embeddingModel = embeddingModel.orElse(null);
+        this.llmPromptRepository = llmPromptRepository;
+        this.llmCompletionRepository = llmCompletionRepository;
+        this.index = new SemanticIndex(properties.maxSize());
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+        this.errors = lookups(meterRegistry, "error");
+        Gauge.builder(SIZE_METRIC, index, SemanticIndex::size)
+                .description("Number of answered prompts in the semantic cache")
+                .register(meterRegistry);
+        log.info("Semantic completion cache enabled: {}, similarity threshold {}, max size {}",
+                isEnabled(), properties.similarityThreshold(), properties.maxSize());
+    }
+
+    public boolean isEnabled() {
+        return properties.enabled() && embeddingModel != null;
+    }
+
+    public Duration lookupTimeout() {
+        return properties.lookupTimeout();
+    }
+
+    /**
+     * Blocking, the prompt is embedded by a http call.
+     *
+     * @param llmProvider the provider to be asked
+     * @param prompt      the prompt with style
+     * @return the stored answer to the most similar prompt, empty when no prompt is similar enough or the lookup failed
+     */
+    public Optional<ChatResponseTimer> find(LlmProvider llmProvider, String prompt) {
+        long start = System.currentTimeMillis();
+        String llm = currentLlm(llmProvider);
+        if (!isEnabled() || llm == null) {
+            return Optional.empty();
+        }
+        try {
+            Optional<LlmCompletion> completion = index.nearest(llmProvider, llm, embed(prompt), properties.similarityThreshold())
+                    .flatMap(match -> {
+                        log.info("Prompt to provider {} is similar to answered prompt with similarity {}", llmProvider, match.similarity());
+                        return llmCompletionRepository.findById(match.completionId());
+                    });
+            (completion.isPresent() ? hits : misses).increment();
+            return completion.map(llmCompletion -> toChatResponseTimer(llmCompletion, System.currentTimeMillis() - start));
+        } catch (RuntimeException e) {
+            log.warn("Semantic cache lookup for provider {} failed, error: {}", llmProvider, e.getMessage());
+            errors.increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Indexes the prompt of each completed answer from a provider.
+     */
+    @EventListener
+    public void handleCompletion(LlmCompletion llmCompletion) {
+        if (isEnabled() && isIndexable(llmCompletion)) {
+            indexer.execute(() -> {
+                try {
+                    llmPromptRepository.findWithTextByPromptId(llmCompletion.getPromptId())
+                            .filter(SemanticCompletionCache::isIndexable)
+                            .ifPresent(llmPrompt -> index(llmPrompt, embed(llmPrompt.getPrompt()), llmCompletion));
+                } catch (RuntimeException e) {
+                    log.warn("Prompt {} not added to the semantic cache, error: {}", llmCompletion.getPromptId(), e.getMessage());
+                }
+            });
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (isEnabled()) {
+            indexer.execute(this::rebuildIndex);
+        }
+    }
+
+    /**
+     * Indexes the latest prompts, oldest first, so the latest are the last to be evicted.
+     */
+    void rebuildIndex() {
+        long start = System.currentTimeMillis();
+        try {
+            List<LlmPrompt> llmPrompts = llmPromptRepository.findLatestStatelessWithText(PageRequest.of(0, properties.maxSize())).stream()
+                    .filter(SemanticCompletionCache::isIndexable)
+                    .toList();
+            //the completions of all prompts in one query, without their text
+            Map<String, List<LlmCompletionSummary>> completionsByPrompt = llmCompletionRepository.findByPromptIdIn(llmPrompts.stream()
+                            .map(LlmPrompt::getPromptId)
+                            .toList())
+                    .stream()
+                    .filter(SemanticCompletionCache::isIndexable)
+                    .collect(Collectors.groupingBy(LlmCompletionSummary::promptId));
+            //the latest answer of a provider tells its model, unless answered after startup
+            llmPrompts.stream()
+                    .flatMap(llmPrompt -> completionsByPrompt.getOrDefault(llmPrompt.getPromptId(), List.of()).stream())
+                    .forEach(llmCompletion -> putIfAbsentCurrentLlm(llmCompletion.llmProvider(), llmCompletion.llm()));
+            List<LlmPrompt> oldestFirst = llmPrompts.reversed();
+            for (int from = 0; from < oldestFirst.size(); from += EMBEDDING_BATCH_SIZE) {
+                List<LlmPrompt> batch = oldestFirst.subList(from, Math.min(from + EMBEDDING_BATCH_SIZE, oldestFirst.size()));
+                List<float[]> batchEmbeddings = embeddingModel.embed(batch.stream()
+                        .map(LlmPrompt::getPrompt)
+                        .toList());
+                for (int i = 0; i < batch.size(); i++) {
+                    LlmPrompt llmPrompt = batch.get(i);
+                    float[] embedding = batchEmbeddings.get(i);
+                    completionsByPrompt.getOrDefault(llmPrompt.getPromptId(), List.of())
+                            .forEach(llmCompletion -> index.add(llmCompletion.llmProvider(), llmCompletion.llm(), embedding,
+                                    llmCompletion.completionId(), llmPrompt.getPromptedAt()));
+                }
+            }
+            log.info("Semantic cache rebuilt with {} prompts in {} ms", index.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            //the cache is filled by the coming answers
+            log.warn("Semantic cache not rebuilt, error: {}", e.getMessage());
+        }
+    }
+
+    void index(LlmPrompt llmPrompt, float[] embedding, LlmCompletion llmCompletion) {
+        embeddings.put(llmPrompt.getPrompt(), embedding);
+        putCurrentLlm(llmCompletion.getLlmProvider(), llmCompletion.getLlm());
+        index.add(llmCompletion.getLlmProvider(), llmCompletion.getLlm(), embedding, llmCompletion.getCompletionId(), llmPrompt.getPromptedAt());
+    }
+
+    /**
+     * Forgets the prompts removed by the retention, so their answers are not found by the similar prompts.
+     */
+    @EventListener
+    public void handlePurged(LlmPromptsPurgedBetween llmPromptsPurged) {
+        int removed = index.removeIf(llmPromptsPurged::contains);
+        log.info("Removed {} prompts prompted from {} to {} from the semantic cache", removed, llmPromptsPurged.from(), llmPromptsPurged.to());
+    }
+
+    private float[] embed(String prompt) {
+        return embeddings.get(prompt, embeddingModel::embed);
+    }
+
+    private synchronized String currentLlm(LlmProvider llmProvider) {
+        return currentLlms.get(llmProvider);
+    }
+
+    private synchronized void putCurrentLlm(LlmProvider llmProvider, String llm) {
+        currentLlms.put(llmProvider, llm);
+    }
+
+    private synchronized void putIfAbsentCurrentLlm(LlmProvider llmProvider, String llm) {
+        currentLlms.putIfAbsent(llmProvider, llm);
+    }
+
+    //answers from a cache are already indexed by the answer from the provider,
+    //answers from the backup of a provider would make the backup model the model answering for the provider
+    private static boolean isIndexable(LlmCompletion llmCompletion) {
+        return llmCompletion.getStatus() == CompletionStatus.COMPLETED
+                && !Boolean.TRUE.equals(llmCompletion.getCached())
+                && !Boolean.TRUE.equals(llmCompletion.getHedged())
+                && llmCompletion.getCompletion() != null
+                && llmCompletion.getLlm() != null;
+    }
+
+    private static boolean isIndexable(LlmCompletionSummary llmCompletion) {
+        return llmCompletion.status() == CompletionStatus.COMPLETED
+                && !Boolean.TRUE.equals(llmCompletion.cached())
+                && !Boolean.TRUE.equals(llmCompletion.hedged())
+                && llmCompletion.llm() != null;
+    }
+
+    //only prompts looked up, an answer given with a system message or chat history does not fit a prompt sent without them,
+    //and the status ping must reach the providers
+    private static boolean isIndexable(LlmPrompt llmPrompt) {
+        return Boolean.TRUE.equals(llmPrompt.getStateless())
+                && !Objects.equals(llmPrompt.getChatId(), ChatServiceImpl.PING_STATUS_CHAT_ID);
+    }
+
+    private static ChatResponseTimer toChatResponseTimer(LlmCompletion llmCompletion, long lookupTimeMs) {
+        ChatResponse chatResponse = ChatResponse.builder()
+                .generations(List.of(new Generation(new AssistantMessage(llmCompletion.getCompletion()))))
+                .metadata(ChatResponseMetadata.builder()
+                        .model(llmCompletion.getLlm())
+                        .build())
+                .build();
+        return new ChatResponseTimer(chatResponse, lookupTimeMs).asCached(lookupTimeMs);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String result) {
+        return Counter.builder(LOOKUPS_METRIC)
+                .description("Lookups in the semantic cache of completions")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        indexer.shutdownNow();
+    }
+}
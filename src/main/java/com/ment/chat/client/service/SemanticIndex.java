@@ -0,0 +1,144 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.model.enums.LlmProvider;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Embeddings of answered prompts per provider and model, searched for the most similar prompt by cosine similarity.
+ * Bounded, the oldest prompts are evicted first. The search is exact, at the bounded size a scan of the
+ * normalized vectors takes a few ms and evicted prompts need no graph repair as in an approximate index.
+ * Thread safe, searches run concurrently.
+ */
+public class SemanticIndex {
+
+    private final int maxSize;
+
+    private final Map<Partition, List<Entry>> partitions = new HashMap<>();
+
+    private final Deque<Entry> insertionOrder = new ArrayDeque<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SemanticIndex(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param llmProvider  the provider that answered the prompt
+     * @param llm          the model that answered the prompt
+     * @param embedding    the embedding of the prompt
+     * @param completionId the id of the stored answer
+     * @param promptedAt   the time of the prompt
+     */
+    public void add(LlmProvider llmProvider, String llm, float[] embedding, String completionId, OffsetDateTime promptedAt) {
+        Entry entry = new Entry(new Partition(llmProvider, llm), normalize(embedding), completionId, promptedAt);
+        lock.writeLock().lock();
+        try {
+            if (insertionOrder.size() >= maxSize) {
+                Entry oldest = insertionOrder.removeFirst();
+                partitions.get(oldest.partition()).remove(oldest);
+            }
+            partitions.computeIfAbsent(entry.partition(), _ -> new ArrayList<>()).add(entry);
+            insertionOrder.addLast(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param llmProvider the provider to be asked
+     * @param llm         the model of the provider
+     * @param embedding   the embedding of the prompt
+     * @param threshold   the min cosine similarity of a match
+     * @return the most similar prompt answered by the provider and model, empty if none is similar enough
+     */
+    public Optional<Match> nearest(LlmProvider llmProvider, String llm, float[] embedding, double threshold) {
+        float[] query = normalize(embedding);
+        lock.readLock().lock();
+        try {
+            Match best = null;
+            for (Entry entry : partitions.getOrDefault(new Partition(llmProvider, llm), List.of())) {
+                //prompts embedded by another embedding model can not be compared
+                if (entry.vector().length != query.length) {
+                    continue;
+                }
+                double similarity = dot(entry.vector(), query);
+                if (similarity >= threshold && (best == null || similarity > best.similarity())) {
+                    best = new Match(entry.completionId(), similarity);
+                }
+            }
+            return Optional.ofNullable(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param promptedAt tells if the prompt of an entry is to be removed
+     * @return the number of removed prompts
+     */
+    public int removeIf(Predicate<OffsetDateTime> promptedAt) {
+        lock.writeLock().lock();
+        try {
+            int size = insertionOrder.size();
+            insertionOrder.removeIf(entry -> promptedAt.test(entry.promptedAt()));
+            partitions.values().forEach(entries -> entries.removeIf(entry -> promptedAt.test(entry.promptedAt())));
+            return size - insertionOrder.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return insertionOrder.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] normalized = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                normalized[i] = (float) (vector[i] / norm);
+            }
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @param completionId the id of the stored answer to the similar prompt
+     * @param similarity   the cosine similarity of the prompts
+     */
+    public record Match(String completionId, double similarity) {
+    }
+
+    private record Partition(LlmProvider llmProvider, String llm) {
+    }
+
+    //the vector is compared by reference, so an evicted entry is removed and not an equal one
+    private record Entry(Partition partition, float[] vector, String completionId, OffsetDateTime promptedAt) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.ment.chat.client.service;
+
+import org.springframework.util.IdGenerator;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered UUIDs of version 7 (RFC 9562), so the ids of new prompts and completions are inserted at the right edge
+ * of the primary key indexes instead of at random leaf blocks. The first 48 bits are the unix time in milliseconds and the next 12 bits
+ * a counter within the millisecond, so the ids of one instance are strictly increasing, also in their string form.
+ * A counter overflowing within a millisecond borrows from the next millisecond. The last 62 bits are random, as unguessable as before.
+ */
+public class UuidV7Generator implements IdGenerator {
+
+    private static final int COUNTER_BITS = 12;
+
+    private static final long VERSION_7 = 0x7000L;
+
+    private static final long VARIANT_RFC_9562 = 0x8000000000000000L;
+
+    private static final long RANDOM_BITS = 0x3FFFFFFFFFFFFFFFL;
+
+    private static final SecureRandom random = new SecureRandom();
+
+    //the unix time in milliseconds of the last id shifted left by the counter bits, plus its counter
+    private final AtomicLong last = new AtomicLong();
+
+    @Override
+    public UUID generateId() {
+        long timeAndCounter = nextTimeAndCounter(System.currentTimeMillis());
+        long mostSigBits = (timeAndCounter >>> COUNTER_BITS) << 16
+                | VERSION_7
+                | timeAndCounter & ((1L << COUNTER_BITS) - 1);
+        long leastSigBits = VARIANT_RFC_9562 | random.nextLong() & RANDOM_BITS;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    long nextTimeAndCounter(long epochMillis) {
+        long first = epochMillis << COUNTER_BITS;
+        while (true) {
+            long previous = last.get();
+            long next = Math.max(first, previous + 1);
+            if (last.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+}
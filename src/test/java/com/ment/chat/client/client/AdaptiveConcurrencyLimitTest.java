@@ -0,0 +1,65 @@
+package com.ment.chat.client.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    void longAnswerKeepsLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 8, 0.5, 2.0);
+        for (int i = 0; i < 10; i++) {
+            limit.onSuccess(1_000, 100, 8);
+        }
+        //20 times longer, at the same latency per token
+        assertThat(limit.onSuccess(20_000, 2_000, 8)).isEqualTo(8);
+        //no usage reported, the latency is not used
+        assertThat(limit.onSuccess(60_000, 0, 8)).isEqualTo(8);
+    }
+
+    @Test
+    void slowerTokensLowerLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 8, 0.5, 2.0);
+        for (int i = 0; i < 10; i++) {
+            limit.onSuccess(1_000, 100, 8);
+        }
+        //the smoothed latency per token passes twice the min after four calls
+        for (int i = 0; i < 3; i++) {
+            assertThat(limit.onSuccess(4_000, 100, 8)).isEqualTo(8);
+        }
+        assertThat(limit.onSuccess(4_000, 100, 8)).isEqualTo(4);
+
+        //calls started before the decrease do not change the limit
+        for (int i = 0; i < 4; i++) {
+            assertThat(limit.onSuccess(4_000, 100, 8)).isEqualTo(4);
+        }
+        //calls still slow lower the limit again
+        assertThat(limit.onSuccess(4_000, 100, 8)).isEqualTo(2);
+    }
+
+    @Test
+    void slowerFirstTokenOfStreamsLowersLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 8, 0.5, 2.0);
+        //the time to first token is not compared with the latency per token of calls
+        for (int i = 0; i < 10; i++) {
+            limit.onSuccess(1_000, 100, 8);
+            limit.onStreamSuccess(500, 8);
+        }
+        assertThat(limit.getLimit()).isEqualTo(8);
+
+        for (int i = 0; i < 3; i++) {
+            limit.onStreamSuccess(5_000, 8);
+        }
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void overloadLowersLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 8, 0.5, 2.0);
+        assertThat(limit.onOverload()).isEqualTo(4);
+        assertThat(limit.onOverload()).isEqualTo(2);
+        //never below the min limit
+        assertThat(limit.onOverload()).isEqualTo(2);
+    }
+}
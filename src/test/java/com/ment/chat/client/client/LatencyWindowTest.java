@@ -0,0 +1,35 @@
+package com.ment.chat.client.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyWindowTest {
+
+    @Test
+    void percentileOfLatestLatencies() {
+        LatencyWindow latencyWindow = new LatencyWindow(10);
+        assertThat(latencyWindow.percentile(0.9, 1)).isEmpty();
+
+        for (long latencyMs = 1; latencyMs <= 10; latencyMs++) {
+            latencyWindow.record(latencyMs * 100);
+        }
+        assertThat(latencyWindow.percentile(0.9, 10)).contains(Duration.ofMillis(900));
+        assertThat(latencyWindow.percentile(0.5, 10)).contains(Duration.ofMillis(500));
+
+        //the oldest latencies are replaced
+        for (int i = 0; i < 10; i++) {
+            latencyWindow.record(50);
+        }
+        assertThat(latencyWindow.percentile(0.9, 10)).contains(Duration.ofMillis(50));
+    }
+
+    @Test
+    void noPercentileWithTooFewLatencies() {
+        LatencyWindow latencyWindow = new LatencyWindow(10);
+        latencyWindow.record(100);
+        assertThat(latencyWindow.percentile(0.9, 2)).isEmpty();
+    }
+}
@@ -0,0 +1,192 @@
+package com.ment.chat.client.client;
+
+import com.ment.chat.client.config.AppProperties;
+import com.ment.chat.client.config.ProviderSchedulerProperties;
+import com.ment.chat.client.domain.exception.ProviderBusyException;
+import com.ment.chat.client.domain.exception.ProviderUnavailableException;
+import com.ment.chat.client.model.enums.CircuitState;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProviderCallExecutorTest {
+
+    private static final AppProperties.Retry NO_RETRY = new AppProperties.Retry(1, Duration.ofMillis(10), Duration.ofMillis(10), 1.0, 0.0, Duration.ofSeconds(1));
+
+    private static final AppProperties.Hedge NO_HEDGE = new AppProperties.Hedge(false, 0.95, Duration.ofSeconds(1), 20, null, null);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ProviderCallExecutor providerCallExecutor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        //ollama handles one call at a time and does not queue
+        AppProperties appProperties = new AppProperties(new AppProperties.Toggle(false, null, null),
+                Map.of(LlmProvider.OLLAMA, new AppProperties.ProviderModel("llm",
+                        new AppProperties.ApiConnection("url", "key"), Duration.ofMinutes(2), 1, 0, NO_RETRY, NO_HEDGE)));
+        providerCallExecutor = new ProviderCallExecutor(new ProviderSchedulerProperties(10, "test-provider-call-", new ProviderSchedulerProperties.AdaptiveLimit(false, 1, 0.75, 2.0),
+                    new ProviderSchedulerProperties.CircuitBreaker(false, 10, 5, Duration.ofSeconds(30), 2)), appProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        providerCallExecutor.destroy();
+    }
+
+    @Test
+    void callFailsFastWhenProviderIsBusy() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        CompletableFuture<String> firstCall = providerCallExecutor.call(LlmProvider.OLLAMA, () -> {
+            started.countDown();
+            latch.await();
+            return "first";
+        }).toFuture();
+        started.await();
+        assertThat(permitsInUse(LlmProvider.OLLAMA)).isEqualTo(1);
+
+        assertThatThrownBy(() -> providerCallExecutor.call(LlmProvider.OLLAMA, () -> "second").block())
+                .isInstanceOf(ProviderBusyException.class);
+        assertThatThrownBy(() -> providerCallExecutor.stream(LlmProvider.OLLAMA, () -> Flux.just("second")).blockLast())
+                .isInstanceOf(ProviderBusyException.class);
+        //other providers are not affected
+        assertThat(providerCallExecutor.call(LlmProvider.OPENAI, () -> "other").block()).isEqualTo("other");
+
+        latch.countDown();
+        assertThat(firstCall.get()).isEqualTo("first");
+        assertThat(permitsInUse(LlmProvider.OLLAMA)).isZero();
+        assertThat(meterRegistry.get(ProviderBulkhead.REJECTED_METRIC).tag(ProviderBulkhead.PROVIDER_TAG, "OLLAMA").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void streamReleasesPermitWhenCancelled() {
+        providerCallExecutor.stream(LlmProvider.OLLAMA, () -> Flux.never())
+                .subscribe()
+                .dispose();
+
+        assertThat(permitsInUse(LlmProvider.OLLAMA)).isZero();
+        assertThat(providerCallExecutor.call(LlmProvider.OLLAMA, () -> "next").block()).isEqualTo("next");
+    }
+
+    @Test
+    void overloadLowersAdaptiveLimit() {
+        AppProperties appProperties = new AppProperties(new AppProperties.Toggle(false, null, null),
+                Map.of(LlmProvider.OLLAMA, new AppProperties.ProviderModel("llm",
+                        new AppProperties.ApiConnection("url", "key"), Duration.ofMinutes(2), 4, 0, NO_RETRY, NO_HEDGE)));
+        SimpleMeterRegistry adaptiveMeterRegistry = new SimpleMeterRegistry();
+        ProviderCallExecutor adaptiveCallExecutor = new ProviderCallExecutor(new ProviderSchedulerProperties(10, "test-provider-call-",
+                new ProviderSchedulerProperties.AdaptiveLimit(true, 1, 0.5, 2.0),
+                new ProviderSchedulerProperties.CircuitBreaker(false, 10, 5, Duration.ofSeconds(30), 2)), appProperties, adaptiveMeterRegistry);
+        try {
+            assertThat(limit(adaptiveMeterRegistry)).isEqualTo(4);
+
+            assertThatThrownBy(() -> adaptiveCallExecutor.call(LlmProvider.OLLAMA, () -> {
+                throw new TimeoutException("overloaded");
+            }).block()).hasCauseInstanceOf(TimeoutException.class);
+            assertThat(limit(adaptiveMeterRegistry)).isEqualTo(2);
+
+            //an error not caused by overload keeps the limit
+            assertThatThrownBy(() -> adaptiveCallExecutor.stream(LlmProvider.OLLAMA, () -> Flux.error(new IllegalArgumentException("bad request"))).blockLast())
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThat(limit(adaptiveMeterRegistry)).isEqualTo(2);
+
+            //the limit is increased again by successful calls using the limit
+            assertThat(adaptiveCallExecutor.call(LlmProvider.OLLAMA, () -> "ok").block()).isEqualTo("ok");
+            assertThat(limit(adaptiveMeterRegistry)).isEqualTo(3);
+        } finally {
+            adaptiveCallExecutor.destroy();
+        }
+    }
+
+    @Test
+    void hedgeDelayFromRecentLatencies() {
+        AppProperties appProperties = new AppProperties(new AppProperties.Toggle(false, null, null),
+                Map.of(LlmProvider.OLLAMA, new AppProperties.ProviderModel("llm",
+                        new AppProperties.ApiConnection("url", "key"), Duration.ofMinutes(2), 4, 0, NO_RETRY,
+                        new AppProperties.Hedge(true, 0.9, Duration.ofMillis(200), 10, "qwen3", null))));
+        SimpleMeterRegistry hedgeMeterRegistry = new SimpleMeterRegistry();
+        ProviderCallExecutor hedgeCallExecutor = new ProviderCallExecutor(new ProviderSchedulerProperties(10, "test-provider-call-",
+                new ProviderSchedulerProperties.AdaptiveLimit(false, 1, 0.75, 2.0),
+                new ProviderSchedulerProperties.CircuitBreaker(false, 10, 5, Duration.ofSeconds(30), 2)), appProperties, hedgeMeterRegistry);
+        try {
+            assertThat(hedgeCallExecutor.hedgeDelay(LlmProvider.OLLAMA)).isEmpty();
+            for (long latencyMs = 1; latencyMs <= 10; latencyMs++) {
+                hedgeCallExecutor.recordLatency(LlmProvider.OLLAMA, latencyMs * 100);
+            }
+            assertThat(hedgeCallExecutor.hedgeDelay(LlmProvider.OLLAMA)).contains(Duration.ofMillis(900));
+            //not hedged
+            hedgeCallExecutor.recordLatency(LlmProvider.OPENAI, 100);
+            assertThat(hedgeCallExecutor.hedgeDelay(LlmProvider.OPENAI)).isEmpty();
+
+            assertThat(hedgeCallExecutor.hedge(LlmProvider.OLLAMA, () -> "hedge").block()).isEqualTo("hedge");
+            assertThat(hedgeMeterRegistry.get(ProviderCallExecutor.HEDGES_METRIC).tag(ProviderBulkhead.PROVIDER_TAG, "OLLAMA").counter().count()).isEqualTo(1);
+        } finally {
+            hedgeCallExecutor.destroy();
+        }
+    }
+
+    @Test
+    void failingHedgeKeepsLimitAndCircuitOfProvider() {
+        AppProperties appProperties = new AppProperties(new AppProperties.Toggle(false, null, null),
+                Map.of(LlmProvider.OLLAMA, new AppProperties.ProviderModel("llm",
+                        new AppProperties.ApiConnection("url", "key"), Duration.ofMinutes(2), 4, 0, NO_RETRY,
+                        new AppProperties.Hedge(true, 0.9, Duration.ofMillis(200), 10, "qwen3", null))));
+        SimpleMeterRegistry hedgeMeterRegistry = new SimpleMeterRegistry();
+        ProviderCallExecutor hedgeCallExecutor = new ProviderCallExecutor(new ProviderSchedulerProperties(10, "test-provider-call-",
+                new ProviderSchedulerProperties.AdaptiveLimit(true, 1, 0.5, 2.0),
+                new ProviderSchedulerProperties.CircuitBreaker(true, 1, 1, Duration.ofSeconds(30), 1)), appProperties, hedgeMeterRegistry);
+        try {
+            assertThatThrownBy(() -> hedgeCallExecutor.hedge(LlmProvider.OLLAMA, () -> {
+                throw new TimeoutException("overloaded");
+            }).block()).hasCauseInstanceOf(TimeoutException.class);
+
+            //the backup is throttled and its circuit is open
+            assertThat(limit(hedgeMeterRegistry, ProviderBulkhead.HEDGE_TARGET)).isEqualTo(2);
+            assertThatThrownBy(() -> hedgeCallExecutor.hedge(LlmProvider.OLLAMA, () -> "hedge").block())
+                    .isInstanceOf(ProviderUnavailableException.class);
+            //the provider is not
+            assertThat(limit(hedgeMeterRegistry)).isEqualTo(4);
+            assertThat(hedgeCallExecutor.getCircuitState(LlmProvider.OLLAMA)).isEqualTo(CircuitState.CLOSED);
+            assertThat(hedgeCallExecutor.call(LlmProvider.OLLAMA, () -> "ok").block()).isEqualTo("ok");
+            //and a provider without hedge config is not hedged
+            assertThatThrownBy(() -> hedgeCallExecutor.hedge(LlmProvider.OPENAI, () -> "hedge").block())
+                    .isInstanceOf(IllegalStateException.class);
+        } finally {
+            hedgeCallExecutor.destroy();
+        }
+    }
+
+    private double limit(SimpleMeterRegistry registry) {
+        return limit(registry, ProviderBulkhead.PRIMARY_TARGET);
+    }
+
+    private double limit(SimpleMeterRegistry registry, String target) {
+        return registry.get(ProviderBulkhead.LIMIT_METRIC)
+                .tag(ProviderBulkhead.PROVIDER_TAG, LlmProvider.OLLAMA.name())
+                .tag(ProviderBulkhead.TARGET_TAG, target)
+                .gauge()
+                .value();
+    }
+
+    private double permitsInUse(LlmProvider llmProvider) {
+        return meterRegistry.get(ProviderBulkhead.PERMITS_IN_USE_METRIC)
+                .tag(ProviderBulkhead.PROVIDER_TAG, llmProvider.name())
+                .tag(ProviderBulkhead.TARGET_TAG, ProviderBulkhead.PRIMARY_TARGET)
+                .gauge()
+                .value();
+    }
+}
@@ -0,0 +1,107 @@
+package com.ment.chat.client.client;
+
+import com.ment.chat.client.model.enums.CircuitState;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProviderCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ProviderCircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        //opens after 2 failures among the latest 4 calls, 1 trial call closes it
+        circuitBreaker = new ProviderCircuitBreaker(LlmProvider.GROK, ProviderBulkhead.PRIMARY_TARGET, 4, 2, Duration.ofSeconds(30), 1, meterRegistry, now::get);
+    }
+
+    @Test
+    void opensAfterFailuresInWindowAndClosesAfterTrialCall() {
+        fail();
+        succeed();
+        succeed();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+        fail();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.OPEN);
+        assertThat(circuitBreaker.tryAcquirePermission()).isEmpty();
+        assertThat(meterRegistry.get(ProviderCircuitBreaker.SHORT_CIRCUITED_METRIC).counter().count()).isEqualTo(1);
+        assertThat(state(CircuitState.OPEN)).isEqualTo(1);
+
+        now.addAndGet(Duration.ofSeconds(30).toMillis());
+        Optional<ProviderCircuitBreaker.Permit> trial = circuitBreaker.tryAcquirePermission();
+        assertThat(trial).isPresent();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.HALF_OPEN);
+        //only one trial call at a time
+        assertThat(circuitBreaker.tryAcquirePermission()).isEmpty();
+
+        trial.get().onSuccess();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+        assertThat(state(CircuitState.CLOSED)).isEqualTo(1);
+    }
+
+    @Test
+    void failuresOutsideWindowAreForgotten() {
+        fail();
+        succeed();
+        succeed();
+        succeed();
+        succeed();
+        fail();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+    }
+
+    @Test
+    void failedTrialCallOpensAgain() {
+        fail();
+        fail();
+        now.addAndGet(Duration.ofSeconds(30).toMillis());
+
+        circuitBreaker.tryAcquirePermission().orElseThrow().onFailure(new ResourceAccessException("connection refused"));
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.OPEN);
+    }
+
+    @Test
+    void cancelledTrialCallAndClientErrorsAreNotFailures() {
+        fail();
+        fail();
+        now.addAndGet(Duration.ofSeconds(30).toMillis());
+
+        circuitBreaker.tryAcquirePermission().orElseThrow().release();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.HALF_OPEN);
+        circuitBreaker.tryAcquirePermission().orElseThrow().onFailure(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "bad request", HttpHeaders.EMPTY, new byte[0], null));
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.HALF_OPEN);
+        succeed();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitState.CLOSED);
+    }
+
+    private void succeed() {
+        circuitBreaker.tryAcquirePermission().orElseThrow().onSuccess();
+    }
+
+    private void fail() {
+        circuitBreaker.tryAcquirePermission().orElseThrow().onFailure(new ResourceAccessException("connection refused"));
+    }
+
+    private double state(CircuitState circuitState) {
+        return meterRegistry.get(ProviderCircuitBreaker.STATE_METRIC)
+                .tag(ProviderCircuitBreaker.STATE_TAG, circuitState.name())
+                .gauge()
+                .value();
+    }
+}
@@ -0,0 +1,58 @@
+package com.ment.chat.client.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RetryAfterTest {
+
+    private final Instant now = Instant.parse("2025-11-14T16:50:00Z");
+
+    @Test
+    void retryAfterSecondsAndDate() {
+        assertThat(RetryAfter.from(headers(HttpHeaders.RETRY_AFTER, "2"), now)).contains(Duration.ofSeconds(2));
+        assertThat(RetryAfter.from(headers(HttpHeaders.RETRY_AFTER, "Fri, 14 Nov 2025 16:50:05 GMT"), now)).contains(Duration.ofSeconds(5));
+        assertThat(RetryAfter.from(headers(HttpHeaders.RETRY_AFTER, "soon"), now)).isEmpty();
+    }
+
+    @Test
+    void retryAfterMsIsPreferred() {
+        HttpHeaders headers = headers(HttpHeaders.RETRY_AFTER, "2");
+        headers.add("retry-after-ms", "1500");
+        assertThat(RetryAfter.from(headers, now)).contains(Duration.ofMillis(1500));
+    }
+
+    @Test
+    void resetOfExhaustedOpenAiLimit() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("x-ratelimit-remaining-requests", "0");
+        headers.add("x-ratelimit-reset-requests", "1m2.5s");
+        //not exhausted, so not waited for
+        headers.add("x-ratelimit-remaining-tokens", "1000");
+        headers.add("x-ratelimit-reset-tokens", "6m0s");
+        assertThat(RetryAfter.from(headers, now)).contains(Duration.ofMillis(62_500));
+    }
+
+    @Test
+    void resetOfExhaustedAnthropicLimit() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("anthropic-ratelimit-tokens-remaining", "0");
+        headers.add("anthropic-ratelimit-tokens-reset", "2025-11-14T16:50:30Z");
+        assertThat(RetryAfter.from(headers, now)).contains(Duration.ofSeconds(30));
+    }
+
+    @Test
+    void noHeaders() {
+        assertThat(RetryAfter.from(new HttpHeaders(), now)).isEmpty();
+    }
+
+    private HttpHeaders headers(String name, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(name, value);
+        return headers;
+    }
+}
@@ -0,0 +1,51 @@
+package com.ment.chat.client.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void identicalCallsShareTheCallInFlight() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        SingleFlight.Flight<String> first = singleFlight.join("key", () -> started(call));
+        SingleFlight.Flight<String> second = singleFlight.join("key", () -> started(new CompletableFuture<>()));
+        SingleFlight.Flight<String> other = singleFlight.join("other", () -> started(CompletableFuture.completedFuture("other answer")));
+
+        assertThat(first.leader()).isTrue();
+        assertThat(second.leader()).isFalse();
+        assertThat(other.leader()).isTrue();
+        assertThat(calls.get()).isEqualTo(2);
+
+        call.complete("answer");
+        assertThat(first.result()).isCompletedWithValue("answer");
+        assertThat(second.result()).isCompletedWithValue("answer");
+        assertThat(other.result()).isCompletedWithValue("other answer");
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    void callAfterCompletionIsNotShared() {
+        SingleFlight.Flight<String> failed = singleFlight.join("key", () -> started(CompletableFuture.failedFuture(new IllegalStateException("down"))));
+        SingleFlight.Flight<String> next = singleFlight.join("key", () -> started(CompletableFuture.completedFuture("answer")));
+
+        assertThat(failed.result()).isCompletedExceptionally();
+        assertThat(next.leader()).isTrue();
+        assertThat(next.result()).isCompletedWithValue("answer");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    private CompletableFuture<String> started(CompletableFuture<String> call) {
+        calls.incrementAndGet();
+        return call;
+    }
+}
@@ -12,6 +12,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -27,15 +28,21 @@ import static org.assertj.core.api.Assertions.assertThat;
         "app.models.ollama.llm-model-name=llama2",
         "app.models.ollama.api-connection.url=http://localhost:11434",
         "app.models.ollama.api-connection.key=test-key",
+        "app.models.ollama.max-concurrency=3",
+        "app.models.ollama.max-queue-size=0",
         "app.models.openai.llm-model-name=gpt-4",
         "app.models.openai.api-connection.url=https://api.openai.com",
         "app.models.openai.api-connection.key=sk-test",
+        "app.models.openai.retry.max-attempts=5",
+        "app.models.openai.hedge.enabled=true",
+        "app.models.openai.hedge.llm-model-name=gpt-5-mini",
         "app.models.anthropic.llm-model-name=claude-3",
         "app.models.anthropic.api-connection.url=https://api.anthropic.com",
         "app.models.anthropic.api-connection.key=ant-test",
         "app.models.docker.llm-model-name=local-model",
         "app.models.docker.api-connection.url=http://localhost:8080",
-        "app.models.docker.api-connection.key=docker-key"
+        "app.models.docker.api-connection.key=docker-key",
+        "app.models.docker.deadline=30s"
 })
 class AppPropertiesTest {
 
@@ -67,6 +74,18 @@ class AppPropertiesTest {
         assertThat(appProperties.models().get(LlmProvider.OPENAI).llmModelName()).isEqualTo("gpt-4");
         assertThat(appProperties.models().get(LlmProvider.ANTHROPIC).llmModelName()).isEqualTo("claude-3");
         assertThat(appProperties.models().get(LlmProvider.DOCKER).llmModelName()).isEqualTo("local-model");
+        assertThat(appProperties.models().get(LlmProvider.DOCKER).deadline()).isEqualTo(Duration.ofSeconds(30));
+        assertThat(appProperties.models().get(LlmProvider.OLLAMA).deadline()).isEqualTo(Duration.ofMinutes(2)); //default
+        assertThat(appProperties.models().get(LlmProvider.OLLAMA).maxConcurrency()).isEqualTo(3);
+        assertThat(appProperties.models().get(LlmProvider.OLLAMA).maxQueueSize()).isZero();
+        assertThat(appProperties.models().get(LlmProvider.DOCKER).maxConcurrency()).isEqualTo(100); //default
+        assertThat(appProperties.models().get(LlmProvider.OPENAI).retry().maxAttempts()).isEqualTo(5);
+        assertThat(appProperties.models().get(LlmProvider.DOCKER).retry().maxAttempts()).isEqualTo(3); //default
+        assertThat(appProperties.models().get(LlmProvider.DOCKER).retry().budget()).isEqualTo(Duration.ofSeconds(30)); //default
+        assertThat(appProperties.models().get(LlmProvider.OPENAI).hedge().enabled()).isTrue();
+        assertThat(appProperties.models().get(LlmProvider.OPENAI).hedge().llmModelName()).isEqualTo("gpt-5-mini");
+        assertThat(appProperties.models().get(LlmProvider.OPENAI).hedge().apiConnection()).isNull();
+        assertThat(appProperties.models().get(LlmProvider.DOCKER).hedge().enabled()).isFalse(); //default
     }
 
     @Test
@@ -121,10 +140,10 @@ class AppPropertiesTest {
     void shouldFailValidationWhenLeafAttributesIsNull() {
         AppProperties.ApiConnection apiConnection = new AppProperties.ApiConnection("url", "key");
         Map<LlmProvider, AppProperties.ProviderModel> map = new HashMap<>();
-        map.put(LlmProvider.OLLAMA, new AppProperties.ProviderModel("llmModelName", apiConnection));
-        map.put(LlmProvider.OPENAI, new AppProperties.ProviderModel("llmModelName", apiConnection));
-        map.put(LlmProvider.ANTHROPIC, new AppProperties.ProviderModel("llmModelName", apiConnection));
-        map.put(LlmProvider.DOCKER, new AppProperties.ProviderModel("llmModelName", new AppProperties.ApiConnection("url", null)));
+        map.put(LlmProvider.OLLAMA, providerModel(apiConnection));
+        map.put(LlmProvider.OPENAI, providerModel(apiConnection));
+        map.put(LlmProvider.ANTHROPIC, providerModel(apiConnection));
+        map.put(LlmProvider.DOCKER, providerModel(new AppProperties.ApiConnection("url", null)));
         AppProperties invalidProperties = new AppProperties(appProperties.toggle(), map);
 
         Set<ConstraintViolation<AppProperties>> violations = validator.validate(invalidProperties);
@@ -133,4 +152,10 @@ class AppPropertiesTest {
         Iterator<ConstraintViolation<AppProperties>> iterator = violations.iterator();
         assertThat(iterator.next().getPropertyPath().toString()).isEqualTo("models[DOCKER].apiConnection.key");
     }
+
+    private AppProperties.ProviderModel providerModel(AppProperties.ApiConnection apiConnection) {
+        return new AppProperties.ProviderModel("llmModelName", apiConnection, Duration.ofMinutes(2), 100, 1000,
+                new AppProperties.Retry(3, Duration.ofMillis(500), Duration.ofSeconds(10), 2.0, 0.5, Duration.ofSeconds(30)),
+                new AppProperties.Hedge(false, 0.95, Duration.ofSeconds(1), 20, null, null));
+    }
 }
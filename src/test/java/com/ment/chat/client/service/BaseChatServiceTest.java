@@ -18,7 +18,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public abstract class BaseChatServiceTest {
 
     void testProvider(ChatService chatService, String prompt, LlmProvider provider) {
-        var completion = chatService.createCompletionByProvider(createCompletionRequest(prompt, null, provider));
+        var completion = chatService.createCompletionByProvider(createCompletionRequest(prompt, null, provider)).block();
 
         assertThat(completion).isInstanceOf(CreateCompletionByProviderResponse.class);
         assertThat(completion.getInteractionCompletion().getCompletion()).isNotNull(); //provider dependent
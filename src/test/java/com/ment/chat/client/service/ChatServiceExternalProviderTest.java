@@ -34,7 +34,7 @@ public class ChatServiceExternalProviderTest extends BaseChatServiceTest {
 
     @Test
     void statusOfProviders() {
-        var llmProviderStatusList = chatService.getAllProviderStatus().getLlmProviderStatusList();
+        var llmProviderStatusList = chatService.getAllProviderStatus().block().getLlmProviderStatusList();
         llmProviderStatusList.forEach(status ->
                 log.error("Provider status: {}", status)
 
@@ -1,25 +1,46 @@
 package com.ment.chat.client.service;
 
 import com.ment.chat.client.client.ChatClientWithChatMemory;
+import com.ment.chat.client.client.ProviderCallExecutor;
+import com.ment.chat.client.config.AppProperties;
+import com.ment.chat.client.config.CompletionCacheProperties;
+import com.ment.chat.client.config.InteractionCacheProperties;
+import com.ment.chat.client.config.ProviderSchedulerProperties;
+import com.ment.chat.client.config.WriteBehindProperties;
+import com.ment.chat.client.domain.ChatResponseTimer;
 import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmCompletionStats;
 import com.ment.chat.client.domain.LlmPrompt;
 import com.ment.chat.client.domain.exception.ChatNotFoundException;
 import com.ment.chat.client.domain.repository.LlmCompletionRepository;
 import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import com.ment.chat.client.model.enums.CompletionStatus;
 import com.ment.chat.client.model.enums.LlmProvider;
+import com.ment.chat.client.model.enums.LlmStatus;
 import com.ment.chat.client.model.in.CreateCompletionByProviderRequest;
+import com.ment.chat.client.model.in.CreateCompletionsByProvidersRequest;
 import com.ment.chat.client.model.out.CreateCompletionByProviderResponse;
+import com.ment.chat.client.model.out.CreateCompletionEvent;
+import com.ment.chat.client.model.out.CreateCompletionsByProvidersResponse;
+import com.ment.chat.client.model.out.GetLlmProvidersStatsResponse;
+import com.ment.chat.client.model.out.GetLlmProvidersStatusResponse;
 import com.ment.chat.client.model.out.GetSessionMessagesResponse;
+import com.ment.chat.client.model.out.InteractionCompletion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.ValidationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
@@ -31,16 +52,44 @@ import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
 import org.springframework.context.ApplicationEventPublisher;
-
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.IdGenerator;
+import org.springframework.web.client.RestClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.ment.chat.client.model.enums.CompletionEventType.DONE;
+import static com.ment.chat.client.model.enums.CompletionEventType.ERROR;
+import static com.ment.chat.client.model.enums.CompletionEventType.TOKEN;
 import static com.ment.chat.client.model.enums.LlmProvider.ANTHROPIC;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -58,6 +107,38 @@ class ChatServiceImplTest {
     @Mock
     private ChatMemory chatMemory;
 
+    //no providers configured, so the default deadline is used
+    @Mock
+    private AppProperties appProperties;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    //real executor, so provider calls run on virtual threads as in production
+    @Spy
+    private ProviderCallExecutor providerCallExecutor =
+            new ProviderCallExecutor(new ProviderSchedulerProperties(10, "test-provider-call-", new ProviderSchedulerProperties.AdaptiveLimit(false, 1, 0.75, 2.0),
+                    new ProviderSchedulerProperties.CircuitBreaker(false, 10, 5, Duration.ofSeconds(30), 2)),
+                    new AppProperties(new AppProperties.Toggle(false, null, null), Map.of()),
+                    meterRegistry);
+
+    @Spy
+    private CompletionCache completionCache =
+            new CompletionCache(new CompletionCacheProperties(true, 100L, Duration.ofHours(1)), meterRegistry);
+
+    //disabled when not stubbed
+    @Mock
+    private SemanticCompletionCache semanticCompletionCache;
+
+    @Spy
+    private InteractionCache interactionCache =
+            new InteractionCache(new InteractionCacheProperties(true, 100L, Duration.ofHours(1)), meterRegistry);
+
+    @Spy
+    private IdGenerator idGenerator = new UuidV7Generator();
+
+    @Mock
+    private ProviderHealthProber providerHealthProber;
+
     @InjectMocks
     private ChatServiceImpl chatService;
 
@@ -77,6 +158,10 @@ class ChatServiceImplTest {
         var method = ChatServiceImpl.class.getDeclaredMethod("chatClientMap");
         method.setAccessible(true);
         method.invoke(chatService);
+        //written by the calling thread, so the saves are verified when the call has returned
+        ReflectionTestUtils.setField(chatService, "interactionWriter", new InteractionWriter(
+                new WriteBehindProperties(false, WriteBehindProperties.Ack.ASYNC, 100, 10, Duration.ofMillis(10), Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1)),
+                llmPromptRepository, llmCompletionRepository, mock(PromptTextStore.class), mock(PlatformTransactionManager.class), applicationEventPublisher, meterRegistry));
     }
 
     @Test
@@ -90,18 +175,24 @@ class ChatServiceImplTest {
         ChatResponse chatResponse = mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer");
 
         when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
         when(chatClient.prompt(any(Prompt.class)).call().chatResponse()).thenReturn(chatResponse);
-        when(llmPromptRepository.findById(any())).thenReturn(Optional.of(LlmPrompt.builder().build()));
 
-        CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request);
+        CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request).block();
 
         assertThat(response.getInteractionCompletion().getLlmProvider()).isEqualTo(LlmProvider.OPENAI);
         assertThat(response.getInteractionCompletion().getCompletion()).isEqualTo("Test answer");
         assertThat(response.getInteractionCompletion().getCompletedAt()).isBefore(OffsetDateTime.now());
         assertThat(response.getInteractionCompletion().getExecutionTimeMs()).isGreaterThanOrEqualTo(0L);
         assertThat(response.getInteractionCompletion().getLlm()).isEqualTo("Test model");
+        assertThat(response.getInteractionCompletion().getStatus()).isEqualTo(CompletionStatus.COMPLETED);
         assertThat(response.getInteractionCompletion().getTokenUsage()).contains("promptTokens=10");
         assertThat(response.getInteractionCompletion().getTokenUsage()).contains("completionTokens=20");
+        assertThat(response.getInteractionCompletion().getPromptTokens()).isEqualTo(10);
+        assertThat(response.getInteractionCompletion().getCompletionTokens()).isEqualTo(20);
+        assertThat(response.getInteractionCompletion().getTotalTokens()).isEqualTo(30);
+        assertThat(meterRegistry.get(ProviderCallExecutor.IN_FLIGHT_METRIC).gauge().value()).isZero();
+        assertThat(meterRegistry.get(ProviderCallExecutor.QUEUED_METRIC).gauge().value()).isZero();
 
         verify(chatClientWIthChatMemory, times(1)).chatClient();
         verify(chatClient, times(1)).prompt(any(Prompt.class));
@@ -111,6 +202,509 @@ class ChatServiceImplTest {
         verify(applicationEventPublisher, times(1)).publishEvent(any(LlmCompletion.class));
     }
 
+    @Test
+    void testChatClientCallRetriedAfterRateLimit() {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Test interactionPrompt")
+                .chatId("test-id")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        ChatResponse chatResponse = mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer");
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("retry-after-ms", "20");
+        String message = "429 - rate limited";
+        NonTransientAiException rateLimited = new NonTransientAiException(message, new RestClientResponseException(message,
+                HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", headers, new byte[0], StandardCharsets.UTF_8));
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse())
+                .thenThrow(rateLimited)
+                .thenReturn(chatResponse);
+
+        CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request).block();
+
+        assertThat(response.getInteractionCompletion().getStatus()).isEqualTo(CompletionStatus.COMPLETED);
+        assertThat(response.getInteractionCompletion().getCompletion()).isEqualTo("Test answer");
+        assertThat(response.getInteractionCompletion().getAttempts()).isEqualTo(2);
+        //the wait asked for by the provider is used instead of the backoff
+        assertThat(response.getInteractionCompletion().getBackoffMs()).isEqualTo(20L);
+        ArgumentCaptor<LlmCompletion> captor = ArgumentCaptor.forClass(LlmCompletion.class);
+        verify(llmCompletionRepository).save(captor.capture());
+        assertThat(captor.getValue().getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    void testChatClientCallFromCache() {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Test interactionPrompt")
+                .chatId("test-id")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+        //same prompt in another chat
+        CreateCompletionByProviderRequest cachedRequest = CreateCompletionByProviderRequest.builder()
+                .prompt("Test interactionPrompt")
+                .chatId("other-id")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        ChatResponse chatResponse = mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer");
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse()).thenReturn(chatResponse);
+
+        CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request).block();
+        CreateCompletionByProviderResponse cachedResponse = chatService.createCompletionByProvider(cachedRequest).block();
+
+        assertThat(response.getInteractionCompletion().getCached()).isFalse();
+        assertThat(cachedResponse.getInteractionCompletion().getCached()).isTrue();
+        assertThat(cachedResponse.getInteractionCompletion().getCompletion()).isEqualTo("Test answer");
+        assertThat(cachedResponse.getInteractionCompletion().getStatus()).isEqualTo(CompletionStatus.COMPLETED);
+        assertThat(cachedResponse.getInteractionCompletion().getAttempts()).isZero();
+        assertThat(meterRegistry.get("cache.gets").tag("cache", CompletionCache.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1.0);
+
+        verify(chatClient, times(1)).prompt(any(Prompt.class));
+        //the cached answer is added to the chat it was asked in
+        verify(chatMemory).add(ArgumentMatchers.endsWith("-other-id"), ArgumentMatchers.<List<Message>>any());
+        verify(llmCompletionRepository, times(2)).save(any());
+    }
+
+    @Test
+    void testChatClientCallsOfChatsWithOtherHistoriesNotCached() {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Is he a friend of Donald Trump?")
+                .chatId("chat-a")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+        //same follow-up prompt in a chat about someone else
+        CreateCompletionByProviderRequest otherRequest = CreateCompletionByProviderRequest.builder()
+                .prompt("Is he a friend of Donald Trump?")
+                .chatId("chat-b")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatMemory.get(ArgumentMatchers.endsWith("-chat-a")))
+                .thenReturn(List.of(new UserMessage("Who is Elon Musk?"), new AssistantMessage("An entrepreneur")));
+        when(chatMemory.get(ArgumentMatchers.endsWith("-chat-b")))
+                .thenReturn(List.of(new UserMessage("Who is Jeff Bezos?"), new AssistantMessage("The founder of Amazon")));
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse())
+                .thenReturn(mockChatResponse("Test model", new DefaultUsage(10, 20), "Yes"))
+                .thenReturn(mockChatResponse("Test model", new DefaultUsage(10, 20), "No"));
+
+        CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request).block();
+        CreateCompletionByProviderResponse otherResponse = chatService.createCompletionByProvider(otherRequest).block();
+
+        assertThat(response.getInteractionCompletion().getCached()).isFalse();
+        assertThat(response.getInteractionCompletion().getCompletion()).isEqualTo("Yes");
+        assertThat(otherResponse.getInteractionCompletion().getCached()).isFalse();
+        assertThat(otherResponse.getInteractionCompletion().getCompletion()).isEqualTo("No");
+
+        //both reach the provider
+        verify(chatClient, times(2)).prompt(any(Prompt.class));
+    }
+
+    @Test
+    void testChatClientCallsCoalesced() throws Exception {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Test interactionPrompt")
+                .chatId("test-id")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+        //same prompt from another client
+        CreateCompletionByProviderRequest identicalRequest = CreateCompletionByProviderRequest.builder()
+                .prompt("Test interactionPrompt")
+                .chatId("other-id")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        ChatResponse chatResponse = mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer");
+        CountDownLatch called = new CountDownLatch(1);
+        CountDownLatch answer = new CountDownLatch(1);
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse()).thenAnswer(_ -> {
+            called.countDown();
+            answer.await();
+            return chatResponse;
+        });
+
+        CompletableFuture<CreateCompletionByProviderResponse> first = chatService.createCompletionByProvider(request).toFuture();
+        assertThat(called.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<CreateCompletionByProviderResponse> second = chatService.createCompletionByProvider(identicalRequest).toFuture();
+        verify(providerCallExecutor, timeout(5000)).onCoalesced(LlmProvider.OPENAI);
+        answer.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getInteractionCompletion().getCompletion()).isEqualTo("Test answer");
+        assertThat(second.get(5, TimeUnit.SECONDS).getInteractionCompletion().getCompletion()).isEqualTo("Test answer");
+        assertThat(first.get().getInteractionCompletion().getCompletionId()).isNotEqualTo(second.get().getInteractionCompletion().getCompletionId());
+        assertThat(meterRegistry.get(ProviderCallExecutor.COALESCED_METRIC).tag("provider", "OPENAI").counter().count()).isEqualTo(1.0);
+
+        verify(chatClient, times(1)).prompt(any(Prompt.class));
+        //the answer is added to the chat of the joining request
+        verify(chatMemory).add(ArgumentMatchers.endsWith("-other-id"), ArgumentMatchers.<List<Message>>any());
+        verify(llmPromptRepository, times(2)).save(any());
+        verify(llmCompletionRepository, times(2)).save(any());
+    }
+
+    @Test
+    void testChatClientCallsOfChatsWithOtherHistoriesNotCoalesced() throws Exception {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Is he a friend of Donald Trump?")
+                .chatId("chat-a")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+        CreateCompletionByProviderRequest otherRequest = CreateCompletionByProviderRequest.builder()
+                .prompt("Is he a friend of Donald Trump?")
+                .chatId("chat-b")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        CountDownLatch called = new CountDownLatch(2);
+        CountDownLatch answer = new CountDownLatch(1);
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatMemory.get(ArgumentMatchers.endsWith("-chat-a")))
+                .thenReturn(List.of(new UserMessage("Who is Elon Musk?"), new AssistantMessage("An entrepreneur")));
+        when(chatMemory.get(ArgumentMatchers.endsWith("-chat-b")))
+                .thenReturn(List.of(new UserMessage("Who is Jeff Bezos?"), new AssistantMessage("The founder of Amazon")));
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse()).thenAnswer(_ -> {
+            called.countDown();
+            answer.await();
+            return mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer");
+        });
+
+        CompletableFuture<CreateCompletionByProviderResponse> first = chatService.createCompletionByProvider(request).toFuture();
+        CompletableFuture<CreateCompletionByProviderResponse> second = chatService.createCompletionByProvider(otherRequest).toFuture();
+        //both calls are in flight at the same time
+        assertThat(called.await(5, TimeUnit.SECONDS)).isTrue();
+        answer.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getInteractionCompletion().getStatus()).isEqualTo(CompletionStatus.COMPLETED);
+        assertThat(second.get(5, TimeUnit.SECONDS).getInteractionCompletion().getStatus()).isEqualTo(CompletionStatus.COMPLETED);
+        verify(providerCallExecutor, times(0)).onCoalesced(LlmProvider.OPENAI);
+        verify(chatClient, times(2)).prompt(any(Prompt.class));
+    }
+
+    @Test
+    void testChatClientCallFromSemanticCache() {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Who is the current president of the USA")
+                .chatId("test-id")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        ChatResponse chatResponse = mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer");
+
+        when(semanticCompletionCache.isEnabled()).thenReturn(true);
+        when(semanticCompletionCache.lookupTimeout()).thenReturn(Duration.ofSeconds(1));
+        when(semanticCompletionCache.find(LlmProvider.OPENAI, "Who is the current president of the USA"))
+                .thenReturn(Optional.of(new ChatResponseTimer(chatResponse, 5L).asCached(5L)));
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+
+        CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request).block();
+
+        assertThat(response.getInteractionCompletion().getCached()).isTrue();
+        assertThat(response.getInteractionCompletion().getCompletion()).isEqualTo("Test answer");
+        assertThat(response.getInteractionCompletion().getStatus()).isEqualTo(CompletionStatus.COMPLETED);
+
+        //the provider is not called
+        verify(chatClientWIthChatMemory, times(0)).chatClient();
+        ArgumentCaptor<LlmPrompt> promptCaptor = ArgumentCaptor.forClass(LlmPrompt.class);
+        verify(llmPromptRepository).save(promptCaptor.capture());
+        assertThat(promptCaptor.getValue().getStateless()).isTrue();
+        verify(chatMemory).add(ArgumentMatchers.endsWith("-test-id"), ArgumentMatchers.<List<Message>>any());
+        verify(llmCompletionRepository, times(1)).save(any());
+    }
+
+    @Test
+    void testSemanticCacheNotSearchedInChatWithHistory() {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Is he a friend of Donald Trump?")
+                .chatId("test-id")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        when(semanticCompletionCache.isEnabled()).thenReturn(true);
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatMemory.get(ArgumentMatchers.endsWith("-test-id")))
+                .thenReturn(List.of(new UserMessage("Who is Elon Musk?"), new AssistantMessage("An entrepreneur")));
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse())
+                .thenReturn(mockChatResponse("Test model", new DefaultUsage(10, 20), "Yes"));
+
+        CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request).block();
+
+        assertThat(response.getInteractionCompletion().getCached()).isFalse();
+        verify(semanticCompletionCache, times(0)).find(any(), any());
+        verify(chatClient, times(1)).prompt(any(Prompt.class));
+        //so its answer is not put in the semantic cache either
+        ArgumentCaptor<LlmPrompt> promptCaptor = ArgumentCaptor.forClass(LlmPrompt.class);
+        verify(llmPromptRepository).save(promptCaptor.capture());
+        assertThat(promptCaptor.getValue().getStateless()).isFalse();
+    }
+
+    @Test
+    void testCompletionNotWrittenEvictedFromInteractionCache() {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Test interactionPrompt")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        //queued writes, the one of the completion fails after the response
+        InteractionWriter interactionWriter = mock(InteractionWriter.class);
+        when(interactionWriter.write(any(LlmPrompt.class))).thenReturn(CompletableFuture.completedFuture(null));
+        when(interactionWriter.write(any(LlmCompletion.class))).thenReturn(CompletableFuture.failedFuture(new RuntimeException("Write failed")));
+        ReflectionTestUtils.setField(chatService, "interactionWriter", interactionWriter);
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse())
+                .thenReturn(mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer"));
+
+        CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request).block();
+
+        String promptId = response.getInteractionCompletion().getPromptId();
+        String completionId = response.getInteractionCompletion().getCompletionId();
+        verify(interactionCache).evictCompletion(promptId, completionId);
+        verify(interactionCache, times(0)).evictPrompt(any());
+        assertThat(interactionCache.getByPromptId(promptId, _ -> {
+            throw new AssertionError("read from the database");
+        }).getInteractionCompletions()).isEmpty();
+    }
+
+    @Test
+    void testPromptWithSystemMessageNotStateless() {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Who is the current president of the USA")
+                .system("Answer in French please")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        when(semanticCompletionCache.isEnabled()).thenReturn(true);
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse())
+                .thenReturn(mockChatResponse("Test model", new DefaultUsage(10, 20), "Donald Trump"));
+
+        chatService.createCompletionByProvider(request).block();
+
+        verify(semanticCompletionCache, times(0)).find(any(), any());
+        ArgumentCaptor<LlmPrompt> promptCaptor = ArgumentCaptor.forClass(LlmPrompt.class);
+        verify(llmPromptRepository).save(promptCaptor.capture());
+        assertThat(promptCaptor.getValue().getStateless()).isFalse();
+    }
+
+    @Test
+    void testHedgedCallInChatWrittenOnceToChatMemory() throws Exception {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Is he a friend of Donald Trump?")
+                .chatId("chat-1")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        ChatClient hedgeChatClient = mock(ChatClient.class, Answers.RETURNS_DEEP_STUBS);
+        ChatMemory history = MessageWindowChatMemory.builder().build();
+        history.add(chatService.getSessionId() + "-chat-1", List.of(new UserMessage("Who is Elon Musk?"), new AssistantMessage("An entrepreneur")));
+        CountDownLatch answer = new CountDownLatch(1);
+
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(history);
+        when(chatClientWIthChatMemory.statelessChatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.hedgeChatClient()).thenReturn(hedgeChatClient);
+        doReturn(Optional.of(Duration.ofMillis(10))).when(providerCallExecutor).hedgeDelay(LlmProvider.OPENAI);
+        //the provider is not configured with a backup, so the hedge is run without its bulkhead
+        doAnswer(invocation -> Mono.fromCallable(invocation.<Callable<ChatResponseTimer>>getArgument(1)).subscribeOn(Schedulers.boundedElastic()))
+                .when(providerCallExecutor).hedge(eq(LlmProvider.OPENAI), any());
+        //the provider is slow, so the backup answers first
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse()).thenAnswer(_ -> {
+            answer.await(5, TimeUnit.SECONDS);
+            return mockChatResponse("Test model", new DefaultUsage(10, 20), "Late answer");
+        });
+        when(hedgeChatClient.prompt(any(Prompt.class)).call().chatResponse())
+                .thenReturn(mockChatResponse("Backup model", new DefaultUsage(10, 20), "No"));
+
+        try {
+            CreateCompletionByProviderResponse response = chatService.createCompletionByProvider(request).block();
+
+            assertThat(response.getInteractionCompletion().getCompletion()).isEqualTo("No");
+        } finally {
+            answer.countDown();
+        }
+
+        //both calls are sent the history and the prompt once
+        ArgumentCaptor<Prompt> promptCaptor = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatClient).prompt(promptCaptor.capture());
+        verify(hedgeChatClient).prompt(promptCaptor.capture());
+        assertThat(promptCaptor.getAllValues()).allSatisfy(prompt -> assertThat(prompt.getInstructions())
+                .extracting(Message::getText)
+                .containsExactly("Who is Elon Musk?", "An entrepreneur", "Is he a friend of Donald Trump?"));
+        //only the answer winning is added to the chat memory
+        assertThat(history.get(chatService.getSessionId() + "-chat-1"))
+                .extracting(Message::getText)
+                .containsExactly("Who is Elon Musk?", "An entrepreneur", "Is he a friend of Donald Trump?", "No");
+        //the answer of the backup model is saved as such and not cached as the answer of the model of the provider
+        ArgumentCaptor<LlmCompletion> completionCaptor = ArgumentCaptor.forClass(LlmCompletion.class);
+        verify(llmCompletionRepository).save(completionCaptor.capture());
+        assertThat(completionCaptor.getValue().getHedged()).isTrue();
+        assertThat(completionCaptor.getValue().getLlm()).isEqualTo("Backup model");
+        verify(completionCache, times(0)).put(any(), any());
+    }
+
+    @Test
+    void testChatClientStream() {
+        CreateCompletionByProviderRequest request = CreateCompletionByProviderRequest.builder()
+                .prompt("Test interactionPrompt")
+                .chatId("test-id")
+                .llmProvider(LlmProvider.OPENAI)
+                .build();
+
+        //as for OpenAI, the usage is only sent with the last chunk
+        Flux<ChatResponse> chunks = Flux.just(
+                mockChatResponse("Test model", new DefaultUsage(0, 0), "Test "),
+                mockChatResponse("Test model", new DefaultUsage(10, 20), "answer"));
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatClient.prompt(any(Prompt.class)).stream().chatResponse()).thenReturn(chunks);
+
+        List<CreateCompletionEvent> events = chatService.streamCompletionByProvider(request).collectList().block();
+
+        assertThat(events).extracting(CreateCompletionEvent::getEventType).containsExactly(TOKEN, TOKEN, DONE);
+        assertThat(events).extracting(CreateCompletionEvent::getLlmProvider).containsOnly(LlmProvider.OPENAI);
+        assertThat(events.get(0).getContent()).isEqualTo("Test ");
+        assertThat(events.get(1).getContent()).isEqualTo("answer");
+
+        InteractionCompletion completion = events.getLast().getInteractionCompletion();
+        assertThat(completion.getCompletion()).isEqualTo("Test answer");
+        assertThat(completion.getPromptId()).isEqualTo(events.getFirst().getPromptId());
+        assertThat(completion.getLlm()).isEqualTo("Test model");
+        assertThat(completion.getTokenUsage()).contains("promptTokens=10");
+        assertThat(completion.getTimeToFirstTokenMs()).isNotNull();
+        assertThat(completion.getTimeToFirstTokenMs()).isLessThanOrEqualTo(completion.getExecutionTimeMs());
+
+        verify(llmPromptRepository, times(1)).save(any());
+        verify(llmCompletionRepository, times(1)).save(any());
+        verify(applicationEventPublisher, times(1)).publishEvent(any(LlmCompletion.class));
+    }
+
+    @Test
+    void testChatClientStreamMergedProviders() {
+        CreateCompletionsByProvidersRequest request = CreateCompletionsByProvidersRequest.builder()
+                .prompt("Test interactionPrompt")
+                .llmProviders(EnumSet.of(LlmProvider.OLLAMA, LlmProvider.OPENAI))
+                .build();
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        //providers are subscribed in enum order, the second provider fails
+        when(chatClient.prompt(any(Prompt.class)).stream().chatResponse())
+                .thenReturn(Flux.just(mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer")))
+                .thenReturn(Flux.error(new IllegalStateException("provider down")));
+
+        List<CreateCompletionEvent> events = chatService.streamCompletionsByProviders(request).collectList().block();
+
+        assertThat(events).filteredOn(event -> event.getLlmProvider() == LlmProvider.OLLAMA)
+                .extracting(CreateCompletionEvent::getEventType)
+                .containsExactly(TOKEN, DONE);
+        assertThat(events).filteredOn(event -> event.getLlmProvider() == LlmProvider.OPENAI)
+                .extracting(CreateCompletionEvent::getEventType)
+                .containsExactly(ERROR);
+        assertThat(events).extracting(CreateCompletionEvent::getPromptId).containsOnly(events.getFirst().getPromptId());
+
+        verify(llmPromptRepository, times(1)).save(any());
+        verify(llmCompletionRepository, times(1)).save(any());
+    }
+
+    @Test
+    void testChatClientCallsDeadline() {
+        CreateCompletionsByProvidersRequest request = CreateCompletionsByProvidersRequest.builder()
+                .prompt("Test interactionPrompt")
+                .llmProviders(EnumSet.of(LlmProvider.OPENAI))
+                .deadlineMs(50L)
+                .build();
+
+        ChatResponse chatResponse = mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer");
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        when(chatClient.prompt(any(Prompt.class)).call().chatResponse()).thenAnswer(_ -> {
+            Thread.sleep(500); //answers after the deadline
+            return chatResponse;
+        });
+
+        CreateCompletionsByProvidersResponse response = chatService.createCompletionsByProviders(request).block();
+
+        assertThat(response.getInteractionCompletions()).hasSize(1);
+        InteractionCompletion interactionCompletion = response.getInteractionCompletions().getFirst();
+        assertThat(interactionCompletion.getLlmProvider()).isEqualTo(LlmProvider.OPENAI);
+        assertThat(interactionCompletion.getStatus()).isEqualTo(CompletionStatus.TIMED_OUT);
+        assertThat(interactionCompletion.getCompletion()).isNull();
+        assertThat(interactionCompletion.getExecutionTimeMs()).isEqualTo(50L);
+
+        //the late answer is saved in the background
+        verify(llmCompletionRepository, timeout(2000).times(1)).save(any());
+        verify(applicationEventPublisher, timeout(2000).times(1)).publishEvent(any(LlmCompletion.class));
+    }
+
+    @Test
+    void testChatClientRace() {
+        CreateCompletionsByProvidersRequest request = CreateCompletionsByProvidersRequest.builder()
+                .prompt("Test interactionPrompt")
+                .llmProviders(EnumSet.of(LlmProvider.OLLAMA, LlmProvider.OPENAI))
+                .build();
+
+        when(chatClientWIthChatMemory.chatClient()).thenReturn(chatClient);
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(chatMemory);
+        //providers are subscribed in enum order, the first provider never answers
+        when(chatClient.prompt(any(Prompt.class)).stream().chatResponse())
+                .thenReturn(Flux.never())
+                .thenReturn(Flux.just(mockChatResponse("Test model", new DefaultUsage(10, 20), "Test answer")));
+
+        CreateCompletionByProviderResponse response = chatService.createCompletionByFastestProvider(request).block();
+
+        assertThat(response.getInteractionCompletion().getLlmProvider()).isEqualTo(LlmProvider.OPENAI);
+        assertThat(response.getInteractionCompletion().getStatus()).isEqualTo(CompletionStatus.COMPLETED);
+        assertThat(response.getInteractionCompletion().getCompletion()).isEqualTo("Test answer");
+
+        //the cancelled provider is saved in the background
+        ArgumentCaptor<LlmCompletion> completionCaptor = ArgumentCaptor.forClass(LlmCompletion.class);
+        verify(llmCompletionRepository, timeout(2000).times(2)).save(completionCaptor.capture());
+        assertThat(completionCaptor.getAllValues())
+                .extracting(LlmCompletion::getLlmProvider, LlmCompletion::getStatus)
+                .containsExactlyInAnyOrder(
+                        tuple(LlmProvider.OPENAI, CompletionStatus.COMPLETED),
+                        tuple(LlmProvider.OLLAMA, CompletionStatus.CANCELLED));
+        assertThat(completionCaptor.getAllValues())
+                .extracting(LlmCompletion::getPromptId)
+                .containsOnly(response.getInteractionCompletion().getPromptId());
+    }
+
+    @Test
+    void testProviderStatusFromProbes() {
+        Map<LlmProvider, ProviderProbeResult> probeResults = new EnumMap<>(LlmProvider.class);
+        for (LlmProvider llmProvider : LlmProvider.values()) {
+            probeResults.put(llmProvider, new ProviderProbeResult(llmProvider == ANTHROPIC ? LlmStatus.UNAVAILABLE : LlmStatus.AVAILABLE,
+                    "model", OffsetDateTime.now(), 10L, null));
+        }
+        when(providerHealthProber.getProbeResults()).thenReturn(probeResults);
+
+        GetLlmProvidersStatusResponse response = chatService.getAllProviderStatus().block();
+
+        assertThat(response.getLlmProviderStatusList())
+                .hasSize(LlmProvider.values().length)
+                .filteredOn(status -> status.getStatus() == LlmStatus.UNAVAILABLE)
+                .extracting(GetLlmProvidersStatusResponse.LlmProviderStatus::getProvider)
+                .containsExactly(ANTHROPIC);
+        //served from the probes, no provider is called
+        verify(providerHealthProber, times(0)).probeAll();
+        verify(chatClientWIthChatMemory, times(0)).chatClient();
+    }
+
     @Test
     void testChatMemoryCalls() {
         List<Message> actualMessages =
@@ -141,6 +735,31 @@ class ChatServiceImplTest {
 
     }
 
+    @Test
+    void providerStatsFromDatabaseAggregates() {
+        OffsetDateTime to = OffsetDateTime.now();
+        OffsetDateTime from = to.minusDays(1);
+        when(llmCompletionRepository.findStatsByCompletedAt(from, to, CompletionStatus.COMPLETED)).thenReturn(List.of(
+                new LlmCompletionStats(LlmProvider.OPENAI, "gpt-5", 3L, 1500.0, 4200.0, 30L, 600L, 630L, 12000L),
+                new LlmCompletionStats(LlmProvider.OLLAMA, "llama3", 1L, 800.0, 800.0, null, null, null, null)));
+
+        GetLlmProvidersStatsResponse response = chatService.getProviderStats(from, to);
+
+        assertThat(response.getLlmProviderStatsList()).hasSize(2);
+        GetLlmProvidersStatsResponse.LlmProviderStats openAi = response.getLlmProviderStatsList().getFirst();
+        assertThat(openAi.getP95ExecutionTimeMs()).isEqualTo(4200.0);
+        assertThat(openAi.getTotalTokens()).isEqualTo(630L);
+        assertThat(openAi.getTokensPerSecond()).isEqualTo(50.0);
+        assertThat(response.getLlmProviderStatsList().getLast().getTokensPerSecond()).isNull();
+    }
+
+    @Test
+    void providerStatsOfEmptyWindowRejected() {
+        OffsetDateTime now = OffsetDateTime.now();
+
+        assertThrows(ValidationException.class, () -> chatService.getProviderStats(now, now));
+    }
+
     @Test
     void testChatMemoryGetCallEmptyList() {
         List<Message> actualMessages = List.of();
@@ -160,7 +779,6 @@ class ChatServiceImplTest {
 
     }
 
-    @SuppressWarnings("SameParameterValue")
     private ChatResponse mockChatResponse(String model, Usage usage, String answer) {
         ChatResponseMetadata metadata = ChatResponseMetadata.builder()
                 .model(model)
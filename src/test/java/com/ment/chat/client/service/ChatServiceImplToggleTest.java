@@ -1,7 +1,13 @@
 package com.ment.chat.client.service;
 
 import com.ment.chat.client.client.ChatClientWithChatMemory;
+import com.ment.chat.client.client.ProviderCallExecutor;
 import com.ment.chat.client.client.ProviderClient;
+import com.ment.chat.client.config.AppProperties;
+import com.ment.chat.client.config.CompletionCacheProperties;
+import com.ment.chat.client.config.InteractionCacheProperties;
+import com.ment.chat.client.config.ProviderSchedulerProperties;
+import com.ment.chat.client.config.WriteBehindProperties;
 import com.ment.chat.client.domain.LlmCompletion;
 import com.ment.chat.client.domain.LlmPrompt;
 import com.ment.chat.client.domain.repository.LlmCompletionRepository;
@@ -9,6 +15,7 @@ import com.ment.chat.client.domain.repository.LlmPromptRepository;
 import com.ment.chat.client.model.enums.LlmProvider;
 import com.ment.chat.client.model.in.CreateCompletionByProviderRequest;
 import com.ment.chat.client.model.out.CreateCompletionByProviderResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -19,7 +26,9 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.AssistantMessage;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.SystemMessage;
@@ -31,17 +40,21 @@ import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.IdGenerator;
 
 import java.lang.reflect.Field;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -63,6 +76,32 @@ class ChatServiceImplToggleTest {
     @Mock
     private ChatClientWithChatMemory chatClientWIthChatMemory;
 
+    @Mock
+    private AppProperties appProperties;
+
+    @Spy
+    private ProviderCallExecutor providerCallExecutor =
+            new ProviderCallExecutor(new ProviderSchedulerProperties(10, "test-provider-call-", new ProviderSchedulerProperties.AdaptiveLimit(false, 1, 0.75, 2.0),
+                    new ProviderSchedulerProperties.CircuitBreaker(false, 10, 5, Duration.ofSeconds(30), 2)),
+                    new AppProperties(new AppProperties.Toggle(false, null, null), Map.of()),
+                    new SimpleMeterRegistry());
+
+    //disabled, the chat history is verified per call to the provider
+    @Spy
+    private CompletionCache completionCache =
+            new CompletionCache(new CompletionCacheProperties(false, 100L, Duration.ofHours(1)), new SimpleMeterRegistry());
+
+    //disabled when not stubbed
+    @Mock
+    private SemanticCompletionCache semanticCompletionCache;
+
+    @Spy
+    private InteractionCache interactionCache =
+            new InteractionCache(new InteractionCacheProperties(true, 100L, Duration.ofHours(1)), new SimpleMeterRegistry());
+
+    @Spy
+    private IdGenerator idGenerator = new UuidV7Generator();
+
     @InjectMocks
     private ChatServiceImpl service;
 
@@ -81,13 +120,17 @@ class ChatServiceImplToggleTest {
             }
             mapField.set(service, mockMap);
         }
+        ReflectionTestUtils.setField(service, "interactionWriter", new InteractionWriter(
+                new WriteBehindProperties(false, WriteBehindProperties.Ack.ASYNC, 100, 10, Duration.ofMillis(10), Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1)),
+                llmPromptRepository, llmCompletionRepository, mock(PromptTextStore.class), mock(PlatformTransactionManager.class), applicationEventPublisher, new SimpleMeterRegistry()));
 
 
         // Mock ChatClientWithChatMemory to return the mockedChatClient
         when(chatClientWIthChatMemory.chatClient()).thenReturn(mockedChatClient);
+        //no history, the calls of the test are verified one by one
+        when(chatClientWIthChatMemory.chatMemory()).thenReturn(mock(ChatMemory.class));
         // Mock repository behavior to avoid NPE
         when(llmPromptRepository.save(any())).thenReturn(LlmPrompt.builder().build());
-        when(llmPromptRepository.findById(any())).thenReturn(Optional.of(LlmPrompt.builder().build()));
         when(llmCompletionRepository.save(any())).thenReturn(LlmCompletion.builder().build());
         doNothing().when(applicationEventPublisher).publishEvent(any(ApplicationEvent.class));
     }
@@ -117,8 +160,8 @@ class ChatServiceImplToggleTest {
                 .llmProvider(llmProvider)
                 .build();
 
-        CreateCompletionByProviderResponse r1 = service.createCompletionByProvider(req1);
-        CreateCompletionByProviderResponse r2 = service.createCompletionByProvider(req2);
+        CreateCompletionByProviderResponse r1 = service.createCompletionByProvider(req1).block();
+        CreateCompletionByProviderResponse r2 = service.createCompletionByProvider(req2).block();
 
         verify(chatClient, times(3)).prompt(promptCaptor.capture());
         verify(chatClientWIthChatMemory, times(2)).chatClient();
@@ -0,0 +1,335 @@
+package com.ment.chat.client.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptText;
+import com.ment.chat.client.model.enums.CompletionStatus;
+import com.ment.chat.client.model.enums.LlmProvider;
+import com.ment.chat.client.model.out.GetChatResponse;
+import com.ment.chat.client.model.out.GetInteractionResponse;
+import com.ment.chat.client.model.out.GetInteractionsResponse;
+import com.ment.chat.client.model.out.InteractionCompletion;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Reads pages and streams of interactions written to H2 and indexed by Lucene, without calling the providers.
+ * The statements prepared by Hibernate are counted, so a read of N interactions is seen to take as many as a read of one.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@SpringBootTest
+@ActiveProfiles("test")
+//the writes of a test are batched, and awaited by their futures
+@TestPropertySource(properties = {
+        "app.write-behind.ack=ASYNC",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+@DirtiesContext
+class ChatServiceReadTest {
+
+    //prompts sharing a time, so a page may end inside a tie
+    private static final int TIES = 5;
+
+    private static final int LIMIT = 7;
+
+    //read in one page and one chunk
+    private static final int MANY = 50;
+
+    @Autowired
+    private ChatService chatService;
+
+    @Autowired
+    private InteractionWriter interactionWriter;
+
+    @Autowired
+    private LuceneSearch luceneSearch;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void chatReadInPagesAcrossPromptsWithSameTime() {
+        String chatId = UUID.randomUUID().toString();
+        List<LlmPrompt> llmPrompts = write(chatId, word(), 4 * TIES + 2);
+
+        List<GetInteractionResponse> interactions = readPages(after -> {
+            GetChatResponse page = chatService.getChatByChatId(chatId, after, LIMIT);
+            return new Page(page.getInteractions(), page.getNextCursor());
+        });
+
+        //in the order of prompting, the ties in the order of the prompt ids
+        assertThat(interactions)
+                .extracting(interaction -> interaction.getInteractionPrompt().getPromptId())
+                .containsExactlyElementsOf(llmPrompts.stream()
+                        .sorted(Comparator.comparing(LlmPrompt::getPromptedAt).thenComparing(LlmPrompt::getPromptId))
+                        .map(LlmPrompt::getPromptId)
+                        .toList());
+        interactions.forEach(interaction -> assertThat(interaction.getInteractionCompletions()).hasSize(2));
+    }
+
+    @Test
+    void chatByPromptReadInPages() throws InterruptedException {
+        String word = word();
+        List<LlmPrompt> llmPrompts = write(UUID.randomUUID().toString(), word, 3 * LIMIT + 1);
+        awaitIndexed(word, llmPrompts.size());
+
+        List<GetInteractionResponse> interactions = readPages(after -> {
+            GetChatResponse page = chatService.getChatByPrompt(word, after, LIMIT);
+            return new Page(page.getInteractions(), page.getNextCursor());
+        });
+
+        assertThat(interactions)
+                .extracting(interaction -> interaction.getInteractionPrompt().getPromptId())
+                .containsExactlyInAnyOrderElementsOf(promptIds(llmPrompts));
+    }
+
+    @Test
+    void interactionsByCompletionReadInPages() throws InterruptedException {
+        String word = word();
+        List<LlmPrompt> llmPrompts = write(UUID.randomUUID().toString(), word, 3 * LIMIT + 1);
+        awaitIndexed(word, llmPrompts.size());
+
+        //both completions of a prompt match, the prompt is read once
+        List<GetInteractionResponse> interactions = readPages(after -> {
+            GetInteractionsResponse page = chatService.getInteractionsByCompletion(word, after, LIMIT);
+            return new Page(page.getInteractions(), page.getNextCursor());
+        });
+
+        assertThat(interactions)
+                .extracting(interaction -> interaction.getInteractionPrompt().getPromptId())
+                .containsExactlyInAnyOrderElementsOf(promptIds(llmPrompts));
+        interactions.forEach(interaction -> assertThat(interaction.getInteractionCompletions()).hasSize(2));
+    }
+
+    @Test
+    void chatStreamedInChunks() {
+        String chatId = UUID.randomUUID().toString();
+        List<LlmPrompt> llmPrompts = write(chatId, word(), 2 * InteractionStreamer.CHUNK_SIZE + TIES);
+
+        List<GetInteractionResponse> interactions = ndjson(consumer -> chatService.streamChatByChatId(chatId, consumer));
+
+        assertThat(interactions)
+                .extracting(interaction -> interaction.getInteractionPrompt().getPromptId())
+                .containsExactlyElementsOf(llmPrompts.stream()
+                        .sorted(Comparator.comparing(LlmPrompt::getPromptedAt).thenComparing(LlmPrompt::getPromptId))
+                        .map(LlmPrompt::getPromptId)
+                        .toList());
+        assertCompletionsOfEachPrompt(interactions);
+    }
+
+    @Test
+    void chatByPromptStreamedInChunks() throws InterruptedException {
+        String word = word();
+        List<LlmPrompt> llmPrompts = write(UUID.randomUUID().toString(), word, 2 * InteractionStreamer.CHUNK_SIZE + TIES);
+        awaitIndexed(word, llmPrompts.size());
+
+        List<GetInteractionResponse> interactions = ndjson(consumer -> chatService.streamChatByPrompt(word, consumer));
+
+        assertThat(interactions)
+                .extracting(interaction -> interaction.getInteractionPrompt().getPromptId())
+                .containsExactlyInAnyOrderElementsOf(promptIds(llmPrompts));
+        assertCompletionsOfEachPrompt(interactions);
+    }
+
+    @Test
+    void interactionsByCompletionStreamedInChunks() throws InterruptedException {
+        String word = word();
+        List<LlmPrompt> llmPrompts = write(UUID.randomUUID().toString(), word, 2 * InteractionStreamer.CHUNK_SIZE + TIES);
+        awaitIndexed(word, llmPrompts.size());
+
+        List<GetInteractionResponse> interactions = ndjson(consumer -> chatService.streamInteractionsByCompletion(word, consumer));
+
+        assertThat(interactions)
+                .extracting(interaction -> interaction.getInteractionPrompt().getPromptId())
+                .containsExactlyInAnyOrderElementsOf(promptIds(llmPrompts));
+        assertCompletionsOfEachPrompt(interactions);
+    }
+
+    @Test
+    void statementsOfReadNotGrowingWithInteractions() throws InterruptedException {
+        Written one = writeIndexed(1);
+        Written many = writeIndexed(MANY);
+
+        assertSameStatements("chat", one, many, written -> chatService.getChatByChatId(written.chatId(), null, MANY));
+        assertSameStatements("chat by prompt", one, many, written -> chatService.getChatByPrompt(written.word(), null, MANY));
+        assertSameStatements("interactions by completion", one, many, written -> chatService.getInteractionsByCompletion(written.word(), null, MANY));
+        assertSameStatements("streamed chat", one, many, written -> chatService.streamChatByChatId(written.chatId(), _ -> {
+        }));
+        assertSameStatements("streamed chat by prompt", one, many, written -> chatService.streamChatByPrompt(written.word(), _ -> {
+        }));
+        assertSameStatements("streamed interactions by completion", one, many, written -> chatService.streamInteractionsByCompletion(written.word(), _ -> {
+        }));
+    }
+
+    private void assertSameStatements(String read, Written one, Written many, Consumer<Written> reader) {
+        long statementsOfOne = statements(() -> reader.accept(one));
+        long statementsOfMany = statements(() -> reader.accept(many));
+
+        assertThat(statementsOfOne).as(read).isPositive();
+        assertThat(statementsOfMany).as(read + " of " + MANY + " interactions").isEqualTo(statementsOfOne);
+    }
+
+    //the interactions are read from the database, not from the interaction cache
+    private long statements(Runnable read) {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        read.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private record Written(String chatId, String word) {
+    }
+
+    private Written writeIndexed(int count) throws InterruptedException {
+        Written written = new Written(UUID.randomUUID().toString(), word());
+        write(written.chatId(), written.word(), count);
+        awaitIndexed(written.word(), count);
+        return written;
+    }
+
+    private record Page(List<GetInteractionResponse> interactions, String nextCursor) {
+    }
+
+    //follows the cursors until the last page
+    private static List<GetInteractionResponse> readPages(Function<String, Page> reader) {
+        List<GetInteractionResponse> interactions = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            Page page = reader.apply(after);
+            assertThat(page.interactions()).hasSizeLessThanOrEqualTo(LIMIT);
+            interactions.addAll(page.interactions());
+            after = page.nextCursor();
+            pages++;
+        } while (after != null);
+        assertThat(pages).isGreaterThan(1);
+        return interactions;
+    }
+
+    //written and read back as the lines of the NDJSON response
+    private List<GetInteractionResponse> ndjson(Consumer<Consumer<GetInteractionResponse>> stream) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        stream.accept(interaction -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(interaction));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return outputStream.toString(StandardCharsets.UTF_8).lines()
+                .map(line -> {
+                    try {
+                        return objectMapper.readValue(line, GetInteractionResponse.class);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .toList();
+    }
+
+    private static void assertCompletionsOfEachPrompt(List<GetInteractionResponse> interactions) {
+        interactions.forEach(interaction -> assertThat(interaction.getInteractionCompletions())
+                .extracting(InteractionCompletion::getPromptId)
+                .containsExactly(interaction.getInteractionPrompt().getPromptId(), interaction.getInteractionPrompt().getPromptId()));
+    }
+
+    /**
+     * Writes the prompts, each answered by two providers, TIES prompts at a time.
+     *
+     * @return the written prompts
+     */
+    private List<LlmPrompt> write(String chatId, String word, int count) {
+        OffsetDateTime promptedAt = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.SECONDS);
+        List<LlmPrompt> llmPrompts = IntStream.range(0, count)
+                .mapToObj(i -> llmPrompt(chatId, "Who is " + word + " number " + i + "?", promptedAt.plusSeconds(i / TIES)))
+                .toList();
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        llmPrompts.forEach(llmPrompt -> {
+            writes.add(interactionWriter.write(llmPrompt));
+            writes.add(interactionWriter.write(llmCompletion(llmPrompt, LlmProvider.OLLAMA, word)));
+            writes.add(interactionWriter.write(llmCompletion(llmPrompt, LlmProvider.DOCKER, word)));
+        });
+        CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+        return llmPrompts;
+    }
+
+    //the written prompts and completions are found after a refresh of the index
+    private void awaitIndexed(String word, int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while ((luceneSearch.searchPrompts(word, Integer.MAX_VALUE).size() < count
+                || luceneSearch.searchCompletions(word, Integer.MAX_VALUE).size() < count) && System.currentTimeMillis() < end) {
+            luceneSearch.refresh();
+            Thread.sleep(10);
+        }
+    }
+
+    //one word found only in the prompts and completions of a test
+    private static String word() {
+        return "w" + UUID.randomUUID().toString().replace("-", "");
+    }
+
+    private static List<String> promptIds(List<LlmPrompt> llmPrompts) {
+        return llmPrompts.stream()
+                .map(LlmPrompt::getPromptId)
+                .toList();
+    }
+
+    private static LlmPrompt llmPrompt(String chatId, String prompt, OffsetDateTime promptedAt) {
+        return LlmPrompt.builder()
+                .promptId(UUID.randomUUID().toString())
+                .prompt(prompt)
+                .promptHash(LlmPromptText.hash(prompt))
+                .sessionId("test-session")
+                .chatId(chatId)
+                .promptedAt(promptedAt)
+                .stateless(false)
+                .build();
+    }
+
+    private static LlmCompletion llmCompletion(LlmPrompt llmPrompt, LlmProvider llmProvider, String word) {
+        return LlmCompletion.builder()
+                .completionId(UUID.randomUUID().toString())
+                .promptId(llmPrompt.getPromptId())
+                .completion("Nobody knows " + word + ", answered by " + llmProvider)
+                .llm(llmProvider.name().toLowerCase())
+                .llmProvider(llmProvider)
+                .executionTimeMs(10L)
+                .attempts(1)
+                .backoffMs(0L)
+                .cached(false)
+                .hedged(false)
+                .status(CompletionStatus.COMPLETED)
+                .completedAt(llmPrompt.getPromptedAt())
+                .build();
+    }
+}
@@ -4,6 +4,7 @@ import com.ment.chat.client.model.enums.LlmProvider;
 import com.ment.chat.client.model.enums.LlmStatus;
 import com.ment.chat.client.model.out.GetChatResponse;
 import com.ment.chat.client.model.out.GetInteractionResponse;
+import com.ment.chat.client.model.out.GetLlmProvidersStatsResponse;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -16,6 +17,7 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.OffsetDateTime;
 import java.util.EnumSet;
 
 import static com.ment.chat.client.model.enums.LlmProvider.DOCKER;
@@ -44,7 +46,7 @@ public class ChatServiceTest extends BaseChatServiceTest {
 
     @Test
     void chatProviderCombinedCallOk() {
-        var completions = chatService.createCompletionsByAllProviders(createCompletionRequest("Who is Donald Trump?", null));
+        var completions = chatService.createCompletionsByAllProviders(createCompletionRequest("Who is Donald Trump?", null)).block();
 
         assertThat(completions.getInteractionCompletions().size()).isEqualTo(LlmProvider.values().length); //number of providers
         completions.getInteractionCompletions()
@@ -62,7 +64,7 @@ public class ChatServiceTest extends BaseChatServiceTest {
     @ParameterizedTest
     @MethodSource("externalProviders")
     void chatProviderCallWithWrongPassword(LlmProvider provider) {
-        assertThatThrownBy(() -> chatService.createCompletionByProvider(createCompletionRequest("Who is Donald Trump?", null, provider)))
+        assertThatThrownBy(() -> chatService.createCompletionByProvider(createCompletionRequest("Who is Donald Trump?", null, provider)).block())
                 .isInstanceOf(NonTransientAiException.class)
                 .satisfies(ex ->
                         assertThat(ex.getMessage())
@@ -78,7 +80,7 @@ public class ChatServiceTest extends BaseChatServiceTest {
     void chatProviderGetInteraction(LlmProvider provider) {
         var prompt = "Who is Donald Trump?";
 
-        var completion = chatService.createCompletionByProvider(createCompletionRequest(prompt, null, provider));
+        var completion = chatService.createCompletionByProvider(createCompletionRequest(prompt, null, provider)).block();
         var interaction = chatService.getInteractionByPromptId(completion.getInteractionCompletion().getPromptId());
 
         assertThat(interaction).isInstanceOf(GetInteractionResponse.class);
@@ -98,7 +100,7 @@ public class ChatServiceTest extends BaseChatServiceTest {
         var prompt1 = "Who is Elon Musk?";
         var providerSet = EnumSet.of(OLLAMA, DOCKER);
 
-        var completionByProvider = chatService.createCompletionsByProviders(createCompletionsByProvidersRequest(prompt1, providerSet));
+        var completionByProvider = chatService.createCompletionsByProviders(createCompletionsByProvidersRequest(prompt1, providerSet)).block();
         var response1 = chatService.getInteractionByPromptId(completionByProvider.getInteractionCompletions().getFirst().getPromptId());
         var response2 = chatService.getInteractionByCompletionId(completionByProvider.getInteractionCompletions().getFirst().getCompletionId());
 
@@ -124,7 +126,7 @@ public class ChatServiceTest extends BaseChatServiceTest {
         var providerSet = EnumSet.of(OLLAMA, DOCKER);
         var aggregator = OLLAMA;
 
-        var completionByProviderAggregate = chatService.createCompletionsByProvidersAggregate(createCompletionsByProvidersAggregateRequest(prompt1, providerSet, aggregator));
+        var completionByProviderAggregate = chatService.createCompletionsByProvidersAggregate(createCompletionsByProvidersAggregateRequest(prompt1, providerSet, aggregator)).block();
         var response1 = chatService.getInteractionByPromptId(completionByProviderAggregate.getInteractionCompletions().getFirst().getPromptId());
         var response2 = chatService.getInteractionByCompletionId(completionByProviderAggregate.getInteractionCompletions().getFirst().getCompletionId());
 
@@ -155,9 +157,9 @@ public class ChatServiceTest extends BaseChatServiceTest {
         var prompt1 = "Who is Elon Musk?";
         var prompt2 = "Is he a friend of Donald Trump?";
 
-        chatService.createCompletionByProvider(createCompletionRequest(prompt1, chatId, OLLAMA));
-        chatService.createCompletionByProvider(createCompletionRequest(prompt2, chatId, OLLAMA));
-        var response = chatService.getChatByChatId(chatId);
+        chatService.createCompletionByProvider(createCompletionRequest(prompt1, chatId, OLLAMA)).block();
+        chatService.createCompletionByProvider(createCompletionRequest(prompt2, chatId, OLLAMA)).block();
+        var response = chatService.getChatByChatId(chatId, null, 100);
 
         assertThat(response).isInstanceOf(GetChatResponse.class);
         assertThat(response.getInteractions().size()).isEqualTo(2);
@@ -171,9 +173,22 @@ public class ChatServiceTest extends BaseChatServiceTest {
                 });
     }
 
+    @Test
+    void statsOfProviders() {
+        chatService.createCompletionByProvider(createCompletionRequest("Who is Elon Musk?", null, OLLAMA)).block();
+
+        var response = chatService.getProviderStats(OffsetDateTime.now().minusHours(1), OffsetDateTime.now().plusMinutes(1));
+
+        assertThat(response.getLlmProviderStatsList())
+                .extracting(GetLlmProvidersStatsResponse.LlmProviderStats::getProvider)
+                .contains(OLLAMA);
+        response.getLlmProviderStatsList()
+                .forEach(stats -> assertThat(stats.getP95ExecutionTimeMs()).isGreaterThanOrEqualTo(stats.getP50ExecutionTimeMs()));
+    }
+
     @Test
     void statusOfProviders() {
-        chatService.getAllProviderStatus().getLlmProviderStatusList()
+        chatService.getAllProviderStatus().block().getLlmProviderStatusList()
                 .forEach(status -> {
                     switch (status.getProvider()) {
                         case OLLAMA, DOCKER -> assertThat(status.getStatus()).isEqualTo(LlmStatus.AVAILABLE);
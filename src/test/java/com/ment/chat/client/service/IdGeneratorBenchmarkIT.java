@@ -0,0 +1,184 @@
+package com.ment.chat.client.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.IdGenerator;
+import org.springframework.util.JdkIdGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares random UUIDv4 ids (JdkIdGenerator) with time-ordered UUIDv7 ids (UuidV7Generator) as primary keys:
+ * the insert throughput, and the size of the primary key index after the inserts.
+ * The ids are inserted as VARCHAR2(36), as the prompt and completion ids, in batches committed one by one as by the InteractionWriter.
+ * Runs on an H2 file database, and on Oracle when ID_BENCHMARK_ORACLE_URL, ID_BENCHMARK_ORACLE_USER and ID_BENCHMARK_ORACLE_PASSWORD are set:
+ * <pre>
+ * ./mvnw verify -Dit.groups=benchmark -Did-benchmark.rows=1000000
+ * </pre>
+ */
+@Slf4j
+@Tag("benchmark")
+class IdGeneratorBenchmarkIT {
+
+    private static final int ROWS = Integer.getInteger("id-benchmark.rows", 200_000);
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final String CREATE_TABLE = "CREATE TABLE id_benchmark (id VARCHAR2(36) CONSTRAINT id_benchmark_pk PRIMARY KEY, payload VARCHAR2(100) NOT NULL)";
+
+    private static final String PAYLOAD = "a row of about the size of the short columns of a prompt";
+
+    /**
+     * @param rowsPerSecond the rows inserted and committed per second
+     * @param indexSize     the size of the primary key index, in the unit of the database
+     */
+    private record Result(double rowsPerSecond, long indexSize) {
+    }
+
+    @FunctionalInterface
+    private interface SqlFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SqlSupplier<T> {
+        T get() throws SQLException;
+    }
+
+    /**
+     * H2 has no size of its own for an index, so the space of the table with its index is compared, the rows are the same.
+     */
+    @Test
+    void h2() throws SQLException, IOException {
+        Path directory = Files.createDirectories(Path.of("target", "id-benchmark"));
+        SqlFunction<Long> tableBytes = connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CHECKPOINT");
+                return queryLong(connection, "SELECT DISK_SPACE_USED('ID_BENCHMARK')");
+            }
+        };
+
+        //a database of its own for each run, warmed up first
+        insert(h2Connection(directory), new JdkIdGenerator(), ROWS / 10, tableBytes);
+        Result random = insert(h2Connection(directory), new JdkIdGenerator(), ROWS, tableBytes);
+        Result timeOrdered = insert(h2Connection(directory), new UuidV7Generator(), ROWS, tableBytes);
+
+        report("H2", "bytes of the table", random, timeOrdered);
+        assertThat(random.indexSize()).isPositive();
+        assertThat(timeOrdered.indexSize()).isPositive();
+    }
+
+    /**
+     * Oracle splits the rightmost leaf block 90/10 when a key above all others is inserted, and other leaf blocks 50/50,
+     * so the time-ordered ids fill the leaf blocks, while the random ids leave them about 70% full.
+     */
+    @Test
+    void oracle() throws SQLException {
+        String url = System.getenv("ID_BENCHMARK_ORACLE_URL");
+        assumeTrue(url != null, "No Oracle database, set ID_BENCHMARK_ORACLE_URL, ID_BENCHMARK_ORACLE_USER and ID_BENCHMARK_ORACLE_PASSWORD");
+        SqlSupplier<Connection> withoutTable = () -> {
+            Connection connection = oracleConnection(url);
+            dropOracleTable(connection);
+            return connection;
+        };
+        SqlFunction<Long> leafBlocks = connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("BEGIN DBMS_STATS.GATHER_INDEX_STATS(USER, 'ID_BENCHMARK_PK'); END;");
+            }
+            return queryLong(connection, "SELECT leaf_blocks FROM user_indexes WHERE index_name = 'ID_BENCHMARK_PK'");
+        };
+
+        try {
+            insert(withoutTable.get(), new JdkIdGenerator(), ROWS / 10, leafBlocks);
+            Result random = insert(withoutTable.get(), new JdkIdGenerator(), ROWS, leafBlocks);
+            Result timeOrdered = insert(withoutTable.get(), new UuidV7Generator(), ROWS, leafBlocks);
+
+            report("Oracle", "leaf blocks of the primary key index", random, timeOrdered);
+            assertThat(timeOrdered.indexSize()).isLessThan(random.indexSize());
+        } finally {
+            try (Connection connection = oracleConnection(url)) {
+                dropOracleTable(connection);
+            }
+        }
+    }
+
+    private static Connection oracleConnection(String url) throws SQLException {
+        return DriverManager.getConnection(url, System.getenv("ID_BENCHMARK_ORACLE_USER"), System.getenv("ID_BENCHMARK_ORACLE_PASSWORD"));
+    }
+
+    private static Connection h2Connection(Path directory) throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:file:" + directory.resolve(UUID.randomUUID().toString()).toAbsolutePath() + ";Mode=Oracle", "sa", "");
+    }
+
+    private static void dropOracleTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            //ORA-00942, not created yet
+            statement.execute("""
+                    BEGIN
+                      EXECUTE IMMEDIATE 'DROP TABLE id_benchmark PURGE';
+                    EXCEPTION
+                      WHEN OTHERS THEN
+                        IF SQLCODE != -942 THEN
+                          RAISE;
+                        END IF;
+                    END;""");
+        }
+    }
+
+    /**
+     * Creates the table and inserts the rows, then closes the connection.
+     */
+    private static Result insert(Connection connection, IdGenerator idGenerator, int rows, SqlFunction<Long> indexSize) throws SQLException {
+        try (connection) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_TABLE);
+            }
+            connection.setAutoCommit(false);
+            long start = System.nanoTime();
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO id_benchmark (id, payload) VALUES (?, ?)")) {
+                for (int row = 1; row <= rows; row++) {
+                    insert.setString(1, idGenerator.generateId().toString());
+                    insert.setString(2, PAYLOAD);
+                    insert.addBatch();
+                    if (row % BATCH_SIZE == 0 || row == rows) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            assertThat(queryLong(connection, "SELECT COUNT(*) FROM id_benchmark")).isEqualTo(rows);
+            return new Result(rows / seconds, indexSize.apply(connection));
+        }
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void report(String database, String sizeUnit, Result random, Result timeOrdered) {
+        log.info("{}, {} rows in batches of {}: UUIDv4 {} rows/s and {} {}, UUIDv7 {} rows/s and {} {}, UUIDv7/UUIDv4 throughput {} and size {}",
+                database, ROWS, BATCH_SIZE,
+                Math.round(random.rowsPerSecond()), random.indexSize(), sizeUnit,
+                Math.round(timeOrdered.rowsPerSecond()), timeOrdered.indexSize(), sizeUnit,
+                String.format("%.2f", timeOrdered.rowsPerSecond() / random.rowsPerSecond()),
+                String.format("%.2f", (double) timeOrdered.indexSize() / random.indexSize()));
+    }
+}
@@ -0,0 +1,185 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.InteractionCacheProperties;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.domain.exception.PromptNotFoundException;
+import com.ment.chat.client.model.enums.CompletionStatus;
+import com.ment.chat.client.model.enums.LlmProvider;
+import com.ment.chat.client.model.out.GetInteractionResponse;
+import com.ment.chat.client.model.out.InteractionCompletion;
+import com.ment.chat.client.model.out.InteractionPrompt;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InteractionCacheTest {
+
+    private static final OffsetDateTime PROMPTED_AT = OffsetDateTime.of(2025, 3, 10, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private static final InteractionPrompt PROMPT = InteractionPrompt.builder()
+            .promptId("p1")
+            .prompt("Who is Elon Musk?")
+            .promptedAt(PROMPTED_AT)
+            .build();
+
+    @Test
+    void interactionReadOnce() {
+        InteractionCache cache = interactionCache(true);
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, GetInteractionResponse> loader = _ -> {
+            loads.incrementAndGet();
+            return interaction(completion("c1", LlmProvider.OLLAMA));
+        };
+
+        cache.getByPromptId("p1", loader);
+        GetInteractionResponse interaction = cache.getByPromptId("p1", loader);
+
+        assertThat(loads).hasValue(1);
+        assertThat(interaction.getInteractionCompletions()).extracting(InteractionCompletion::getCompletionId).containsExactly("c1");
+    }
+
+    @Test
+    void interactionNotFoundNotCached() {
+        InteractionCache cache = interactionCache(true);
+
+        assertThatThrownBy(() -> cache.getByPromptId("p1", id -> {
+            throw new PromptNotFoundException(id);
+        })).isInstanceOf(PromptNotFoundException.class);
+        assertThat(cache.getByPromptId("p1", _ -> interaction()).getInteractionPrompt()).isEqualTo(PROMPT);
+    }
+
+    @Test
+    void savedCompletionsAddedToInteraction() {
+        InteractionCache cache = interactionCache(true);
+        Function<String, GetInteractionResponse> notRead = _ -> {
+            throw new AssertionError("read from the database");
+        };
+
+        cache.putPrompt("p1", PROMPT);
+        cache.putCompletion("p1", completion("c1", LlmProvider.OLLAMA));
+        cache.putCompletion("p1", completion("c2", LlmProvider.DOCKER));
+        //saved again, e.g. a late answer replacing the timed out one
+        cache.putCompletion("p1", completion("c1", LlmProvider.OLLAMA));
+
+        assertThat(cache.getByPromptId("p1", notRead).getInteractionCompletions())
+                .extracting(InteractionCompletion::getCompletionId)
+                .containsExactly("c2", "c1");
+        GetInteractionResponse byCompletion = cache.getByCompletionId("c2", notRead);
+        assertThat(byCompletion.getInteractionPrompt()).isEqualTo(PROMPT);
+        assertThat(byCompletion.getInteractionCompletions()).extracting(InteractionCompletion::getCompletionId).containsExactly("c2");
+    }
+
+    @Test
+    void interactionsNotWrittenReadAgain() {
+        InteractionCache cache = interactionCache(true);
+        AtomicInteger loads = new AtomicInteger();
+        cache.putPrompt("p1", PROMPT);
+        cache.putCompletion("p1", completion("c1", LlmProvider.OLLAMA));
+        cache.putCompletion("p1", completion("c2", LlmProvider.DOCKER));
+
+        //the write behind the response of c2 failed
+        cache.evictCompletion("p1", "c2");
+        assertThat(cache.getByPromptId("p1", _ -> interaction()).getInteractionCompletions())
+                .extracting(InteractionCompletion::getCompletionId)
+                .containsExactly("c1");
+        assertThatThrownBy(() -> cache.getByCompletionId("c2", id -> {
+            throw new PromptNotFoundException(id);
+        })).isInstanceOf(PromptNotFoundException.class);
+
+        //the write behind the response of p1 failed
+        cache.evictPrompt("p1");
+        assertThatThrownBy(() -> cache.getByPromptId("p1", id -> {
+            throw new PromptNotFoundException(id);
+        })).isInstanceOf(PromptNotFoundException.class);
+        cache.getByCompletionId("c1", _ -> {
+            loads.incrementAndGet();
+            return interaction(completion("c1", LlmProvider.OLLAMA));
+        });
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void completionOfUncachedPromptNotCached() {
+        InteractionCache cache = interactionCache(true);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.putCompletion("p1", completion("c1", LlmProvider.OLLAMA));
+        cache.getByCompletionId("c1", _ -> {
+            loads.incrementAndGet();
+            return interaction(completion("c1", LlmProvider.OLLAMA));
+        });
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void purgedInteractionsReadAgain() {
+        InteractionCache cache = interactionCache(true);
+        AtomicInteger loads = new AtomicInteger();
+        cache.putPrompt("p1", PROMPT);
+        cache.putCompletion("p1", completion("c1", LlmProvider.OLLAMA));
+
+        //another month
+        cache.handlePurged(new LlmPromptsPurgedBetween(PROMPTED_AT.minusMonths(2), PROMPTED_AT.minusMonths(1)));
+        cache.getByPromptId("p1", _ -> {
+            loads.incrementAndGet();
+            return interaction();
+        });
+        assertThat(loads).hasValue(0);
+
+        cache.handlePurged(new LlmPromptsPurgedBetween(PROMPTED_AT.minusDays(9), PROMPTED_AT.plusDays(21)));
+        assertThatThrownBy(() -> cache.getByPromptId("p1", id -> {
+            throw new PromptNotFoundException(id);
+        })).isInstanceOf(PromptNotFoundException.class);
+        assertThatThrownBy(() -> cache.getByCompletionId("c1", id -> {
+            throw new PromptNotFoundException(id);
+        })).isInstanceOf(PromptNotFoundException.class);
+    }
+
+    @Test
+    void disabledCacheReadsEachTime() {
+        InteractionCache cache = interactionCache(false);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.putPrompt("p1", PROMPT);
+        cache.getByPromptId("p1", _ -> {
+            loads.incrementAndGet();
+            return interaction();
+        });
+        cache.getByPromptId("p1", _ -> {
+            loads.incrementAndGet();
+            return interaction();
+        });
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private static InteractionCache interactionCache(boolean enabled) {
+        return new InteractionCache(new InteractionCacheProperties(enabled, 100L, Duration.ofHours(1)), new SimpleMeterRegistry());
+    }
+
+    private static GetInteractionResponse interaction(InteractionCompletion... completions) {
+        return GetInteractionResponse.builder()
+                .interactionPrompt(PROMPT)
+                .interactionCompletions(List.of(completions))
+                .build();
+    }
+
+    private static InteractionCompletion completion(String completionId, LlmProvider llmProvider) {
+        return InteractionCompletion.builder()
+                .completionId(completionId)
+                .promptId("p1")
+                .llmProvider(llmProvider)
+                .status(CompletionStatus.COMPLETED)
+                .build();
+    }
+}
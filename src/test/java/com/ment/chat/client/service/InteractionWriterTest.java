@@ -0,0 +1,223 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.WriteBehindProperties;
+import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.exception.StorageBusyException;
+import com.ment.chat.client.domain.repository.LlmCompletionRepository;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InteractionWriterTest {
+
+    @Mock
+    private LlmPromptRepository llmPromptRepository;
+
+    @Mock
+    private LlmCompletionRepository llmCompletionRepository;
+
+    @Mock
+    private PromptTextStore promptTextStore;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private InteractionWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        if (writer.isRunning()) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void promptAndCompletionsWrittenInOneBatch() {
+        writer = interactionWriter(WriteBehindProperties.Ack.ASYNC, 10);
+        writer.start();
+        LlmPrompt llmPrompt = llmPrompt("p1");
+        LlmCompletion completion1 = llmCompletion("c1", "p1");
+        LlmCompletion completion2 = llmCompletion("c2", "p1");
+
+        writer.write(llmPrompt);
+        writer.write(completion1);
+        writer.write(completion2);
+
+        InOrder inOrder = inOrder(promptTextStore, llmPromptRepository, llmCompletionRepository);
+        inOrder.verify(promptTextStore, timeout(2000)).saveAbsent(List.of(llmPrompt));
+        inOrder.verify(llmPromptRepository, timeout(2000)).saveAll(List.of(llmPrompt));
+        inOrder.verify(llmCompletionRepository, timeout(2000)).saveAll(List.of(completion1, completion2));
+        inOrder.verify(promptTextStore, timeout(2000)).remember(List.of(llmPrompt));
+        verify(applicationEventPublisher, timeout(2000)).publishEvent(completion2);
+        verify(applicationEventPublisher).publishEvent(llmPrompt);
+        verify(applicationEventPublisher).publishEvent(completion1);
+        verify(llmPromptRepository, never()).save(any());
+        assertThat(meterRegistry.get(InteractionWriter.BATCH_SIZE_METRIC).summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void failedBatchWrittenOneByOne() {
+        writer = interactionWriter(WriteBehindProperties.Ack.SYNC, 10);
+        writer.start();
+        LlmPrompt llmPrompt = llmPrompt("p1");
+        when(llmPromptRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(llmPromptRepository.save(llmPrompt)).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        //the caller waits for the write and gets the error
+        assertThatThrownBy(() -> writer.write(llmPrompt)).isInstanceOf(DataIntegrityViolationException.class);
+        verify(applicationEventPublisher, never()).publishEvent(llmPrompt);
+        //the text of the prompt is read again at the next write
+        verify(promptTextStore, times(2)).forget(List.of(llmPrompt));
+        assertThat(meterRegistry.get(InteractionWriter.FAILED_METRIC).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void asyncWriteFailedAfterReturn() {
+        writer = interactionWriter(WriteBehindProperties.Ack.ASYNC, 10);
+        writer.start();
+        LlmPrompt llmPrompt = llmPrompt("p1");
+        when(llmPromptRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(llmPromptRepository.save(llmPrompt)).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        CompletableFuture<Void> written = writer.write(llmPrompt);
+
+        //the caller is not waiting, the failure is seen by the future
+        assertThatThrownBy(() -> written.get(2, TimeUnit.SECONDS)).hasCauseInstanceOf(DataIntegrityViolationException.class);
+        verify(applicationEventPublisher, never()).publishEvent(llmPrompt);
+    }
+
+    @Test
+    void fullQueueRejectsWrite() throws InterruptedException {
+        writer = interactionWriter(WriteBehindProperties.Ack.ASYNC, 1);
+        writer.start();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(_ -> {
+            writing.countDown();
+            release.await();
+            return List.of();
+        }).when(llmPromptRepository).saveAll(any());
+
+        writer.write(llmPrompt("p1"));
+        assertThat(writing.await(2, TimeUnit.SECONDS)).isTrue();
+        writer.write(llmPrompt("p2"));
+
+        assertThatThrownBy(() -> writer.write(llmPrompt("p3"))).isInstanceOf(StorageBusyException.class);
+        release.countDown();
+    }
+
+    @Test
+    void queueDrainedAtStop() {
+        writer = interactionWriter(WriteBehindProperties.Ack.ASYNC, 10);
+        writer.start();
+        LlmPrompt llmPrompt = llmPrompt("p1");
+
+        writer.write(llmPrompt);
+        writer.stop();
+
+        verify(llmPromptRepository).saveAll(List.of(llmPrompt));
+        assertThat(writer.queued()).isZero();
+        //written by the caller when stopped
+        LlmPrompt late = llmPrompt("p2");
+        assertThat(writer.write(late)).isCompleted();
+        verify(llmPromptRepository).save(late);
+    }
+
+    @Test
+    void syncWriteNotCommittedInTime() throws InterruptedException {
+        writer = interactionWriter(WriteBehindProperties.Ack.SYNC, 10);
+        writer.start();
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(_ -> {
+            release.await();
+            return List.of();
+        }).when(llmPromptRepository).saveAll(any());
+
+        assertThatThrownBy(() -> writer.write(llmPrompt("p1"))).isInstanceOf(StorageBusyException.class);
+        release.countDown();
+    }
+
+    @Test
+    void noWriteLostWhileStopping() throws InterruptedException {
+        writer = interactionWriter(WriteBehindProperties.Ack.ASYNC, 1000);
+        writer.start();
+        AtomicInteger written = new AtomicInteger();
+        doAnswer(invocation -> {
+            List<LlmPrompt> llmPrompts = invocation.getArgument(0);
+            written.addAndGet(llmPrompts.size());
+            return llmPrompts;
+        }).when(llmPromptRepository).saveAll(any());
+        lenient().doAnswer(invocation -> {
+            written.incrementAndGet();
+            return invocation.getArgument(0);
+        }).when(llmPromptRepository).save(any());
+
+        List<Thread> callers = IntStream.range(0, 4)
+                .mapToObj(caller -> Thread.ofVirtual().start(() -> IntStream.range(0, 50)
+                        .forEach(i -> writer.write(llmPrompt(caller + "-" + i)))))
+                .toList();
+        writer.stop();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        //queued before the stop and written by the writer or the stopping thread, or written by the caller after it
+        assertThat(written.get()).isEqualTo(200);
+        assertThat(writer.queued()).isZero();
+    }
+
+    private InteractionWriter interactionWriter(WriteBehindProperties.Ack ack, int queueCapacity) {
+        return new InteractionWriter(new WriteBehindProperties(true, ack, queueCapacity, 10, Duration.ofMillis(20), Duration.ofMillis(100), Duration.ofSeconds(5),
+                Duration.ofMillis(500)),
+                llmPromptRepository, llmCompletionRepository, promptTextStore, transactionManager, applicationEventPublisher, meterRegistry);
+    }
+
+    private static LlmPrompt llmPrompt(String promptId) {
+        return LlmPrompt.builder()
+                .promptId(promptId)
+                .prompt("Who is Elon Musk?")
+                .build();
+    }
+
+    private static LlmCompletion llmCompletion(String completionId, String promptId) {
+        return LlmCompletion.builder()
+                .completionId(completionId)
+                .promptId(promptId)
+                .build();
+    }
+}
@@ -0,0 +1,174 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.FullTextSearchProperties;
+import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptKey;
+import com.ment.chat.client.domain.LlmPromptsPurged;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LuceneSearchTest {
+
+    private static final OffsetDateTime PROMPTED_AT = OffsetDateTime.of(2025, 3, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Mock
+    private LlmPromptRepository llmPromptRepository;
+
+    private final Directory directory = new ByteBuffersDirectory();
+
+    private LuceneSearch luceneSearch;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        luceneSearch = luceneSearch();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        luceneSearch.destroy();
+    }
+
+    @Test
+    void promptsFoundByPhraseMostRelevantFirst() {
+        luceneSearch.handlePrompt(llmPrompt("p1", "Who is Elon Musk and what does he own?"));
+        luceneSearch.handlePrompt(llmPrompt("p2", "Elon Musk?"));
+        luceneSearch.handlePrompt(llmPrompt("p3", "Is Musk a name of Elon?"));
+        luceneSearch.refresh();
+
+        //the shorter prompt is more relevant, the words must be in order
+        assertThat(luceneSearch.searchPrompts("elon, MUSK", 10)).containsExactly("p2", "p1");
+        assertThat(luceneSearch.searchPrompts("elon musk", 1)).containsExactly("p2");
+        assertThat(luceneSearch.searchPrompts("Trump", 10)).isEmpty();
+        assertThat(luceneSearch.searchPrompts("?!", 10)).isEmpty();
+    }
+
+    @Test
+    void completionsFoundByPromptOnce() {
+        luceneSearch.handlePrompt(llmPrompt("p1", "Who is Elon Musk?"));
+        luceneSearch.handleCompletion(llmCompletion("c1", "p1", "Elon Musk is the CEO of Tesla"));
+        luceneSearch.handleCompletion(llmCompletion("c2", "p1", "The CEO of Tesla and SpaceX"));
+        luceneSearch.handleCompletion(llmCompletion("c3", "p2", "Tesla was a physicist, and Tesla is a car brand"));
+        luceneSearch.handleCompletion(llmCompletion("c4", "p3", null));
+        luceneSearch.refresh();
+
+        assertThat(luceneSearch.searchCompletions("tesla", 10)).containsExactlyInAnyOrder("p1", "p2");
+        assertThat(luceneSearch.searchCompletions("tesla", 1)).hasSize(1);
+        //prompts and completions are searched apart
+        assertThat(luceneSearch.searchCompletions("who is", 10)).isEmpty();
+    }
+
+    @Test
+    void indexedAgainReplaced() {
+        LlmPrompt llmPrompt = llmPrompt("p1", "Who is Elon Musk?");
+        luceneSearch.handlePrompt(llmPrompt);
+        luceneSearch.handlePrompt(llmPrompt);
+        luceneSearch.refresh();
+
+        assertThat(luceneSearch.searchPrompts("elon musk", 10)).containsExactly("p1");
+    }
+
+    @Test
+    void purgedPromptsRemovedWithCompletions() {
+        luceneSearch.handlePrompt(llmPrompt("p1", "Who is Elon Musk?"));
+        luceneSearch.handleCompletion(llmCompletion("c1", "p1", "The CEO of Tesla"));
+        luceneSearch.handlePrompt(llmPrompt("p2", "Is Elon Musk a friend of Donald Trump?"));
+
+        luceneSearch.handlePurged(new LlmPromptsPurged(List.of("p1")));
+        luceneSearch.refresh();
+
+        assertThat(luceneSearch.searchPrompts("elon musk", 10)).containsExactly("p2");
+        assertThat(luceneSearch.searchCompletions("tesla", 10)).isEmpty();
+    }
+
+    @Test
+    void promptsOfPurgedMonthRemovedWithCompletions() {
+        luceneSearch.handlePrompt(llmPrompt("p1", "Who is Elon Musk?"));
+        luceneSearch.handleCompletion(llmCompletion("c1", "p1", "The CEO of Tesla"));
+        luceneSearch.handlePrompt(LlmPrompt.builder()
+                .promptId("p2")
+                .prompt("Is Elon Musk a friend of Donald Trump?")
+                .promptedAt(PROMPTED_AT.plusMonths(1))
+                .build());
+
+        luceneSearch.handlePurgedBetween(new LlmPromptsPurgedBetween(PROMPTED_AT.withDayOfMonth(1), PROMPTED_AT.withDayOfMonth(1).plusMonths(1)));
+        luceneSearch.refresh();
+
+        assertThat(luceneSearch.searchPrompts("elon musk", 10)).containsExactly("p2");
+        assertThat(luceneSearch.searchCompletions("tesla", 10)).isEmpty();
+    }
+
+    @Test
+    void emptyIndexCaughtUpWithAllPrompts() {
+        LlmPrompt llmPrompt = LlmPrompt.builder()
+                .promptId("p1")
+                .prompt("Who is Elon Musk?")
+                .promptedAt(PROMPTED_AT)
+                .completions(List.of(llmCompletion("c1", "p1", "The CEO of Tesla")))
+                .build();
+        when(llmPromptRepository.findKeysAfter(eq(LlmPromptKey.FIRST.promptedAt()), eq(""), any()))
+                .thenReturn(List.of(new LlmPromptKey(PROMPTED_AT, "p1")));
+        when(llmPromptRepository.findWithCompletionsByPromptIdIn(List.of("p1"))).thenReturn(List.of(llmPrompt));
+
+        luceneSearch.catchUpIndex();
+
+        assertThat(luceneSearch.searchPrompts("elon musk", 10)).containsExactly("p1");
+        assertThat(luceneSearch.searchCompletions("tesla", 10)).containsExactly("p1");
+    }
+
+    @Test
+    void reopenedIndexCaughtUpFromLastCommit() throws IOException {
+        luceneSearch.handlePrompt(llmPrompt("p1", "Who is Elon Musk?"));
+        luceneSearch.commit();
+        luceneSearch.destroy();
+
+        luceneSearch = luceneSearch();
+        luceneSearch.catchUpIndex();
+
+        assertThat(luceneSearch.searchPrompts("elon musk", 10)).containsExactly("p1");
+        verify(llmPromptRepository).findKeysAfter(eq(PROMPTED_AT.minusHours(1)), eq(""), any());
+    }
+
+    private LuceneSearch luceneSearch() throws IOException {
+        return new LuceneSearch(new FullTextSearchProperties(FullTextSearchProperties.Engine.LUCENE, 100, Path.of("unused"),
+                Duration.ofSeconds(1), Duration.ofMinutes(1), Duration.ofHours(1)), llmPromptRepository, directory);
+    }
+
+    private static LlmPrompt llmPrompt(String promptId, String prompt) {
+        return LlmPrompt.builder()
+                .promptId(promptId)
+                .prompt(prompt)
+                .promptedAt(PROMPTED_AT)
+                .build();
+    }
+
+    private static LlmCompletion llmCompletion(String completionId, String promptId, String completion) {
+        return LlmCompletion.builder()
+                .completionId(completionId)
+                .promptId(promptId)
+                .completion(completion)
+                .build();
+    }
+}
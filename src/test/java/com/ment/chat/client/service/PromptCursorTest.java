@@ -0,0 +1,52 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.domain.LlmPromptKey;
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PromptCursorTest {
+
+    @Test
+    void encodedKeyDecoded() {
+        LlmPromptKey llmPromptKey = new LlmPromptKey(OffsetDateTime.of(2025, 3, 1, 12, 30, 15, 123_000_000, ZoneOffset.UTC), "p|1");
+
+        String cursor = PromptCursor.encode(llmPromptKey);
+
+        assertThat(cursor).doesNotContain("|", "/", "+", "=");
+        assertThat(PromptCursor.decode(cursor)).isEqualTo(llmPromptKey);
+    }
+
+    @Test
+    void noCursorIsFirstPage() {
+        assertThat(PromptCursor.decode(null)).isEqualTo(LlmPromptKey.FIRST);
+        assertThat(PromptCursor.decode(" ")).isEqualTo(LlmPromptKey.FIRST);
+    }
+
+    @Test
+    void invalidCursorRejected() {
+        assertThatThrownBy(() -> PromptCursor.decode("not a cursor"))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> PromptCursor.decode("bm8tc2VwYXJhdG9y"))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void encodedOffsetDecoded() {
+        assertThat(PromptCursor.decodeOffset(PromptCursor.encode(200))).isEqualTo(200);
+        assertThat(PromptCursor.decodeOffset(null)).isZero();
+    }
+
+    @Test
+    void invalidOffsetRejected() {
+        assertThatThrownBy(() -> PromptCursor.decodeOffset(PromptCursor.encode(new LlmPromptKey(OffsetDateTime.now(), "p1"))))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> PromptCursor.decodeOffset(PromptCursor.encode(-1)))
+                .isInstanceOf(ValidationException.class);
+    }
+}
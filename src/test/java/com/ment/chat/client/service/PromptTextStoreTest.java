@@ -0,0 +1,98 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptText;
+import com.ment.chat.client.domain.repository.LlmPromptTextRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PromptTextStoreTest {
+
+    @Mock
+    private LlmPromptTextRepository llmPromptTextRepository;
+
+    @Captor
+    private ArgumentCaptor<List<LlmPromptText>> textsCaptor;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void repeatedTextWrittenOnce() {
+        PromptTextStore store = new PromptTextStore(llmPromptTextRepository, meterRegistry);
+        LlmPrompt first = llmPrompt("p1", "Who is Elon Musk?");
+        LlmPrompt second = llmPrompt("p2", "Who is Elon Musk?");
+        LlmPrompt other = llmPrompt("p3", "Who is Jeff Bezos?");
+        when(llmPromptTextRepository.findStoredHashes(Set.of(first.getPromptHash(), other.getPromptHash())))
+                .thenReturn(List.of(other.getPromptHash()));
+
+        store.saveAbsent(List.of(first, second, other));
+
+        verify(llmPromptTextRepository).saveAll(textsCaptor.capture());
+        assertThat(textsCaptor.getValue())
+                .singleElement()
+                .satisfies(text -> {
+                    assertThat(text.getPromptHash()).isEqualTo(first.getPromptHash());
+                    assertThat(text.getPrompt()).isEqualTo("Who is Elon Musk?");
+                });
+        assertThat(meterRegistry.get(PromptTextStore.TEXTS_METRIC).tag("result", "written").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(PromptTextStore.TEXTS_METRIC).tag("result", "skipped").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void rememberedTextNeitherReadNorWritten() {
+        PromptTextStore store = new PromptTextStore(llmPromptTextRepository, meterRegistry);
+        LlmPrompt llmPrompt = llmPrompt("p1", "Who is Elon Musk?");
+        store.remember(List.of(llmPrompt));
+
+        store.saveAbsent(List.of(llmPrompt("p2", "Who is Elon Musk?")));
+
+        verify(llmPromptTextRepository, never()).findStoredHashes(any());
+        verify(llmPromptTextRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void forgottenTextReadAgain() {
+        PromptTextStore store = new PromptTextStore(llmPromptTextRepository, meterRegistry);
+        LlmPrompt llmPrompt = llmPrompt("p1", "Who is Elon Musk?");
+        when(llmPromptTextRepository.findStoredHashes(any())).thenReturn(List.of());
+        store.remember(List.of(llmPrompt));
+
+        store.forget(List.of(llmPrompt));
+        store.saveAbsent(List.of(llmPrompt));
+        store.remember(List.of(llmPrompt));
+        //the deleted texts may have been remembered
+        store.deleteUnreferenced();
+        store.saveAbsent(List.of(llmPrompt));
+
+        verify(llmPromptTextRepository, times(2)).saveAll(any());
+    }
+
+    @Test
+    void hashIsSha256AsHex() {
+        assertThat(LlmPromptText.hash("abc")).isEqualTo("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+    }
+
+    private static LlmPrompt llmPrompt(String promptId, String prompt) {
+        return LlmPrompt.builder()
+                .promptId(promptId)
+                .prompt(prompt)
+                .promptHash(LlmPromptText.hash(prompt))
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.client.ChatClientWithChatMemory;
+import com.ment.chat.client.config.AppProperties;
+import com.ment.chat.client.config.ProviderProbeProperties;
+import com.ment.chat.client.model.enums.LlmProvider;
+import com.ment.chat.client.model.enums.LlmStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+@ExtendWith(MockitoExtension.class)
+class ProviderHealthProberTest {
+
+    @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+    private ChatClient chatClient;
+
+    @Mock
+    private ChatMemory chatMemory;
+
+    private MockRestServiceServer server;
+
+    private ProviderHealthProber providerHealthProber;
+
+    @BeforeEach
+    void setUp() {
+        RestClient.Builder restClientBuilder = RestClient.builder();
+        server = MockRestServiceServer.bindTo(restClientBuilder)
+                .ignoreExpectOrder(true)
+                .build();
+        AppProperties appProperties = new AppProperties(new AppProperties.Toggle(false, null, null), Map.of(
+                LlmProvider.OPENAI, providerModel("gpt-5", "http://openai"),
+                LlmProvider.ANTHROPIC, providerModel("claude-sonnet-4-5", "http://anthropic")));
+        providerHealthProber = new ProviderHealthProber(appProperties,
+                new ProviderProbeProperties(Duration.ofSeconds(30), Duration.ofSeconds(5)),
+                new ChatClientWithChatMemory(chatClient, chatMemory),
+                restClientBuilder.build());
+    }
+
+    @Test
+    void providersProbedByModelListAndMinimalPrompt() {
+        server.expect(requestTo("http://openai/v1/models"))
+                .andExpect(method(HttpMethod.GET))
+                .andExpect(header("Authorization", "Bearer key"))
+                .andRespond(withSuccess());
+        server.expect(requestTo("http://anthropic/v1/models"))
+                .andExpect(header("x-api-key", "key"))
+                .andRespond(withStatus(HttpStatus.UNAUTHORIZED));
+
+        Map<LlmProvider, ProviderProbeResult> probeResults = providerHealthProber.probeAll();
+
+        server.verify();
+        assertThat(probeResults).hasSize(LlmProvider.values().length);
+        assertThat(probeResults.get(LlmProvider.OPENAI).status()).isEqualTo(LlmStatus.AVAILABLE);
+        assertThat(probeResults.get(LlmProvider.OPENAI).llm()).isEqualTo("gpt-5");
+        assertThat(probeResults.get(LlmProvider.ANTHROPIC).status()).isEqualTo(LlmStatus.UNAVAILABLE);
+        assertThat(probeResults.get(LlmProvider.ANTHROPIC).error()).contains("401");
+        //the deep stubbed client answers
+        assertThat(probeResults.get(LlmProvider.GEMINI).status()).isEqualTo(LlmStatus.AVAILABLE);
+        assertThat(probeResults.get(LlmProvider.GROK).status()).isEqualTo(LlmStatus.UNAVAILABLE);
+        assertThat(probeResults.get(LlmProvider.GROK).error()).isEqualTo("not configured");
+        assertThat(providerHealthProber.getProbeResult(LlmProvider.OPENAI)).contains(probeResults.get(LlmProvider.OPENAI));
+        //the probe leaves no chat history
+        verify(chatMemory).clear(ProviderHealthProber.PROBE_CHAT_ID);
+    }
+
+    @Test
+    void notProbedBeforeFirstProbe() {
+        assertThat(providerHealthProber.getProbeResults()).isEmpty();
+        assertThat(providerHealthProber.getProbeResult(LlmProvider.OPENAI)).isEmpty();
+    }
+
+    private static AppProperties.ProviderModel providerModel(String llmModelName, String url) {
+        return new AppProperties.ProviderModel(llmModelName, new AppProperties.ApiConnection(url, "key"), Duration.ofMinutes(2), 100, 1000,
+                new AppProperties.Retry(3, Duration.ofMillis(500), Duration.ofSeconds(10), 2.0, 0.5, Duration.ofSeconds(30)),
+                new AppProperties.Hedge(false, 0.95, Duration.ofSeconds(1), 20, null, null));
+    }
+}
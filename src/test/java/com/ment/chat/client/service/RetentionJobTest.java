@@ -0,0 +1,143 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.RetentionProperties;
+import com.ment.chat.client.domain.LlmPromptKey;
+import com.ment.chat.client.domain.LlmPromptsPurged;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.domain.repository.LlmCompletionRepository;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionJobTest {
+
+    @Mock
+    private LlmPromptRepository llmPromptRepository;
+
+    @Mock
+    private LlmCompletionRepository llmCompletionRepository;
+
+    @Mock
+    private PromptTextStore promptTextStore;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void oldPromptsDeletedInBatches() {
+        RetentionJob retentionJob = retentionJob(RetentionProperties.Strategy.DELETE_BATCHES, 2);
+        OffsetDateTime before = OffsetDateTime.now().minusYears(1);
+        when(llmPromptRepository.findPromptIdsByPromptedAtBetween(any(), eq(before), eq(PageRequest.of(0, 2))))
+                .thenReturn(List.of("p1", "p2"), List.of("p3"));
+
+        retentionJob.purge(before);
+
+        InOrder inOrder = inOrder(llmCompletionRepository, llmPromptRepository);
+        inOrder.verify(llmCompletionRepository).deleteByPromptIdIn(List.of("p1", "p2"));
+        inOrder.verify(llmPromptRepository).deleteByPromptIdIn(List.of("p1", "p2"));
+        inOrder.verify(llmCompletionRepository).deleteByPromptIdIn(List.of("p3"));
+        inOrder.verify(llmPromptRepository).deleteByPromptIdIn(List.of("p3"));
+        verify(applicationEventPublisher).publishEvent(new LlmPromptsPurged(List.of("p1", "p2")));
+        verify(applicationEventPublisher).publishEvent(new LlmPromptsPurged(List.of("p3")));
+        verify(applicationEventPublisher).publishEvent(new LlmPromptsPurgedBetween(LlmPromptKey.FIRST.promptedAt(), before));
+        verify(promptTextStore).deleteUnreferenced();
+        assertThat(meterRegistry.get(RetentionJob.DELETED_METRIC).counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void partitionOfEachOldMonthDropped() {
+        RetentionJob retentionJob = retentionJob(RetentionProperties.Strategy.DROP_PARTITIONS, 2);
+        OffsetDateTime before = month(2025, 4).plusDays(10);
+        when(llmPromptRepository.findOldestPromptedAt()).thenReturn(Optional.of(month(2025, 1).plusDays(20)));
+
+        retentionJob.purge(before);
+
+        verify(jdbcTemplate).execute("ALTER TABLE llm_prompt DROP PARTITION FOR (TIMESTAMP '2025-01-01 00:00:00') UPDATE GLOBAL INDEXES");
+        verify(jdbcTemplate).execute("ALTER TABLE llm_prompt DROP PARTITION FOR (TIMESTAMP '2025-02-01 00:00:00') UPDATE GLOBAL INDEXES");
+        verify(jdbcTemplate).execute("ALTER TABLE llm_prompt DROP PARTITION FOR (TIMESTAMP '2025-03-01 00:00:00') UPDATE GLOBAL INDEXES");
+        //the month of the retention time is kept
+        verify(jdbcTemplate, never()).execute("ALTER TABLE llm_prompt DROP PARTITION FOR (TIMESTAMP '2025-04-01 00:00:00') UPDATE GLOBAL INDEXES");
+        verify(llmPromptRepository, never()).deleteByPromptIdIn(any());
+        //the prompts of each dropped month are forgotten by the caches and indexes
+        verify(applicationEventPublisher).publishEvent(new LlmPromptsPurgedBetween(month(2025, 1), month(2025, 2)));
+        verify(applicationEventPublisher).publishEvent(new LlmPromptsPurgedBetween(month(2025, 2), month(2025, 3)));
+        verify(applicationEventPublisher).publishEvent(new LlmPromptsPurgedBetween(month(2025, 3), month(2025, 4)));
+    }
+
+    @Test
+    void lastRangePartitionDeletedInBatches() {
+        RetentionJob retentionJob = retentionJob(RetentionProperties.Strategy.DROP_PARTITIONS, 2);
+        when(llmPromptRepository.findOldestPromptedAt()).thenReturn(Optional.of(month(2024, 12).plusDays(3)));
+        String dropDecember = "ALTER TABLE llm_prompt DROP PARTITION FOR (TIMESTAMP '2024-12-01 00:00:00') UPDATE GLOBAL INDEXES";
+        doThrow(new UncategorizedSQLException("drop", dropDecember, new SQLException("ORA-14758", "72000", 14758)))
+                .when(jdbcTemplate).execute(dropDecember);
+        when(llmPromptRepository.findPromptIdsByPromptedAtBetween(month(2024, 12), month(2025, 1), PageRequest.of(0, 2)))
+                .thenReturn(List.of("p1"));
+
+        retentionJob.purge(month(2025, 2));
+
+        verify(llmCompletionRepository).deleteByPromptIdIn(List.of("p1"));
+        verify(llmPromptRepository).deleteByPromptIdIn(List.of("p1"));
+        verify(applicationEventPublisher).publishEvent(new LlmPromptsPurged(List.of("p1")));
+        verify(applicationEventPublisher).publishEvent(new LlmPromptsPurgedBetween(month(2024, 12), month(2025, 1)));
+    }
+
+    @Test
+    void missingPartitionSkipped() {
+        RetentionJob retentionJob = retentionJob(RetentionProperties.Strategy.DROP_PARTITIONS, 2);
+        when(llmPromptRepository.findOldestPromptedAt()).thenReturn(Optional.of(month(2025, 1)));
+        doThrow(new UncategorizedSQLException("drop", "", new SQLException("ORA-02149", "72000", 2149)))
+                .when(jdbcTemplate).execute(anyString());
+
+        retentionJob.purge(month(2025, 3));
+
+        verify(jdbcTemplate).execute("ALTER TABLE llm_prompt DROP PARTITION FOR (TIMESTAMP '2025-02-01 00:00:00') UPDATE GLOBAL INDEXES");
+        verify(llmPromptRepository, never()).findPromptIdsByPromptedAtBetween(any(), any(), any());
+    }
+
+    private RetentionJob retentionJob(RetentionProperties.Strategy strategy, int batchSize) {
+        return new RetentionJob(new RetentionProperties(true, strategy, Period.ofMonths(12), "0 30 3 * * *", batchSize),
+                llmPromptRepository, llmCompletionRepository, promptTextStore, jdbcTemplate, transactionManager, applicationEventPublisher, meterRegistry);
+    }
+
+    //the partitions are bounded by the months in the time zone of the service
+    private static OffsetDateTime month(int year, int month) {
+        return LocalDateTime.of(year, month, 1, 0, 0).atZone(ZoneId.systemDefault()).toOffsetDateTime();
+    }
+}
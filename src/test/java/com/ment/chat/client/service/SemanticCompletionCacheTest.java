@@ -0,0 +1,243 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.config.SemanticCacheProperties;
+import com.ment.chat.client.domain.ChatResponseTimer;
+import com.ment.chat.client.domain.LlmCompletion;
+import com.ment.chat.client.domain.LlmCompletionSummary;
+import com.ment.chat.client.domain.LlmPrompt;
+import com.ment.chat.client.domain.LlmPromptsPurgedBetween;
+import com.ment.chat.client.domain.repository.LlmCompletionRepository;
+import com.ment.chat.client.domain.repository.LlmPromptRepository;
+import com.ment.chat.client.model.enums.CompletionStatus;
+import com.ment.chat.client.model.enums.LlmProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SemanticCompletionCacheTest {
+
+    private final WordEmbeddingModel embeddingModel = new WordEmbeddingModel();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private LlmPromptRepository llmPromptRepository;
+
+    @Mock
+    private LlmCompletionRepository llmCompletionRepository;
+
+    private SemanticCompletionCache semanticCompletionCache;
+
+    @BeforeEach
+    void setUp() {
+        semanticCompletionCache = new SemanticCompletionCache(
+                new SemanticCacheProperties(true, 0.6, 100, Duration.ofMillis(500), "words", null),
+                Optional.of(embeddingModel),
+                llmPromptRepository,
+                llmCompletionRepository,
+                meterRegistry);
+    }
+
+    @Test
+    void paraphraseAnsweredWithStoredCompletion() {
+        LlmCompletion llmCompletion = completion("c1", "p1", "gpt-5", "Donald Trump");
+        semanticCompletionCache.index(prompt("p1", null, "who is the US president"), embeddingModel.embed("who is the US president"), llmCompletion);
+        when(llmCompletionRepository.findById("c1")).thenReturn(Optional.of(llmCompletion));
+
+        Optional<ChatResponseTimer> cached = semanticCompletionCache.find(LlmProvider.OPENAI, "who is the current president of the USA");
+
+        assertThat(cached).hasValueSatisfying(response -> {
+            assertThat(response.chatResponse().getResult().getOutput().getText()).isEqualTo("Donald Trump");
+            assertThat(response.chatResponse().getMetadata().getModel()).isEqualTo("gpt-5");
+            assertThat(response.cached()).isTrue();
+            assertThat(response.attempts()).isZero();
+        });
+        assertThat(semanticCompletionCache.find(LlmProvider.OPENAI, "how to bake bread")).isEmpty();
+        //not answered by the provider
+        assertThat(semanticCompletionCache.find(LlmProvider.ANTHROPIC, "who is the US president")).isEmpty();
+        assertThat(meterRegistry.get(SemanticCompletionCache.LOOKUPS_METRIC).tag("result", "hit").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get(SemanticCompletionCache.LOOKUPS_METRIC).tag("result", "miss").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void purgedPromptNotFound() {
+        LlmCompletion llmCompletion = completion("c1", "p1", "gpt-5", "Donald Trump");
+        LlmPrompt llmPrompt = prompt("p1", null, "who is the US president");
+        semanticCompletionCache.index(llmPrompt, embeddingModel.embed("who is the US president"), llmCompletion);
+
+        semanticCompletionCache.handlePurged(new LlmPromptsPurgedBetween(llmPrompt.getPromptedAt().minusMonths(1), llmPrompt.getPromptedAt().plusSeconds(1)));
+
+        assertThat(semanticCompletionCache.find(LlmProvider.OPENAI, "who is the US president")).isEmpty();
+    }
+
+    @Test
+    void rebuiltFromLatestPromptsForCurrentModel() {
+        LlmPrompt older = prompt("p1", "default", "who is the US president");
+        LlmPrompt latest = prompt("p2", "default", "who is the US president");
+        LlmPrompt ping = prompt("p3", ChatServiceImpl.PING_STATUS_CHAT_ID, "ping LLM to check status");
+        LlmCompletion latestCompletion = completion("c2", "p2", "gpt-5", "Donald Trump");
+        when(llmPromptRepository.findLatestStatelessWithText(any(Pageable.class))).thenReturn(List.of(latest, ping, older));
+        when(llmCompletionRepository.findByPromptIdIn(List.of("p2", "p1"))).thenReturn(List.of(
+                summary(completion("c1", "p1", "gpt-4", "Joe Biden")),
+                summary(latestCompletion)));
+        when(llmCompletionRepository.findById("c2")).thenReturn(Optional.of(latestCompletion));
+
+        semanticCompletionCache.rebuildIndex();
+
+        assertThat(meterRegistry.get(SemanticCompletionCache.SIZE_METRIC).gauge().value()).isEqualTo(2.0);
+        //the answer of the model answering now
+        assertThat(semanticCompletionCache.find(LlmProvider.OPENAI, "who is the current president of the USA"))
+                .hasValueSatisfying(response -> assertThat(response.chatResponse().getResult().getOutput().getText()).isEqualTo("Donald Trump"));
+    }
+
+    @Test
+    void answerGivenWithSystemMessageOrChatHistoryNotServed() throws Exception {
+        //a follow-up answered with the history of its chat, and a plain prompt
+        LlmPrompt inChat = prompt("p1", "chat-1", false, "summarize who the US president is");
+        LlmPrompt plain = prompt("p2", null, "how to bake bread");
+        when(llmPromptRepository.findWithTextByPromptId("p1")).thenReturn(Optional.of(inChat));
+        when(llmPromptRepository.findWithTextByPromptId("p2")).thenReturn(Optional.of(plain));
+
+        semanticCompletionCache.handleCompletion(completion("c1", "p1", "gpt-5", "He was elected in 2024"));
+        semanticCompletionCache.handleCompletion(completion("c2", "p2", "gpt-5", "Mix flour and water"));
+        verify(llmPromptRepository, timeout(5000)).findWithTextByPromptId("p1");
+        awaitSize(1);
+
+        assertThat(meterRegistry.get(SemanticCompletionCache.SIZE_METRIC).gauge().value()).isEqualTo(1.0);
+        //the same text sent as a plain prompt is not answered with the answer given in the chat
+        assertThat(semanticCompletionCache.find(LlmProvider.OPENAI, "summarize who the US president is")).isEmpty();
+    }
+
+    @Test
+    void answerOfBackupModelNotIndexed() {
+        LlmCompletion hedged = completion("c1", "p1", "gpt-5-mini", true, "Donald Trump");
+
+        semanticCompletionCache.handleCompletion(hedged);
+
+        verifyNoInteractions(llmPromptRepository);
+    }
+
+    @Test
+    void rebuiltWithoutAnswersOfBackupModel() {
+        LlmPrompt older = prompt("p1", "default", "who is the US president");
+        LlmPrompt latest = prompt("p2", "default", "who is the US president");
+        LlmCompletion olderCompletion = completion("c1", "p1", "gpt-5", "Donald Trump");
+        when(llmPromptRepository.findLatestStatelessWithText(any(Pageable.class))).thenReturn(List.of(latest, older));
+        when(llmCompletionRepository.findByPromptIdIn(List.of("p2", "p1"))).thenReturn(List.of(
+                summary(olderCompletion),
+                //the latest answer is from the backup of the provider
+                summary(completion("c2", "p2", "gpt-5-mini", true, "Trump"))));
+        when(llmCompletionRepository.findById("c1")).thenReturn(Optional.of(olderCompletion));
+
+        semanticCompletionCache.rebuildIndex();
+
+        assertThat(meterRegistry.get(SemanticCompletionCache.SIZE_METRIC).gauge().value()).isEqualTo(1.0);
+        //still the answer of the model of the provider
+        assertThat(semanticCompletionCache.find(LlmProvider.OPENAI, "who is the current president of the USA"))
+                .hasValueSatisfying(response -> assertThat(response.chatResponse().getMetadata().getModel()).isEqualTo("gpt-5"));
+    }
+
+    //the answers are indexed in the background
+    private void awaitSize(int size) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get(SemanticCompletionCache.SIZE_METRIC).gauge().value() < size && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static LlmPrompt prompt(String promptId, String chatId, String prompt) {
+        return prompt(promptId, chatId, true, prompt);
+    }
+
+    private static LlmPrompt prompt(String promptId, String chatId, boolean stateless, String prompt) {
+        return LlmPrompt.builder()
+                .promptId(promptId)
+                .prompt(prompt)
+                .sessionId("session")
+                .chatId(chatId)
+                .promptedAt(OffsetDateTime.now())
+                .stateless(stateless)
+                .build();
+    }
+
+    private static LlmCompletionSummary summary(LlmCompletion llmCompletion) {
+        return new LlmCompletionSummary(llmCompletion.getCompletionId(), llmCompletion.getPromptId(), llmCompletion.getLlmProvider(),
+                llmCompletion.getLlm(), llmCompletion.getStatus(), llmCompletion.getCached(), llmCompletion.getHedged());
+    }
+
+    private static LlmCompletion completion(String completionId, String promptId, String llm, String completion) {
+        return completion(completionId, promptId, llm, false, completion);
+    }
+
+    private static LlmCompletion completion(String completionId, String promptId, String llm, boolean hedged, String completion) {
+        return LlmCompletion.builder()
+                .completionId(completionId)
+                .promptId(promptId)
+                .completion(completion)
+                .llm(llm)
+                .llmProvider(LlmProvider.OPENAI)
+                .executionTimeMs(100L)
+                .attempts(1)
+                .backoffMs(0L)
+                .cached(false)
+                .hedged(hedged)
+                .status(CompletionStatus.COMPLETED)
+                .completedAt(OffsetDateTime.now())
+                .build();
+    }
+
+    /**
+     * Deterministic local embedding, each word of the text is hashed into a dimension.
+     */
+    private static class WordEmbeddingModel implements EmbeddingModel {
+
+        private static final int DIMENSIONS = 256;
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(embed(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public float[] embed(String text) {
+            float[] embedding = new float[DIMENSIONS];
+            for (String word : text.toLowerCase(Locale.ROOT).split("\\W+")) {
+                embedding[Math.floorMod(word.hashCode(), DIMENSIONS)] += 1;
+            }
+            return embedding;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ment.chat.client.service;
+
+import com.ment.chat.client.model.enums.LlmProvider;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticIndexTest {
+
+    private static final OffsetDateTime PROMPTED_AT = OffsetDateTime.of(2025, 3, 10, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    void nearestPromptOfProviderAndModel() {
+        SemanticIndex index = new SemanticIndex(10);
+        index.add(LlmProvider.OPENAI, "gpt-5", new float[]{1, 0, 0}, "c1", PROMPTED_AT);
+        index.add(LlmProvider.OPENAI, "gpt-5", new float[]{1, 1, 0}, "c2", PROMPTED_AT);
+        index.add(LlmProvider.OPENAI, "gpt-4", new float[]{1, 0, 0}, "c3", PROMPTED_AT);
+
+        //the length of the vectors does not matter
+        assertThat(index.nearest(LlmProvider.OPENAI, "gpt-5", new float[]{2, 0.1f, 0}, 0.9))
+                .hasValueSatisfying(match -> {
+                    assertThat(match.completionId()).isEqualTo("c1");
+                    assertThat(match.similarity()).isGreaterThan(0.99);
+                });
+        assertThat(index.nearest(LlmProvider.OPENAI, "gpt-5", new float[]{0, 0, 1}, 0.9)).isEmpty();
+        assertThat(index.nearest(LlmProvider.ANTHROPIC, "gpt-5", new float[]{1, 0, 0}, 0.9)).isEmpty();
+        //another embedding model
+        assertThat(index.nearest(LlmProvider.OPENAI, "gpt-5", new float[]{1, 0}, 0.9)).isEmpty();
+    }
+
+    @Test
+    void oldestPromptEvicted() {
+        SemanticIndex index = new SemanticIndex(2);
+        index.add(LlmProvider.OLLAMA, "qwen3", new float[]{1, 0}, "c1", PROMPTED_AT);
+        index.add(LlmProvider.OLLAMA, "qwen3", new float[]{0, 1}, "c2", PROMPTED_AT);
+        index.add(LlmProvider.OLLAMA, "qwen3", new float[]{1, 1}, "c3", PROMPTED_AT);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.nearest(LlmProvider.OLLAMA, "qwen3", new float[]{1, 0}, 0.99)).isEmpty();
+        assertThat(index.nearest(LlmProvider.OLLAMA, "qwen3", new float[]{0, 1}, 0.99))
+                .hasValueSatisfying(match -> assertThat(match.completionId()).isEqualTo("c2"));
+    }
+
+    @Test
+    void purgedPromptsRemoved() {
+        SemanticIndex index = new SemanticIndex(10);
+        index.add(LlmProvider.OLLAMA, "qwen3", new float[]{1, 0}, "c1", PROMPTED_AT.minusMonths(1));
+        index.add(LlmProvider.OLLAMA, "qwen3", new float[]{0, 1}, "c2", PROMPTED_AT);
+
+        assertThat(index.removeIf(promptedAt -> promptedAt.isBefore(PROMPTED_AT))).isEqualTo(1);
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.nearest(LlmProvider.OLLAMA, "qwen3", new float[]{1, 0}, 0.99)).isEmpty();
+        assertThat(index.nearest(LlmProvider.OLLAMA, "qwen3", new float[]{0, 1}, 0.99))
+                .hasValueSatisfying(match -> assertThat(match.completionId()).isEqualTo("c2"));
+    }
+}
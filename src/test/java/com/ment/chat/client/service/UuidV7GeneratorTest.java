@@ -0,0 +1,49 @@
+package com.ment.chat.client.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UuidV7GeneratorTest {
+
+    private final UuidV7Generator generator = new UuidV7Generator();
+
+    @Test
+    void versionSevenWithTimeOfCreation() {
+        long before = System.currentTimeMillis();
+        UUID id = generator.generateId();
+        long after = System.currentTimeMillis();
+
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isBetween(before, after);
+    }
+
+    @Test
+    void idsIncreasingAsStrings() {
+        List<String> ids = IntStream.range(0, 10_000)
+                .mapToObj(_ -> generator.generateId().toString())
+                .toList();
+
+        assertThat(ids).isSorted().doesNotHaveDuplicates();
+    }
+
+    @Test
+    void counterOverflowBorrowsFromNextMillisecond() {
+        long millis = 1_760_000_000_000L;
+        long first = generator.nextTimeAndCounter(millis);
+        long last = first;
+        for (int i = 0; i < 4096; i++) {
+            last = generator.nextTimeAndCounter(millis);
+        }
+
+        assertThat(last).isEqualTo(first + 4096);
+        assertThat(last >>> 12).isEqualTo(millis + 1);
+        //the clock catching up continues after the borrowed millisecond
+        assertThat(generator.nextTimeAndCounter(millis + 1)).isEqualTo(last + 1);
+    }
+}
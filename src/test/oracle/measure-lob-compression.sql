@@ -0,0 +1,91 @@
+-- Compression ratio versus CPU of the SecureFile LOB compression levels, measured on a sample of the stored texts.
+-- Run it as the schema user with SQL*Plus or SQLcl, before the migration is run with the lob-compression context:
+--   sql <schema user>@<database> @src/test/oracle/measure-lob-compression.sql LLM_COMPLETION COMPLETION 10000
+--   sql <schema user>@<database> @src/test/oracle/measure-lob-compression.sql LLM_PROMPT_TEXT PROMPT 10000
+-- The sample is copied to a scratch table for each level, and the used space of each copy is reported with the CPU
+-- spent by the session to write it and to read all of it again. The scratch tables are dropped at the end.
+-- The compressed copies use the Advanced Compression option too, so run it where the option is licensed.
+-- The LOBs stored in the row, up to about 4000 bytes, are not compressed, so the space of the rows is reported too.
+SET SERVEROUTPUT ON SIZE UNLIMITED
+SET VERIFY OFF
+SET FEEDBACK OFF
+
+DEFINE table_name = &1
+DEFINE column_name = &2
+DEFINE sample_rows = &3
+
+DECLARE
+    TYPE levels_t IS TABLE OF VARCHAR2(10);
+    levels             levels_t := levels_t('NOCOMPRESS', 'LOW', 'MEDIUM', 'HIGH');
+    scratch            VARCHAR2(128);
+    lob_segment        VARCHAR2(128);
+    cpu                NUMBER;
+    write_cpu_cs       NUMBER;
+    read_cpu_cs        NUMBER;
+    not_found          NUMBER;
+    row_bytes          NUMBER;
+    size_blocks        NUMBER;
+    size_bytes         NUMBER;
+    used_blocks        NUMBER;
+    lob_bytes          NUMBER;
+    expired_blocks     NUMBER;
+    expired_bytes      NUMBER;
+    unexpired_blocks   NUMBER;
+    unexpired_bytes    NUMBER;
+    uncompressed_bytes NUMBER;
+
+    PROCEDURE drop_scratch(name VARCHAR2) IS
+    BEGIN
+        EXECUTE IMMEDIATE 'DROP TABLE ' || name || ' PURGE';
+    EXCEPTION
+        WHEN OTHERS THEN
+            IF SQLCODE != -942 THEN
+                RAISE;
+            END IF;
+    END;
+BEGIN
+    DBMS_OUTPUT.PUT_LINE('&table_name..&column_name, sample of &sample_rows rows, CPU in seconds');
+    DBMS_OUTPUT.PUT_LINE(RPAD('level', 12) || LPAD('row MB', 10) || LPAD('LOB MB', 10) || LPAD('ratio', 8)
+        || LPAD('write CPU', 12) || LPAD('read CPU', 12));
+    FOR i IN 1 .. levels.COUNT LOOP
+        scratch := 'LOB_COMPRESSION_' || levels(i);
+        drop_scratch(scratch);
+        EXECUTE IMMEDIATE 'CREATE TABLE ' || scratch || ' (text CLOB) LOB (text) STORE AS SECUREFILE ('
+            || CASE levels(i) WHEN 'NOCOMPRESS' THEN 'NOCOMPRESS' ELSE 'COMPRESS ' || levels(i) END || ')';
+
+        --the same rows for each level, the read of the source is in every write
+        cpu := DBMS_UTILITY.GET_CPU_TIME;
+        EXECUTE IMMEDIATE 'INSERT INTO ' || scratch || ' (text) SELECT &column_name FROM &table_name'
+            || ' WHERE &column_name IS NOT NULL ORDER BY ROWID FETCH FIRST :sample_rows ROWS ONLY' USING &sample_rows;
+        COMMIT;
+        write_cpu_cs := DBMS_UTILITY.GET_CPU_TIME - cpu;
+
+        --a character not in the texts, so each text is read and decompressed to its end
+        cpu := DBMS_UTILITY.GET_CPU_TIME;
+        EXECUTE IMMEDIATE 'SELECT SUM(DBMS_LOB.INSTR(text, CHR(1))) FROM ' || scratch INTO not_found;
+        read_cpu_cs := DBMS_UTILITY.GET_CPU_TIME - cpu;
+
+        SELECT NVL(SUM(bytes), 0) INTO row_bytes FROM user_segments WHERE segment_name = scratch;
+        SELECT segment_name INTO lob_segment FROM user_lobs WHERE table_name = scratch;
+        BEGIN
+            DBMS_SPACE.SPACE_USAGE(USER, lob_segment, 'LOB', size_blocks, size_bytes, used_blocks, lob_bytes,
+                                   expired_blocks, expired_bytes, unexpired_blocks, unexpired_bytes);
+        EXCEPTION
+            --no LOB segment when all texts are stored in the row
+            WHEN OTHERS THEN
+                lob_bytes := 0;
+        END;
+        IF i = 1 THEN
+            uncompressed_bytes := row_bytes + lob_bytes;
+        END IF;
+
+        DBMS_OUTPUT.PUT_LINE(RPAD(levels(i), 12)
+            || LPAD(TO_CHAR(row_bytes / 1024 / 1024, 'FM999990.0'), 10)
+            || LPAD(TO_CHAR(lob_bytes / 1024 / 1024, 'FM999990.0'), 10)
+            || LPAD(TO_CHAR(uncompressed_bytes / NULLIF(row_bytes + lob_bytes, 0), 'FM990.00'), 8)
+            || LPAD(TO_CHAR(write_cpu_cs / 100, 'FM999990.00'), 12)
+            || LPAD(TO_CHAR(read_cpu_cs / 100, 'FM999990.00'), 12));
+        drop_scratch(scratch);
+    END LOOP;
+END;
+/